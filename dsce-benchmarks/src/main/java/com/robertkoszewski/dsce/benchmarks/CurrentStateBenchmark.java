@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.benchmarks;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.robertkoszewski.dsce.client.devices.DSDevice.Device;
+import com.robertkoszewski.dsce.messages.CurrentStateMessageWrapper;
+import com.robertkoszewski.dsce.messages.DSMessage;
+
+/**
+ * Current State Message Getter and Setter Benchmark
+ * @author Robert Koszewski
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CurrentStateBenchmark {
+	
+	@Param({"SIDEKICK", "DREAMSCREEN4K"})
+	public String device;
+	
+	// Variables
+	private CurrentStateMessageWrapper state;
+	private final Color color = new Color(12, 34, 56);
+	private int counter = 0;
+	
+	@Setup
+	public void setup() {
+		state = new CurrentStateMessageWrapper(Device.valueOf(device));
+		state.setName("Living Room");
+		state.setGroupName("Downstairs");
+	}
+	
+	@Benchmark
+	public Device getDevice() {
+		return state.getDevice();
+	}
+	
+	@Benchmark
+	public String getName() {
+		return state.getName();
+	}
+	
+	@Benchmark
+	public void setName() {
+		state.setName("Living Room");
+	}
+	
+	@Benchmark
+	public byte getMode() {
+		return state.getMode();
+	}
+	
+	@Benchmark
+	public void setMode() {
+		state.setMode((byte) (counter++ & 0x03));
+	}
+	
+	@Benchmark
+	public byte getBrightness() {
+		return state.getBrightness();
+	}
+	
+	@Benchmark
+	public void setBrightness() {
+		state.setBrightness((byte) (counter++ % 101));
+	}
+	
+	@Benchmark
+	public Color getAmbientColor() {
+		return state.getAmbientColor();
+	}
+	
+	@Benchmark
+	public void setAmbientColor() {
+		state.setAmbientColor(color);
+	}
+	
+	@Benchmark
+	public DSMessage getMessage() {
+		return state.getMessage(DSMessage.FLAG_STATUS);
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.robertkoszewski.dsce.client.devices.DSDevice.Device;
+import com.robertkoszewski.dsce.messages.CurrentStateMessageWrapper;
+import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.messages.FrameBuffer;
+import com.robertkoszewski.dsce.messages.InvalidMessageException;
+
+/**
+ * DSMessage Parse and Encode Benchmark
+ * @author Robert Koszewski
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DSMessageBenchmark {
+	
+	/**
+	 * Frame Type (Shortest request, sector data and the largest state reply)
+	 */
+	@Param({"STATE_REQUEST", "SECTOR_DATA", "CURRENT_STATE"})
+	public String frame;
+	
+	// Variables
+	private byte[] data;
+	private DSMessage message;
+	private final DSMessage view = new DSMessage();
+	private final FrameBuffer buffer = new FrameBuffer();
+	private final ByteBuffer direct = ByteBuffer.allocateDirect(DSMessage.MAX_FRAME_SIZE);
+	
+	@Setup
+	public void setup() throws InvalidMessageException {
+		if("STATE_REQUEST".equals(frame)) {
+			data = DSMessage.MESSAGE_READ_CURRENT_STATE.clone();
+		} else if("SECTOR_DATA".equals(frame)) {
+			byte[] sectors = new byte[36];
+			for(int i = 0; i < sectors.length; i++) sectors[i] = (byte) (i * 7);
+			data = DSMessage.buildMessage((byte) 0x01, DSMessage.FLAG_SCREEN_SECTOR_DATA, 
+					DSMessage.COMMAND_UPPER_SCREEN_SECTOR_DATA, DSMessage.COMMAND_LOWER_SCREEN_SECTOR_DATA, sectors);
+		} else {
+			data = new CurrentStateMessageWrapper(Device.DREAMSCREEN4K).getMessage(DSMessage.FLAG_STATUS).getMessage();
+		}
+		message = new DSMessage(data);
+	}
+	
+	/**
+	 * Parse into a new Message (Copies the payload)
+	 */
+	@Benchmark
+	public DSMessage parse() throws InvalidMessageException {
+		return new DSMessage(data);
+	}
+	
+	/**
+	 * Parse into a reused Flyweight View (No copy)
+	 */
+	@Benchmark
+	public DSMessage wrap() throws InvalidMessageException {
+		return view.wrap(data, 0, data.length, true);
+	}
+	
+	/**
+	 * Parse and Identify the Command
+	 */
+	@Benchmark
+	public DSMessage.Command wrapAndGetCommand() throws InvalidMessageException {
+		return view.wrap(data, 0, data.length, true).getCommand();
+	}
+	
+	/**
+	 * Encode into a new Array
+	 */
+	@Benchmark
+	public byte[] encode() {
+		return message.getMessage();
+	}
+	
+	/**
+	 * Encode into a reused Frame Buffer
+	 */
+	@Benchmark
+	public int encodeFrameBuffer() {
+		return buffer.encode(message);
+	}
+	
+	/**
+	 * Encode into a reused direct ByteBuffer
+	 */
+	@Benchmark
+	public int encodeByteBuffer() {
+		direct.clear();
+		return message.encode(direct);
+	}
+}
@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.robertkoszewski.dsce.client.DSClient;
+import com.robertkoszewski.dsce.client.devices.DSDevice;
+import com.robertkoszewski.dsce.client.server.SocketListener;
+import com.robertkoszewski.dsce.messages.CurrentStateMessageWrapper;
+import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.utils.Threads;
+
+/**
+ * Concurrent Lookup Benchmark. Looks up 500 devices at once and reports the time until all of them answered
+ * and the peak number of live threads, for one blocking getClient() call per platform thread, per virtual 
+ * thread (Java 21+) and for the asynchronous getClients().
+ * 
+ * No network is used: every request is answered by a simulated device after a fixed delay.
+ * 
+ * Run with: java -cp target/benchmarks.jar com.robertkoszewski.dsce.benchmarks.LookupBenchmark [lookups] [reply delay ms]
+ * 
+ * @author Robert Koszewski
+ */
+public class LookupBenchmark {
+	
+	// Constants
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int ROUNDS = 5;
+	
+	/**
+	 * Socket answering every state request after a delay instead of sending it
+	 */
+	private static class SimulatedNetwork extends SocketListener {
+		
+		SimulatedNetwork(long replyDelay) {
+			super(0, 256, false);
+			this.replyDelay = replyDelay;
+		}
+		
+		private final long replyDelay;
+		private final byte[] reply = new CurrentStateMessageWrapper(DSDevice.Device.SIDEKICK).getMessage(DSMessage.FLAG_STATUS).getMessage();
+		private final ScheduledExecutorService replies = Executors.newSingleThreadScheduledExecutor();
+		
+		@Override
+		public void sendMessage(final InetAddress dest_ip, byte[] message) {
+			replies.schedule(new Runnable() {
+				@Override
+				public void run() {
+					handlePacket(new DSMessage(), reply, 0, reply.length, dest_ip, 8888, null);
+				}
+			}, replyDelay, TimeUnit.MILLISECONDS);
+		}
+		
+		void shutdown() {
+			replies.shutdownNow();
+		}
+	}
+	
+	public static void main(String[] args) throws Exception {
+		int lookups = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		long replyDelay = args.length > 1 ? Long.parseLong(args[1]) : 20;
+		
+		System.out.println(lookups + " concurrent lookups, replies after " + replyDelay + " ms" 
+				+ (Threads.isVirtualThreadsSupported() ? "" : " (Virtual threads not supported by this JDK)"));
+		System.out.println(String.format("%-18s %12s %12s %8s", "Mode", "Time (ms)", "Peak threads", "Found"));
+		
+		run("platform threads", false, false, lookups, replyDelay);
+		if(Threads.isVirtualThreadsSupported()) run("virtual threads", true, false, lookups, replyDelay);
+		run("async", false, true, lookups, replyDelay);
+	}
+	
+	/**
+	 * Run one Mode
+	 */
+	private static void run(String mode, boolean virtual, boolean async, int lookups, long replyDelay) throws Exception {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		InetAddress[] ips = addresses(lookups);
+		Threads.setVirtualThreadsEnabled(virtual);
+		
+		double time = 0;
+		long peak = 0, found = 0;
+		for(int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+			SimulatedNetwork network = new SimulatedNetwork(replyDelay);
+			DSClient client = new DSClient(network);
+			System.gc();
+			threads.resetPeakThreadCount();
+			
+			long start = System.nanoTime();
+			int answered = async ? lookupAsync(client, ips) : lookupBlocking(client, ips);
+			long elapsed = System.nanoTime() - start;
+			
+			if(round >= WARMUP_ROUNDS) {
+				time += elapsed / 1000000.0;
+				peak = Math.max(peak, threads.getPeakThreadCount());
+				found += answered;
+			}
+			client.close();
+			network.shutdown();
+		}
+		Threads.setVirtualThreadsEnabled(false);
+		
+		System.out.println(String.format("%-18s %12.1f %12d %8s", mode, time / ROUNDS, peak, (found / ROUNDS) + "/" + lookups));
+	}
+	
+	/**
+	 * One blocking getClient() per Thread
+	 */
+	private static int lookupBlocking(final DSClient client, InetAddress[] ips) throws InterruptedException {
+		final AtomicInteger answered = new AtomicInteger();
+		Thread[] lookups = new Thread[ips.length];
+		for(int i = 0; i < ips.length; i++) {
+			final InetAddress ip = ips[i];
+			lookups[i] = Threads.startThread("Lookup " + i, true, new Runnable() {
+				@Override
+				public void run() {
+					if(client.getClient(ip) != null) answered.incrementAndGet();
+				}
+			});
+		}
+		for(Thread lookup : lookups) lookup.join();
+		return answered.get();
+	}
+	
+	/**
+	 * All Lookups through getClients() (Futures completed on the receive path)
+	 */
+	private static int lookupAsync(DSClient client, InetAddress[] ips) {
+		int answered = 0;
+		for(DSDevice device : client.getClients(ips)) {
+			if(device != null) answered++;
+		}
+		return answered;
+	}
+	
+	/**
+	 * Device Addresses (10.1.x.y)
+	 */
+	private static InetAddress[] addresses(int count) throws UnknownHostException {
+		InetAddress[] ips = new InetAddress[count];
+		for(int i = 0; i < count; i++) {
+			ips[i] = InetAddress.getByAddress(new byte[] {10, 1, (byte) (i >> 8), (byte) (i & 0xFF)});
+		}
+		return ips;
+	}
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.robertkoszewski.dsce.emulator.utils.DecimatedSampler;
+import com.robertkoszewski.dsce.emulator.utils.EdgeBandSampler;
+import com.robertkoszewski.dsce.emulator.utils.FrameSampler;
+import com.robertkoszewski.dsce.emulator.utils.ParallelAverageSampler;
+import com.robertkoszewski.dsce.emulator.utils.SimpleAverageSampler;
+import com.robertkoszewski.dsce.emulator.utils.SummedAreaSampler;
+import com.robertkoszewski.dsce.emulator.utils.SyntheticScreenGrabber;
+import com.robertkoszewski.dsce.emulator.utils.SyntheticScreenGrabber.Resolution;
+
+/**
+ * Color Sampler Benchmark. Samples synthetic frames (no display required) and reports
+ * the achieved frame rate (fps, frames per second) and the per frame latency distribution (latency, ms).
+ * @author Robert Koszewski
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class SamplerBenchmark {
+	
+	@Param({"SIMPLE_AVERAGE", "PARALLEL_AVERAGE", "SUMMED_AREA", "DECIMATED_4", "DECIMATED_1K", "EDGE_BAND"})
+	public String sampler;
+	
+	@Param({"0"}) // Threads for the parallel samplers (0 for one per core)
+	public int parallelism;
+	
+	@Param({"HD_720", "FULL_HD_1080", "UHD_4K"})
+	public String resolution;
+	
+	@Param({"INT_RGB", "INT_ARGB", "3BYTE_BGR", "4BYTE_ABGR"})
+	public String imageType;
+	
+	// Variables
+	private SyntheticScreenGrabber grabber;
+	private FrameSampler frameSampler;
+	private final byte[] sectors = new byte[36];
+	
+	// Constants
+	private static final int FRAMES = 2;
+	
+	@Setup
+	public void setup() {
+		Resolution res = Resolution.valueOf(resolution);
+		grabber = new SyntheticScreenGrabber(res.getWidth(), res.getHeight(), getImageType(imageType), FRAMES, 0);
+		frameSampler = createSampler(sampler, grabber, parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.Throughput)
+	@OutputTimeUnit(TimeUnit.SECONDS)
+	public byte[] fps() {
+		frameSampler.sample(grabber.getFrame(), sectors);
+		return sectors;
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.SampleTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public byte[] latency() {
+		frameSampler.sample(grabber.getFrame(), sectors);
+		return sectors;
+	}
+	
+	/**
+	 * Create Sampler
+	 * @param name
+	 * @param grabber
+	 * @param parallelism
+	 * @return
+	 */
+	static FrameSampler createSampler(String name, SyntheticScreenGrabber grabber, int parallelism) {
+		if("SIMPLE_AVERAGE".equals(name)) return new SimpleAverageSampler(grabber);
+		if("PARALLEL_AVERAGE".equals(name)) return new ParallelAverageSampler(grabber, parallelism);
+		if("SUMMED_AREA".equals(name)) return new SummedAreaSampler(grabber);
+		if("EDGE_BAND".equals(name)) return new EdgeBandSampler(grabber); // Default 120 px bands
+		if("DECIMATED_4".equals(name)) return new DecimatedSampler(grabber, 4); // Every 4th pixel of every 4th row
+		if("DECIMATED_1K".equals(name)) { // 1024 jittered pixels per sector
+			DecimatedSampler decimated = new DecimatedSampler(grabber);
+			decimated.setSampleBudget(1024);
+			decimated.setJitter(true);
+			return decimated;
+		}
+		throw new IllegalArgumentException("Unknown sampler: " + name);
+	}
+	
+	/**
+	 * Get BufferedImage Type
+	 * @param name
+	 * @return
+	 */
+	static int getImageType(String name) {
+		if("INT_RGB".equals(name)) return BufferedImage.TYPE_INT_RGB;
+		if("INT_ARGB".equals(name)) return BufferedImage.TYPE_INT_ARGB;
+		if("3BYTE_BGR".equals(name)) return BufferedImage.TYPE_3BYTE_BGR;
+		if("4BYTE_ABGR".equals(name)) return BufferedImage.TYPE_4BYTE_ABGR;
+		throw new IllegalArgumentException("Unknown image type: " + name);
+	}
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.benchmarks;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.robertkoszewski.dsce.features.ScreenColor;
+
+/**
+ * Screen Color Benchmark (12 sector frames as sent by a DreamScreen)
+ * @author Robert Koszewski
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScreenColorBenchmark {
+	
+	// Variables
+	private byte[] sectors;
+	private Color[] colors;
+	private ScreenColor screen;
+	private final Color color = new Color(200, 100, 50);
+	private int sector = 0; // Sectors are numbered 1 to 12
+	private final int[] allSectors = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12};
+	
+	@Setup
+	public void setup() {
+		sectors = new byte[36];
+		colors = new Color[12];
+		for(int i = 0; i < 12; i++) {
+			sectors[i * 3] = (byte) (i * 20);
+			sectors[i * 3 + 1] = (byte) (255 - i * 20);
+			sectors[i * 3 + 2] = (byte) (i * 10);
+			colors[i] = new Color(sectors[i * 3] & 0xFF, sectors[i * 3 + 1] & 0xFF, sectors[i * 3 + 2] & 0xFF);
+		}
+		screen = new ScreenColor(sectors);
+	}
+	
+	@Benchmark
+	public ScreenColor fromBytes() {
+		return new ScreenColor(sectors);
+	}
+	
+	@Benchmark
+	public ScreenColor fromColors() {
+		return new ScreenColor(colors);
+	}
+	
+	@Benchmark
+	public Color getColor() {
+		sector = sector % 12 + 1;
+		return screen.getColor(sector);
+	}
+	
+	@Benchmark
+	public void setColor() {
+		sector = sector % 12 + 1;
+		screen.setColor(sector, color);
+	}
+	
+	@Benchmark
+	public Color getAverageColor() {
+		return screen.getAverageColor(allSectors);
+	}
+	
+	@Benchmark
+	public byte[] getPayload() {
+		return screen.getPayload();
+	}
+}
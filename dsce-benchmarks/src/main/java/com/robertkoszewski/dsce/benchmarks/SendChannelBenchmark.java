@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.benchmarks;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.robertkoszewski.dsce.client.server.SendChannel;
+import com.robertkoszewski.dsce.messages.DSMessage;
+
+/**
+ * Static Message Send Benchmark (Sector data frames to a loopback receiver).
+ * 
+ * perMessageSocket is the former sendStaticMessage path: socket, two setsockopt, bind, sendto and close 
+ * for every message. The shared channels only issue the sendto.
+ * 
+ * @author Robert Koszewski
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SendChannelBenchmark {
+	
+	// Variables
+	private DatagramChannel receiver;
+	private InetAddress ip;
+	private int port;
+	private InetSocketAddress destination;
+	private byte[] frame;
+	private ByteBuffer buffer;
+	private SendChannel blocking;
+	private SendChannel nonBlocking;
+	
+	@Setup
+	public void setup() throws IOException {
+		ip = InetAddress.getLoopbackAddress();
+		receiver = DatagramChannel.open();
+		receiver.bind(new InetSocketAddress(ip, 0)); // Never read: The kernel drops what does not fit
+		port = receiver.socket().getLocalPort();
+		destination = new InetSocketAddress(ip, port);
+		frame = DSMessage.buildMessage((byte) 0x01, DSMessage.FLAG_SCREEN_SECTOR_DATA, DSMessage.COMMAND_UPPER_SCREEN_SECTOR_DATA, DSMessage.COMMAND_LOWER_SCREEN_SECTOR_DATA, new byte[36]);
+		buffer = ByteBuffer.wrap(frame);
+		blocking = SendChannel.get(null, true);
+		nonBlocking = SendChannel.get(null, false);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		receiver.close();
+		SendChannel.closeAll();
+	}
+	
+	@Benchmark
+	public void perMessageSocket() throws IOException {
+		DatagramSocket socket = new DatagramSocket(0);
+		socket.setBroadcast(true);
+		socket.setReuseAddress(true);
+		socket.send(new DatagramPacket(frame, 0, frame.length, ip, port));
+		socket.close();
+	}
+	
+	@Benchmark
+	public boolean sharedBlocking() throws IOException {
+		return blocking.send(ip, port, frame, 0, frame.length);
+	}
+	
+	@Benchmark
+	public boolean sharedNonBlocking() throws IOException {
+		buffer.rewind();
+		return nonBlocking.send(destination, buffer);
+	}
+}
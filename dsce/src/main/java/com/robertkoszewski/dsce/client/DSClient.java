@@ -25,22 +25,32 @@ package com.robertkoszewski.dsce.client;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.HashMap;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
 
 import com.robertkoszewski.dsce.client.devices.DSDevice;
 import com.robertkoszewski.dsce.client.devices.NotCurrentStateMessage;
+import com.robertkoszewski.dsce.client.server.CallbackRegistry;
+import com.robertkoszewski.dsce.client.server.MessageFilter;
 import com.robertkoszewski.dsce.client.server.MessageReceived;
 import com.robertkoszewski.dsce.client.server.SocketListener;
 import com.robertkoszewski.dsce.messages.DSMessage;
 import com.robertkoszewski.dsce.utils.DS;
 import com.robertkoszewski.dsce.utils.NetworkInterface;
-
-// TODO: Implement realtime variant of getDevice for realtime value updates
+import com.robertkoszewski.dsce.utils.Threads;
 
 /**
- * DS Client for scanning and connecting to DS devices
+ * DS Client for scanning and connecting to DS devices. 
+ * All requests share one socket, one state reply callback and one timer thread; 
+ * a pending request holds no thread while waiting for its reply.
  * @author Robert Koszewski
  */
 public class DSClient {
@@ -73,52 +83,165 @@ public class DSClient {
 	// Variables
 	
 	private SocketListener socket;
+	private ScheduledExecutorService scheduler;
+	private DSDeviceRegistry registry;
+	private volatile DeviceCache cache; // NULL while disabled
+	
+	// Settings
+	private volatile long requestTimeout = 1000; // Per attempt
+	private volatile int requestRetries = 3;
+	private volatile long discoveryInterval = 500;
+	private volatile long discoveryTimeout = 2500;
+	private volatile boolean adaptiveRetransmit = false; // Lookups retransmit on the observed RTT instead of the request timeout
+	private final RttEstimator rtt = new RttEstimator();
+	
+	// Constants
+	public static final long QUIET_ADAPTIVE = -1; // Quiet period derived from the observed RTT
+	private static final long MIN_RETRANSMIT = 10; // Milliseconds
+	private static final long MIN_QUIET = 20; // Milliseconds
+	
+	// Pending Requests
+	private final ConcurrentHashMap<InetAddress, PendingLookup> pendingLookups = new ConcurrentHashMap<InetAddress, PendingLookup>();
+	private final CallbackRegistry<Discovery> discoveries = new CallbackRegistry<Discovery>(new Discovery[0]);
+	private final Object listenerLock = new Object();
+	private int activeRequests = 0;
+	
+	// Shared State Reply Callback (Registered while requests are pending)
+	private final MessageReceived stateCallback = new MessageReceived() {
+		@Override
+		public void run(DSMessage message, InetAddress senderIP, int senderPort) {
+			long now = System.nanoTime();
+			PendingLookup lookup = pendingLookups.get(senderIP);
+			Discovery[] active = discoveries.snapshot();
+			if(lookup == null && active.length == 0) return; // Nobody waiting
+			
+			// Parse Device
+			DSDevice device;
+			try {
+				device = DSDevice.parseDevice(socket, message, senderIP);
+			} catch (NotCurrentStateMessage e) {
+				return;
+			}
+			if(device == null) return;
+			DeviceCache cache = DSClient.this.cache;
+			if(cache != null) cache.put(device);
+			
+			// Deliver
+			if(lookup != null && lookup.future.complete(device)) lookup.replied(now);
+			for(int i = 0; i < active.length; i++) {
+				if(active[i].found(device)) discovered(active[i], now);
+			}
+		}
+	};
+	
+	// Methods
 
 	/**
-	 * Get Client List
+	 * Get Client List (Blocks until the discovery ends)
 	 * @return
 	 * @throws IOException
 	 */
 	public DSDevice[] getClientList() throws IOException {
-		final HashMap<String, DSDevice> devices = new HashMap<String, DSDevice>();
+		try {
+			return discover(null).getFuture().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new DSDevice[0];
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Get Client List, ending early (Blocks until the discovery ends)
+	 * @param expectedDevices Return as soon as this many devices answered (0 for no limit)
+	 * @param quietPeriod Return when no new device answered for this many milliseconds (0 to disable, QUIET_ADAPTIVE)
+	 * @return
+	 * @throws IOException
+	 */
+	public DSDevice[] getClientList(int expectedDevices, long quietPeriod) throws IOException {
+		try {
+			return discover(null, expectedDevices, quietPeriod).getFuture().get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new DSDevice[0];
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+	
+	/**
+	 * Discover Devices. 
+	 * Broadcasts state requests at the discovery interval up to the configured number of retries and reports each device as soon as it answers
+	 * @param listener Called once per discovered device on the receive thread (NULL for none)
+	 * @return Running Discovery
+	 */
+	public Discovery discover(DeviceDiscovered listener) {
+		return discover(listener, 0, 0);
+	}
+	
+	/**
+	 * Discover Devices, ending early. 
+	 * Rebroadcasts with exponential backoff from the observed RTT, and ends at the discovery timeout, 
+	 * when the expected number of devices answered or when no new device answered for the quiet period
+	 * @param listener Called once per discovered device on the receive thread (NULL for none)
+	 * @param expectedDevices End as soon as this many devices answered (0 for no limit)
+	 * @param quietPeriod End when no new device answered for this many milliseconds after the first one (0 to disable, QUIET_ADAPTIVE)
+	 * @return Running Discovery
+	 */
+	public Discovery discover(DeviceDiscovered listener, int expectedDevices, long quietPeriod) {
+		final Discovery discovery = new Discovery(listener, expectedDevices, quietPeriod);
+		final ScheduledExecutorService scheduler = getScheduler();
+		final InetAddress broadcast;
+		try {
+			broadcast = InetAddress.getByName("255.255.255.255");
+		} catch (UnknownHostException e) {
+			discovery.fail(e);
+			return discovery;
+		}
 		
-		// Start Listener
-		MessageReceived callback = new MessageReceived() {
+		// Listen for Replies
+		acquireListener();
+		discoveries.add(discovery);
+		discovery.getFuture().whenComplete(new BiConsumer<DSDevice[], Throwable>() {
 			@Override
-			public void run(DSMessage message, InetAddress senderIP, int senderPort) {
-				// Check if the message is a current state message
-				if(message.getCommand() != DSMessage.Command.CURRENT_STATE) return;
-				// Parse Device
-				try {
-					if(!devices.containsKey(senderIP.getHostAddress())) {
-						DSDevice device = DSDevice.parseDevice(message, senderIP);
-						if(device != null) devices.put(senderIP.getHostAddress(), device);
-					}	
-				} catch (NotCurrentStateMessage e) {}
+			public void accept(DSDevice[] devices, Throwable e) {
+				discoveries.remove(discovery);
+				releaseListener();
 			}
-		};
-		socket.addCallback(callback);
-
-		// Send Query Message
-		try {
-			int tries = 3;
-			InetAddress broadcast = InetAddress.getByName("255.255.255.255");
-			while(tries-- > 0) {
-				socket.sendMessage(broadcast, DSMessage.MESSAGE_READ_CURRENT_STATE);
-				Thread.sleep(500); // 0.5 second of timeout
+		});
+		
+		// Broadcast Requests (Rescheduled after each broadcast)
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				if(discovery.isDone()) return;
+				try {
+					discovery.broadcastSent();
+					socket.sendMessage(broadcast, DSMessage.MESSAGE_READ_CURRENT_STATE);
+				} catch (IOException e) {
+					discovery.fail(e);
+					return;
+				}
+				int sent = discovery.getBroadcasts();
+				if(sent < requestRetries) {
+					long interval = discovery.endsEarly() || adaptiveRetransmit ? getRetransmitInterval(sent, discoveryInterval) : discoveryInterval;
+					discovery.addTimer(scheduler.schedule(this, interval, TimeUnit.MILLISECONDS));
+				}
 			}
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
+		});
 		
-		// Remove Callback (After timeout)
-		try {
-			Thread.sleep(1000); // 1 second of timeout
-		} catch (InterruptedException e) {}
-		socket.removeCallback(callback);
+		// End of Discovery
+		discovery.addTimer(scheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				discovery.finish();
+			}
+		}, discoveryTimeout, TimeUnit.MILLISECONDS));
 		
-		// Convert to Array
-		return devices.values().toArray(new DSDevice[devices.size()]);
+		return discovery;
 	}
 	
 	/**
@@ -132,70 +255,450 @@ public class DSClient {
 	}
 	
 	/**
-	 * Connect to Client
-	 * @return
+	 * Connect to Client (Blocks until the device answers or all retries time out)
+	 * @return Device or NULL if it did not answer
 	 * @throws IOException
 	 */
 	public DSDevice getClient(InetAddress ip){
-		final Ref<DSDevice> device = new Ref<DSDevice>();
-		final Lock lock = new ReentrantLock();
+		try {
+			return getClientAsync(ip).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			if(!(e.getCause() instanceof TimeoutException)) e.printStackTrace();
+		}
+		return null;
+	}
+	
+	/**
+	 * Connect to Client Asynchronously. 
+	 * Concurrent requests for the same IP share one future. The future completes on the receive thread, 
+	 * or exceptionally with a TimeoutException when all retries time out. 
+	 * With the cache enabled, fresh devices complete immediately and stale ones are refreshed in the background
+	 * @param ip
+	 * @return
+	 */
+	public CompletableFuture<DSDevice> getClientAsync(final InetAddress ip) {
+		final DeviceCache cache = this.cache;
+		if(cache == null) return lookup(ip);
 		
-		// Start Listener
-		MessageReceived callback = new MessageReceived() {
-			@Override
-			public void run(DSMessage message, InetAddress senderIP, int senderPort) {
-				// Check if the message is a current state message
-				if(message.getCommand() != DSMessage.Command.CURRENT_STATE) return;
+		final DeviceCache.CachedDevice entry = cache.getEntry(ip);
+		int state = cache.classify(entry, System.nanoTime());
+		if(state == DeviceCache.MISS) return lookup(ip); // Cached by the reply callback
+		if(state == DeviceCache.STALE && entry.startRefresh(cache)) {
+			lookup(ip).whenComplete(new BiConsumer<DSDevice, Throwable>() {
+				@Override
+				public void accept(DSDevice device, Throwable e) {
+					if(e != null) entry.refreshFailed();
+				}
+			});
+		}
+		return CompletableFuture.completedFuture(entry.device);
+	}
+	
+	/**
+	 * Look up a Client on the Network (Bypasses the cache)
+	 * @param ip
+	 * @return
+	 */
+	private CompletableFuture<DSDevice> lookup(InetAddress ip) {
+		PendingLookup lookup = new PendingLookup(ip);
+		PendingLookup existing = pendingLookups.putIfAbsent(ip, lookup);
+		if(existing != null) return existing.future;
+		lookup.start();
+		return lookup.future;
+	}
+	
+	/**
+	 * Connect to multiple Clients concurrently
+	 * @param ips
+	 * @return Devices in the order of the given IPs (NULL entries for devices that did not answer)
+	 */
+	public DSDevice[] getClients(InetAddress... ips) {
+		@SuppressWarnings("unchecked")
+		CompletableFuture<DSDevice>[] lookups = new CompletableFuture[ips.length];
+		for(int i = 0; i < ips.length; i++) {
+			lookups[i] = getClientAsync(ips[i]);
+		}
 		
-				// Parse Device
-				try {
-					device.var = DSDevice.parseDevice(message, senderIP); // Parse Device
-					
-					// Release Lock
-					synchronized (lock) {
-						lock.notifyAll();
-					}
-				} catch (NotCurrentStateMessage e) {
-					e.printStackTrace();
-				} 
+		DSDevice[] devices = new DSDevice[ips.length];
+		for(int i = 0; i < lookups.length; i++) {
+			try {
+				devices[i] = lookups[i].get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (ExecutionException e) {
+				if(!(e.getCause() instanceof TimeoutException)) e.printStackTrace();
 			}
-		};
-		socket.addCallback(callback);
-
-		// Send Query Message
+		}
+		return devices;
+	}
+	
+	/**
+	 * Get Live Device (Kept up to date from the updates it broadcasts. Looked up on first use)
+	 * @param ip
+	 * @return Device or NULL if it did not answer
+	 */
+	public DSDevice getDevice(InetAddress ip) {
+		DSDeviceRegistry registry = getRegistry();
+		DSDevice device = registry.getDevice(ip);
+		if(device != null) return device;
+		device = getClient(ip);
+		return device == null ? null : registry.track(device);
+	}
+	
+	/**
+	 * Get Live Device Registry (Started on first use and seeded by a discovery)
+	 * @return
+	 */
+	public synchronized DSDeviceRegistry getRegistry() {
+		if(registry == null) {
+			registry = new DSDeviceRegistry(socket);
+			registry.start();
+			discover(null);
+		}
+		return registry;
+	}
+	
+	/**
+	 * Set Request Timeout (Per attempt)
+	 * @param timeout Milliseconds
+	 */
+	public void setRequestTimeout(long timeout) {
+		this.requestTimeout = Math.max(1, timeout);
+	}
+	
+	/**
+	 * Get Request Timeout (Per attempt)
+	 * @return Milliseconds
+	 */
+	public long getRequestTimeout() {
+		return requestTimeout;
+	}
+	
+	/**
+	 * Set Request Attempts (For lookups and discovery broadcasts)
+	 * @param retries
+	 */
+	public void setRequestRetries(int retries) {
+		this.requestRetries = Math.max(1, retries);
+	}
+	
+	/**
+	 * Get Request Attempts
+	 * @return
+	 */
+	public int getRequestRetries() {
+		return requestRetries;
+	}
+	
+	/**
+	 * Enable/Disable RTT based Retransmits for Lookups and Discoveries without early end (Default: Disabled). 
+	 * When enabled requests are retransmitted as soon as a reply is overdue according to the observed RTT, 
+	 * otherwise after the full request timeout or discovery interval
+	 * @param enable
+	 */
+	public void setAdaptiveRetransmit(boolean enable) {
+		this.adaptiveRetransmit = enable;
+	}
+	
+	/**
+	 * Are Lookups and Discoveries without early end retransmitted based on the observed RTT?
+	 * @return
+	 */
+	public boolean isAdaptiveRetransmit() {
+		return adaptiveRetransmit;
+	}
+	
+	/**
+	 * Set Discovery Broadcast Interval and total Duration
+	 * @param interval Milliseconds between broadcasts
+	 * @param timeout Milliseconds until the discovery ends
+	 */
+	public void setDiscoveryTiming(long interval, long timeout) {
+		this.discoveryInterval = Math.max(1, interval);
+		this.discoveryTimeout = Math.max(1, timeout);
+	}
+	
+	/**
+	 * Get Group Handle (Members are taken from the live registry)
+	 * @param groupNumber
+	 * @return
+	 */
+	public DeviceGroup getGroup(byte groupNumber) {
+		return new DeviceGroup(this, groupNumber);
+	}
+	
+	/**
+	 * Broadcast a Command to a Group and wait for every known member to confirm it with its state update. 
+	 * Rebroadcast like a lookup while members are missing. Without known members (e.g. before the registry 
+	 * was seeded) the command is broadcast once and the operation ends unverified
+	 * @param groupNumber
+	 * @param message
+	 * @return Running Operation
+	 */
+	GroupOperation sendToGroup(byte groupNumber, DSMessage message) {
+		final GroupOperation operation = new GroupOperation(groupNumber, message, getRegistry().getDevices(groupNumber));
+		final InetAddress broadcast;
 		try {
-			int tries = 3; // 3 Retries
-			while(tries-- > 0) {
+			broadcast = InetAddress.getByName("255.255.255.255");
+		} catch (UnknownHostException e) {
+			operation.getFuture().completeExceptionally(e);
+			return operation;
+		}
+		
+		if(operation.getMembers() == 0) {
+			operation.broadcastSent();
+			try {
+				socket.sendMessage(broadcast, operation.getMessage());
+			} catch (IOException e) {
+				operation.getFuture().completeExceptionally(e);
+				return operation;
+			}
+			operation.finish(); // Nobody to wait for
+			return operation;
+		}
+		
+		// Confirmations
+		final MessageReceived confirmation = new MessageReceived() {
+			@Override
+			public void run(DSMessage update, InetAddress senderIP, int senderPort) {
+				if(update.getFlags() != DSMessage.FLAG_BROADCAST_TO_GROUP) return;
+				long now = System.nanoTime();
+				if(operation.confirm(senderIP, update) && operation.getBroadcasts() == 1) 
+					rtt.sample(now - operation.getLastBroadcastTime());
+			}
+		};
+		socket.addCallback(new MessageFilter(null, groupNumber & 0xFF, message.getCommand()), confirmation);
+		operation.getFuture().whenComplete(new BiConsumer<GroupOperation, Throwable>() {
+			@Override
+			public void accept(GroupOperation result, Throwable e) {
+				socket.removeCallback(confirmation);
+			}
+		});
+		
+		// Broadcasts
+		new Runnable() {
+			@Override
+			public void run() {
+				if(operation.isDone()) return;
+				int sent = operation.getBroadcasts();
+				if(sent >= requestRetries) {
+					operation.finish(); // Gave up on the missing members
+					return;
+				}
+				operation.broadcastSent();
 				try {
-					socket.sendMessage(ip, DSMessage.MESSAGE_READ_CURRENT_STATE);
+					socket.sendMessage(broadcast, operation.getMessage());
 				} catch (IOException e) {
-					e.printStackTrace();
-				}
-				
-				synchronized (lock) {
-					lock.wait(1000); // Wait up to 1 second
+					e.printStackTrace(); // Retried on timeout
 				}
-
-				if(device.var != null) {
-					break;
-				} 
+				long timeout = sent + 1 < requestRetries ? getRetransmitInterval(sent + 1, requestTimeout) : requestTimeout;
+				operation.setTimer(getScheduler().schedule(this, timeout, TimeUnit.MILLISECONDS));
+			}
+		}.run();
+		return operation;
+	}
+	
+	/**
+	 * Enable the Device Cache (Replaces the current cache)
+	 * @param ttl Milliseconds a device is served without asking it again
+	 * @param staleTime Milliseconds after the TTL a device is still served while it is refreshed in the background
+	 * @param maxEntries Maximum number of cached devices (Least recently used are evicted)
+	 */
+	public void setCache(long ttl, long staleTime, int maxEntries) {
+		this.cache = new DeviceCache(ttl, staleTime, maxEntries);
+	}
+	
+	/**
+	 * Disable the Device Cache
+	 */
+	public void disableCache() {
+		this.cache = null;
+	}
+	
+	/**
+	 * Get Device Cache (For its metrics)
+	 * @return Cache or NULL if disabled
+	 */
+	public DeviceCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * Get RTT Estimator (Observed request round trip times)
+	 * @return
+	 */
+	public RttEstimator getRttEstimator() {
+		return rtt;
+	}
+	
+	/**
+	 * Get Number of pending Lookups
+	 * @return
+	 */
+	public int getPendingLookups() {
+		return pendingLookups.size();
+	}
+	
+	/**
+	 * Close Client (Fails pending lookups, ends discoveries and stops the timer thread)
+	 */
+	public void close() {
+		for(PendingLookup lookup: pendingLookups.values()) 
+			lookup.future.completeExceptionally(new IOException("Client closed"));
+		for(Discovery discovery: discoveries.snapshot()) 
+			discovery.finish();
+		synchronized(this) {
+			if(registry != null) {
+				registry.stop();
+				registry = null;
+			}
+			if(scheduler != null) {
+				scheduler.shutdownNow();
+				scheduler = null;
 			}
-		} catch (InterruptedException e) {
-			e.printStackTrace();
 		}
+	}
+	
+	/**
+	 * Get Timer Scheduler (Retransmits and timeouts of all requests)
+	 * @return
+	 */
+	private synchronized ScheduledExecutorService getScheduler() {
+		if(scheduler == null) {
+			ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					return Threads.newThread("DS Client Scheduler", true, task);
+				}
+			});
+			executor.setRemoveOnCancelPolicy(true);
+			scheduler = executor;
+		}
+		return scheduler;
+	}
+	
+	/**
+	 * Get Retransmit Interval (RTT based timeout doubled for every attempt, never above the configured maximum)
+	 * @param attempts Attempts sent so far
+	 * @param max Configured Interval
+	 * @return Milliseconds
+	 */
+	private long getRetransmitInterval(int attempts, long max) {
+		long rto = rtt.getRetransmitTimeout(max, MIN_RETRANSMIT, max);
+		return Math.min(max, rto << Math.min(attempts - 1, 16));
+	}
+	
+	/**
+	 * New Device Discovered
+	 * @param discovery
+	 * @param now Reply Time
+	 */
+	private void discovered(final Discovery discovery, long now) {
+		// RTT Sample (Only while a single broadcast is in flight. Later replies are ambiguous)
+		if(discovery.getBroadcasts() == 1) rtt.sample(now - discovery.getLastBroadcastTime());
 		
-		// Remove Callback
-		socket.removeCallback(callback);
-		
-		return device.var;
+		// Quiet Period
+		long quiet = discovery.quietPeriod == QUIET_ADAPTIVE ? 
+				Math.max(MIN_QUIET, 2 * rtt.getRetransmitTimeout(discoveryInterval, MIN_RETRANSMIT, discoveryInterval)) :
+					discovery.quietPeriod;
+		if(quiet > 0 && !discovery.isDone()) {
+			discovery.setQuietTimer(getScheduler().schedule(new Runnable() {
+				@Override
+				public void run() {
+					discovery.finish();
+				}
+			}, quiet, TimeUnit.MILLISECONDS));
+		}
 	}
 	
 	/**
-	 * Reference Variable
-	 * @param <T>
+	 * Register the State Reply Callback for a new Request
 	 */
-	private static class Ref<T>{
-		T var;
+	private void acquireListener() {
+		synchronized(listenerLock) {
+			if(activeRequests++ == 0) socket.addCallback(DSMessage.Command.CURRENT_STATE, stateCallback);
+		}
 	}
 	
+	/**
+	 * Release the State Reply Callback after a Request ended
+	 */
+	private void releaseListener() {
+		synchronized(listenerLock) {
+			if(--activeRequests == 0) socket.removeCallback(stateCallback);
+		}
+	}
+	
+	/**
+	 * Pending Device Lookup
+	 */
+	private class PendingLookup implements Runnable, BiConsumer<DSDevice, Throwable> {
+		
+		public PendingLookup(InetAddress ip) {
+			this.ip = ip;
+		}
+		
+		final InetAddress ip;
+		final CompletableFuture<DSDevice> future = new CompletableFuture<DSDevice>();
+		private volatile int attempts = 0;
+		private volatile long sendTime;
+		private volatile ScheduledFuture<?> timer;
+		
+		/**
+		 * Start Lookup
+		 */
+		void start() {
+			acquireListener();
+			future.whenComplete(this);
+			send();
+		}
+		
+		/**
+		 * Send State Request and arm the Timeout
+		 */
+		private void send() {
+			attempts++;
+			sendTime = System.nanoTime();
+			try {
+				socket.sendMessage(ip, DSMessage.MESSAGE_READ_CURRENT_STATE);
+			} catch (IOException e) {
+				e.printStackTrace(); // Retried on timeout
+			}
+			// Retransmit early based on the RTT when enabled, but give the last attempt the full timeout
+			long timeout = adaptiveRetransmit && attempts < requestRetries ? getRetransmitInterval(attempts, requestTimeout) : requestTimeout;
+			timer = getScheduler().schedule(this, timeout, TimeUnit.MILLISECONDS);
+		}
+		
+		/**
+		 * Reply Received
+		 * @param now Reply Time
+		 */
+		void replied(long now) {
+			if(attempts == 1) rtt.sample(now - sendTime); // Retransmitted requests give ambiguous samples
+		}
+		
+		/**
+		 * Attempt Timed Out
+		 */
+		@Override
+		public void run() {
+			if(future.isDone()) return;
+			if(attempts < requestRetries) send();
+			else future.completeExceptionally(new TimeoutException("No reply from " + ip.getHostAddress() + " after " + attempts + " attempts"));
+		}
+		
+		/**
+		 * Lookup Completed (Answered, timed out or cancelled)
+		 */
+		@Override
+		public void accept(DSDevice device, Throwable e) {
+			ScheduledFuture<?> timer = this.timer;
+			if(timer != null) timer.cancel(false);
+			pendingLookups.remove(ip, this);
+			releaseListener();
+		}
+	}
 }
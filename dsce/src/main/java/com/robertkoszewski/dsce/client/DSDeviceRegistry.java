@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.client;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.robertkoszewski.dsce.client.devices.DSDevice;
+import com.robertkoszewski.dsce.client.devices.DeviceChangeListener;
+import com.robertkoszewski.dsce.client.devices.NotCurrentStateMessage;
+import com.robertkoszewski.dsce.client.server.CallbackRegistry;
+import com.robertkoszewski.dsce.client.server.MessageFilter;
+import com.robertkoszewski.dsce.client.server.MessageReceived;
+import com.robertkoszewski.dsce.client.server.SocketListener;
+import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.messages.DSMessage.Command;
+
+/**
+ * Live Device Registry. 
+ * Keeps every known device up to date from the state replies and group update broadcasts 
+ * seen on the socket, so reading a device property is a local memory lookup.
+ * @author Robert Koszewski
+ */
+public class DSDeviceRegistry {
+	
+	/**
+	 * Device Registry on a Socket
+	 * @param socket
+	 */
+	public DSDeviceRegistry(SocketListener socket) {
+		this.socket = socket;
+	}
+	
+	// Variables
+	
+	private final SocketListener socket;
+	private final ConcurrentHashMap<InetAddress, DSDevice> devices = new ConcurrentHashMap<InetAddress, DSDevice>();
+	private final CallbackRegistry<DeviceChangeListener> changeListeners = 
+			new CallbackRegistry<DeviceChangeListener>(new DeviceChangeListener[0]);
+	private final CallbackRegistry<DeviceDiscovered> deviceListeners = 
+			new CallbackRegistry<DeviceDiscovered>(new DeviceDiscovered[0]);
+	private boolean running = false;
+	
+	// Constants
+	
+	/**
+	 * Commands tracked by the Registry
+	 */
+	public static final Command[] TRACKED_COMMANDS = {
+		Command.CURRENT_STATE, Command.DEVICE_NAME, Command.GROUP_NAME, Command.GROUP_NUMBER, 
+		Command.MODE, Command.BRIGHTNESS, Command.AMBIENT_COLOR, Command.AMBIENT_SCENE, Command.SATURATION_SETTING, 
+		Command.HDMI_INPUT, Command.HDMI_NAME_1, Command.HDMI_NAME_2, Command.HDMI_NAME_3, Command.HDMI_ACTIVE_CHANNELS
+	};
+	
+	// Update Callback
+	private final MessageReceived updateCallback = new MessageReceived() {
+		@Override
+		public void run(DSMessage message, InetAddress senderIP, int senderPort) {
+			process(message, senderIP);
+		}
+	};
+	
+	// Methods
+	
+	/**
+	 * Start tracking Updates
+	 */
+	public synchronized void start() {
+		if(running) return;
+		socket.addCallback(new MessageFilter(TRACKED_COMMANDS), updateCallback);
+		running = true;
+	}
+	
+	/**
+	 * Stop tracking Updates (Known devices are kept but no longer updated)
+	 */
+	public synchronized void stop() {
+		if(!running) return;
+		socket.removeCallback(updateCallback);
+		running = false;
+	}
+	
+	/**
+	 * Is the Registry tracking Updates?
+	 * @return
+	 */
+	public synchronized boolean isRunning() {
+		return running;
+	}
+	
+	/**
+	 * Get Device (Local lookup)
+	 * @param ip
+	 * @return Device or NULL if not known
+	 */
+	public DSDevice getDevice(InetAddress ip) {
+		return devices.get(ip);
+	}
+	
+	/**
+	 * Get all known Devices
+	 * @return
+	 */
+	public DSDevice[] getDevices() {
+		return devices.values().toArray(new DSDevice[0]);
+	}
+	
+	/**
+	 * Get all known Devices of a Group
+	 * @param groupNumber
+	 * @return
+	 */
+	public DSDevice[] getDevices(byte groupNumber) {
+		List<DSDevice> group = new ArrayList<DSDevice>();
+		for(DSDevice device: devices.values()) {
+			if(device.getGroupNumber() == groupNumber) group.add(device);
+		}
+		return group.toArray(new DSDevice[group.size()]);
+	}
+	
+	/**
+	 * Get Number of known Devices
+	 * @return
+	 */
+	public int size() {
+		return devices.size();
+	}
+	
+	/**
+	 * Track a Device
+	 * @param device
+	 * @return Tracked Device (The already known instance if one exists for the same IP)
+	 */
+	public DSDevice track(DSDevice device) {
+		DSDevice existing = devices.putIfAbsent(device.getIP(), device);
+		if(existing != null) return existing;
+		for(DeviceDiscovered listener: deviceListeners.snapshot()) {
+			listener.discovered(device);
+		}
+		return device;
+	}
+	
+	/**
+	 * Forget a Device
+	 * @param ip
+	 * @return Removed Device or NULL
+	 */
+	public DSDevice remove(InetAddress ip) {
+		return devices.remove(ip);
+	}
+	
+	/**
+	 * Add Change Listener (Notified for changes on any tracked device)
+	 * @param listener
+	 */
+	public void addChangeListener(DeviceChangeListener listener) {
+		changeListeners.add(listener);
+	}
+	
+	/**
+	 * Remove Change Listener
+	 * @param listener
+	 * @return TRUE if the listener was registered
+	 */
+	public boolean removeChangeListener(DeviceChangeListener listener) {
+		return changeListeners.remove(listener);
+	}
+	
+	/**
+	 * Add Device Listener (Notified when a new device becomes known)
+	 * @param listener
+	 */
+	public void addDeviceListener(DeviceDiscovered listener) {
+		deviceListeners.add(listener);
+	}
+	
+	/**
+	 * Remove Device Listener
+	 * @param listener
+	 * @return TRUE if the listener was registered
+	 */
+	public boolean removeDeviceListener(DeviceDiscovered listener) {
+		return deviceListeners.remove(listener);
+	}
+	
+	/**
+	 * Process a received Message
+	 * @param message
+	 * @param senderIP
+	 */
+	protected void process(DSMessage message, InetAddress senderIP) {
+		Command command = message.getCommand();
+		DSDevice sender = devices.get(senderIP);
+		
+		// State Reply
+		if(command == Command.CURRENT_STATE) {
+			if(sender != null) {
+				apply(sender, message);
+			} else {
+				try {
+					DSDevice device = DSDevice.parseDevice(socket, message, senderIP);
+					if(device != null) track(device);
+				} catch (NotCurrentStateMessage e) {
+					// Can't happen
+				}
+			}
+			return;
+		}
+		
+		// Property Updates (Only broadcasts)
+		if(message.getFlags() != DSMessage.FLAG_BROADCAST_TO_GROUP) return;
+		if(sender != null) apply(sender, message);
+		
+		// Group wide Properties are followed by every device in the group (Updates in group 0 are ignored by devices)
+		byte group = message.getGroupAddress();
+		if(group == 0 || (group & 0xFF) == 0xFF || !isGroupProperty(command)) return;
+		for(DSDevice device: devices.values()) {
+			if(device != sender && device.getGroupNumber() == group) apply(device, message);
+		}
+	}
+	
+	/**
+	 * Apply Update to a Device
+	 * @param device
+	 * @param message
+	 */
+	private void apply(DSDevice device, DSMessage message) {
+		if(!device.applyUpdate(message)) return;
+		for(DeviceChangeListener listener: changeListeners.snapshot()) {
+			listener.changed(device, message.getCommand());
+		}
+	}
+	
+	/**
+	 * Is the Property shared by all Devices in a Group?
+	 * @param command
+	 * @return
+	 */
+	private static boolean isGroupProperty(Command command) {
+		switch(command) {
+		case GROUP_NAME:
+		case MODE:
+		case BRIGHTNESS:
+		case AMBIENT_COLOR:
+		case AMBIENT_SCENE:
+		case SATURATION_SETTING:
+			return true;
+		default:
+			return false;
+		}
+	}
+}
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.client;
+
+import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.robertkoszewski.dsce.client.devices.DSDevice;
+
+/**
+ * Device State Cache (Least recently used devices are evicted when full). 
+ * Entries younger than the TTL are served as they are; entries within the stale period after it 
+ * are still served but get refreshed in the background; older entries count as misses.
+ * @author Robert Koszewski
+ */
+public class DeviceCache {
+	
+	/**
+	 * Initialize Device Cache
+	 * @param ttl Milliseconds an entry is fresh
+	 * @param staleTime Milliseconds after the TTL an entry may still be served while it is refreshed
+	 * @param maxEntries Maximum number of cached devices
+	 */
+	public DeviceCache(long ttl, long staleTime, int maxEntries) {
+		this.ttl = Math.max(1, ttl) * NANOS_PER_MILLI;
+		this.staleTime = Math.max(0, staleTime) * NANOS_PER_MILLI;
+		this.maxEntries = Math.max(1, maxEntries);
+		this.entries = new LinkedHashMap<InetAddress, CachedDevice>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<InetAddress, CachedDevice> eldest) {
+				if(size() <= DeviceCache.this.maxEntries) return false;
+				evictions.incrementAndGet();
+				return true;
+			}
+		};
+	}
+	
+	// Variables
+	
+	private final long ttl; // Nanoseconds
+	private final long staleTime; // Nanoseconds
+	private final int maxEntries;
+	private final LinkedHashMap<InetAddress, CachedDevice> entries;
+	
+	// Metrics
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong staleHits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong refreshes = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	
+	// Constants
+	private static final long NANOS_PER_MILLI = 1000000L;
+	
+	// Lookup Results
+	static final int MISS = 0;
+	static final int HIT = 1;
+	static final int STALE = 2;
+	
+	// Methods
+	
+	/**
+	 * Get cached Device
+	 * @param ip
+	 * @return CachedDevice or NULL
+	 */
+	synchronized CachedDevice getEntry(InetAddress ip) {
+		return entries.get(ip);
+	}
+	
+	/**
+	 * Classify cached Device and count the Lookup
+	 * @param entry
+	 * @param now
+	 * @return MISS, HIT or STALE
+	 */
+	int classify(CachedDevice entry, long now) {
+		int state;
+		if(entry == null) state = MISS;
+		else if(now - entry.loaded < ttl) state = HIT;
+		else if(now - entry.loaded < ttl + staleTime) state = STALE;
+		else state = MISS;
+		
+		switch(state) {
+		case HIT: hits.incrementAndGet(); break;
+		case STALE: staleHits.incrementAndGet(); break;
+		default: misses.incrementAndGet(); break;
+		}
+		return state;
+	}
+	
+	/**
+	 * Cache Device
+	 * @param device
+	 */
+	public synchronized void put(DSDevice device) {
+		entries.put(device.getIP(), new CachedDevice(device, System.nanoTime()));
+	}
+	
+	/**
+	 * Remove cached Device
+	 * @param ip
+	 */
+	public synchronized void invalidate(InetAddress ip) {
+		entries.remove(ip);
+	}
+	
+	/**
+	 * Remove all cached Devices
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+	
+	/**
+	 * Get Number of cached Devices
+	 * @return
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+	
+	/**
+	 * Get Maximum Number of cached Devices
+	 * @return
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+	
+	/**
+	 * Get Fresh Hits
+	 * @return
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+	
+	/**
+	 * Get Stale Hits (Served while refreshed in the background)
+	 * @return
+	 */
+	public long getStaleHits() {
+		return staleHits.get();
+	}
+	
+	/**
+	 * Get Misses
+	 * @return
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	/**
+	 * Get Background Refreshes started
+	 * @return
+	 */
+	public long getRefreshes() {
+		return refreshes.get();
+	}
+	
+	/**
+	 * Get Evictions
+	 * @return
+	 */
+	public long getEvictions() {
+		return evictions.get();
+	}
+	
+	/**
+	 * Get Hit Ratio (Fresh and stale hits of all lookups)
+	 * @return
+	 */
+	public double getHitRatio() {
+		long served = hits.get() + staleHits.get();
+		long total = served + misses.get();
+		return total == 0 ? 0 : (double) served / total;
+	}
+	
+	/**
+	 * Cached Device
+	 */
+	static class CachedDevice {
+		
+		CachedDevice(DSDevice device, long loaded) {
+			this.device = device;
+			this.loaded = loaded;
+		}
+		
+		final DSDevice device;
+		final long loaded;
+		private boolean refreshing = false;
+		
+		/**
+		 * Claim the Background Refresh of this Device
+		 * @param cache
+		 * @return TRUE if no refresh was running yet
+		 */
+		synchronized boolean startRefresh(DeviceCache cache) {
+			if(refreshing) return false;
+			refreshing = true;
+			cache.refreshes.incrementAndGet();
+			return true;
+		}
+		
+		/**
+		 * Release the Refresh Claim (Refresh failed)
+		 */
+		synchronized void refreshFailed() {
+			refreshing = false;
+		}
+	}
+}
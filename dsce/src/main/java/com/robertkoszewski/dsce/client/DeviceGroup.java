@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.client;
+
+import java.awt.Color;
+
+import com.robertkoszewski.dsce.client.devices.DSDevice;
+import com.robertkoszewski.dsce.client.devices.DSDevice.AmbientScene;
+import com.robertkoszewski.dsce.client.devices.DSDevice.Mode;
+import com.robertkoszewski.dsce.messages.AmbientColorMessageWrapper;
+import com.robertkoszewski.dsce.messages.AmbientSceneMessageWrapper;
+import com.robertkoszewski.dsce.messages.BrightnessMessageWrapper;
+import com.robertkoszewski.dsce.messages.ModeMessageWrapper;
+
+/**
+ * Device Group Handle. 
+ * Every operation is a single broadcast addressed to the group instead of one unicast per device.
+ * @author Robert Koszewski
+ */
+public class DeviceGroup {
+	
+	/**
+	 * Initialize Group Handle
+	 * @param client
+	 * @param groupNumber
+	 */
+	DeviceGroup(DSClient client, byte groupNumber) {
+		this.client = client;
+		this.groupNumber = groupNumber;
+	}
+	
+	// Variables
+	
+	private final DSClient client;
+	private final byte groupNumber;
+	
+	// Methods
+	
+	/**
+	 * Get Group Number
+	 * @return
+	 */
+	public byte getGroupNumber() {
+		return groupNumber;
+	}
+	
+	/**
+	 * Get known Members of the Group
+	 * @return
+	 */
+	public DSDevice[] getMembers() {
+		return client.getRegistry().getDevices(groupNumber);
+	}
+	
+	/**
+	 * Set Mode of the Group
+	 * @param mode
+	 * @return
+	 */
+	public GroupOperation setMode(Mode mode) {
+		return client.sendToGroup(groupNumber, new ModeMessageWrapper(groupNumber, mode).getMessage(ModeMessageWrapper.FLAG_UNICAST));
+	}
+	
+	/**
+	 * Set Brightness of the Group
+	 * @param brightness
+	 * @return
+	 */
+	public GroupOperation setBrightness(int brightness) {
+		if(brightness > 100 || brightness < 0) 
+			throw new NumberFormatException("Value can only be between 0 and 100");
+		return client.sendToGroup(groupNumber, new BrightnessMessageWrapper(groupNumber, brightness).getMessage(BrightnessMessageWrapper.FLAG_UNICAST));
+	}
+	
+	/**
+	 * Set Ambient Color of the Group
+	 * @param color
+	 * @return
+	 */
+	public GroupOperation setAmbientColor(Color color) {
+		return client.sendToGroup(groupNumber, new AmbientColorMessageWrapper(groupNumber, color).getMessage(AmbientColorMessageWrapper.FLAG_UNICAST_GROUP));
+	}
+	
+	/**
+	 * Set Ambient Scene of the Group
+	 * @param ambientScene
+	 * @return
+	 */
+	public GroupOperation setAmbientScene(AmbientScene ambientScene) {
+		return client.sendToGroup(groupNumber, new AmbientSceneMessageWrapper(groupNumber, ambientScene).getMessage(AmbientSceneMessageWrapper.FLAG_UNICAST));
+	}
+}
@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.client;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+
+import com.robertkoszewski.dsce.client.devices.DSDevice;
+
+/**
+ * Running Device Discovery. 
+ * Devices are reported to the listener as their replies arrive; the future completes with all 
+ * discovered devices when the discovery times out, goes quiet, finds all expected devices or is cancelled.
+ * @author Robert Koszewski
+ */
+public class Discovery {
+	
+	/**
+	 * Initialize Discovery
+	 * @param listener Device listener (NULL for none)
+	 * @param expectedDevices Finish as soon as this many devices were found (0 for no limit)
+	 * @param quietPeriod Finish when no new device answered for this long (0 to disable, DSClient.QUIET_ADAPTIVE)
+	 */
+	Discovery(DeviceDiscovered listener, int expectedDevices, long quietPeriod) {
+		this.listener = listener;
+		this.expectedDevices = expectedDevices;
+		this.quietPeriod = quietPeriod;
+	}
+	
+	// Variables
+	
+	private final DeviceDiscovered listener;
+	private final int expectedDevices;
+	final long quietPeriod;
+	private final long startTime = System.nanoTime();
+	private volatile long endTime = 0;
+	private volatile long lastBroadcastTime = 0;
+	private volatile int broadcasts = 0;
+	private ScheduledFuture<?> quietTimer;
+	private final CompletableFuture<DSDevice[]> future = new CompletableFuture<DSDevice[]>();
+	private final HashSet<InetAddress> found = new HashSet<InetAddress>();
+	private final ArrayList<DSDevice> devices = new ArrayList<DSDevice>();
+	private final ArrayList<ScheduledFuture<?>> timers = new ArrayList<ScheduledFuture<?>>();
+	private boolean finished = false;
+	
+	// Methods
+	
+	/**
+	 * Does the Discovery end early? (Expected device count or quiet period set)
+	 * @return
+	 */
+	boolean endsEarly() {
+		return expectedDevices > 0 || quietPeriod != 0;
+	}
+	
+	/**
+	 * Get Future (Completes with all discovered devices, in order of discovery)
+	 * @return
+	 */
+	public CompletableFuture<DSDevice[]> getFuture() {
+		return future;
+	}
+	
+	/**
+	 * Get Devices discovered so far
+	 * @return
+	 */
+	public synchronized DSDevice[] getDevices() {
+		return devices.toArray(new DSDevice[devices.size()]);
+	}
+	
+	/**
+	 * Is the Discovery finished?
+	 * @return
+	 */
+	public boolean isDone() {
+		return future.isDone();
+	}
+	
+	/**
+	 * Get Discovery Duration
+	 * @return Milliseconds from start until the end (or until now while running)
+	 */
+	public long getDuration() {
+		long end = endTime;
+		return ((end == 0 ? System.nanoTime() : end) - startTime) / 1000000L;
+	}
+	
+	/**
+	 * Get Number of State Request Broadcasts sent
+	 * @return
+	 */
+	public int getBroadcasts() {
+		return broadcasts;
+	}
+	
+	/**
+	 * Stop the Discovery now (The future completes with the devices discovered so far)
+	 */
+	public void cancel() {
+		finish();
+	}
+	
+	/**
+	 * Device Reply received
+	 * @param device
+	 * @return TRUE if the device is new
+	 */
+	boolean found(DSDevice device) {
+		boolean complete;
+		synchronized(this) {
+			if(finished || !found.add(device.getIP())) return false;
+			devices.add(device);
+			complete = expectedDevices > 0 && devices.size() >= expectedDevices;
+		}
+		if(listener != null) listener.discovered(device);
+		if(complete) finish(); // All expected devices answered
+		return true;
+	}
+	
+	/**
+	 * State Request Broadcast sent
+	 */
+	void broadcastSent() {
+		lastBroadcastTime = System.nanoTime();
+		broadcasts++;
+	}
+	
+	/**
+	 * Get Time of the last Broadcast
+	 * @return Nanoseconds (System.nanoTime)
+	 */
+	long getLastBroadcastTime() {
+		return lastBroadcastTime;
+	}
+	
+	/**
+	 * Restart the Quiet Period Timer (Replaces the previous one)
+	 * @param timer
+	 */
+	synchronized void setQuietTimer(ScheduledFuture<?> timer) {
+		if(quietTimer != null) quietTimer.cancel(false);
+		if(finished) timer.cancel(false);
+		else quietTimer = timer;
+	}
+	
+	/**
+	 * Track a Timer to be cancelled when the Discovery ends
+	 * @param timer
+	 */
+	synchronized void addTimer(ScheduledFuture<?> timer) {
+		if(finished) timer.cancel(false);
+		else timers.add(timer);
+	}
+	
+	/**
+	 * End Discovery
+	 */
+	void finish() {
+		DSDevice[] result;
+		synchronized(this) {
+			if(finished) return;
+			finished = true;
+			endTime = System.nanoTime();
+			cancelTimers();
+			result = devices.toArray(new DSDevice[devices.size()]);
+		}
+		future.complete(result);
+	}
+	
+	/**
+	 * End Discovery with an Error
+	 * @param e
+	 */
+	void fail(Throwable e) {
+		synchronized(this) {
+			if(finished) return;
+			finished = true;
+			endTime = System.nanoTime();
+			cancelTimers();
+		}
+		future.completeExceptionally(e);
+	}
+	
+	/**
+	 * Cancel all Timers (Called with the lock held)
+	 */
+	private void cancelTimers() {
+		for(ScheduledFuture<?> timer: timers) timer.cancel(false);
+		timers.clear();
+		if(quietTimer != null) quietTimer.cancel(false);
+		quietTimer = null;
+	}
+}
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.client;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+
+import com.robertkoszewski.dsce.client.devices.DSDevice;
+import com.robertkoszewski.dsce.messages.DSMessage;
+
+/**
+ * Group Operation. 
+ * One command broadcast to a whole group. Each member confirms it by broadcasting the resulting 
+ * state update; the future completes when every member confirmed or the retries ran out.
+ * @author Robert Koszewski
+ */
+public class GroupOperation {
+	
+	/**
+	 * Initialize Group Operation
+	 * @param groupNumber
+	 * @param command Command broadcast to the group
+	 * @param members Devices expected to confirm the command
+	 */
+	GroupOperation(byte groupNumber, DSMessage command, DSDevice[] members) {
+		this.groupNumber = groupNumber;
+		this.command = command;
+		for(DSDevice member: members) pending.add(member.getIP());
+		this.members = pending.size();
+	}
+	
+	// Variables
+	
+	private final byte groupNumber;
+	private final DSMessage command;
+	private final int members;
+	private final long startTime = System.nanoTime();
+	private volatile long endTime = 0;
+	private volatile long lastBroadcastTime = 0;
+	private volatile int broadcasts = 0;
+	private final LinkedHashSet<InetAddress> pending = new LinkedHashSet<InetAddress>();
+	private final ArrayList<InetAddress> confirmed = new ArrayList<InetAddress>();
+	private ScheduledFuture<?> timer;
+	private boolean finished = false;
+	private final CompletableFuture<GroupOperation> future = new CompletableFuture<GroupOperation>();
+	
+	// Methods
+	
+	/**
+	 * Get Future (Completes with this operation once it converged or gave up)
+	 * @return
+	 */
+	public CompletableFuture<GroupOperation> getFuture() {
+		return future;
+	}
+	
+	/**
+	 * Get Group Number
+	 * @return
+	 */
+	public byte getGroupNumber() {
+		return groupNumber;
+	}
+	
+	/**
+	 * Get broadcast Command
+	 * @return
+	 */
+	public DSMessage.Command getCommand() {
+		return command.getCommand();
+	}
+	
+	/**
+	 * Did every Member confirm the Command? (Never TRUE without known members)
+	 * @return
+	 */
+	public synchronized boolean isConverged() {
+		return members > 0 && pending.isEmpty();
+	}
+	
+	/**
+	 * Could the Command be verified? (FALSE if no members were known, the command was only broadcast)
+	 * @return
+	 */
+	public boolean isVerified() {
+		return members > 0;
+	}
+	
+	/**
+	 * Is the Operation finished?
+	 * @return
+	 */
+	public boolean isDone() {
+		return future.isDone();
+	}
+	
+	/**
+	 * Get Number of Members
+	 * @return
+	 */
+	public int getMembers() {
+		return members;
+	}
+	
+	/**
+	 * Get Members that confirmed the Command, in order of confirmation
+	 * @return
+	 */
+	public synchronized InetAddress[] getConfirmed() {
+		return confirmed.toArray(new InetAddress[confirmed.size()]);
+	}
+	
+	/**
+	 * Get Members that did not confirm the Command (yet)
+	 * @return
+	 */
+	public synchronized InetAddress[] getUnconfirmed() {
+		return pending.toArray(new InetAddress[pending.size()]);
+	}
+	
+	/**
+	 * Get Number of Broadcasts sent
+	 * @return
+	 */
+	public int getBroadcasts() {
+		return broadcasts;
+	}
+	
+	/**
+	 * Get Completion Time
+	 * @return Milliseconds from the first broadcast until the last confirmation or the give up (or until now while running)
+	 */
+	public double getCompletionTime() {
+		long end = endTime;
+		return ((end == 0 ? System.nanoTime() : end) - startTime) / 1000000.0;
+	}
+	
+	/**
+	 * State Update received from a Member
+	 * @param ip
+	 * @param update
+	 * @return TRUE if this confirmed the member
+	 */
+	boolean confirm(InetAddress ip, DSMessage update) {
+		if(!matches(update)) return false;
+		boolean complete;
+		synchronized(this) {
+			if(finished || !pending.remove(ip)) return false;
+			confirmed.add(ip);
+			complete = pending.isEmpty();
+		}
+		if(complete) finish();
+		return true;
+	}
+	
+	/**
+	 * Does the Update carry the value of the Command?
+	 * @param update
+	 * @return
+	 */
+	private boolean matches(DSMessage update) {
+		if(update.getCommand() != command.getCommand()) return false;
+		int length = command.getPayloadLength();
+		if(update.getPayloadLength() != length) return false;
+		for(int i = 0; i < length; i++) {
+			if(update.getPayloadByte(i) != command.getPayloadByte(i)) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Broadcast sent
+	 */
+	void broadcastSent() {
+		lastBroadcastTime = System.nanoTime();
+		broadcasts++;
+	}
+	
+	/**
+	 * Get Time of the last Broadcast
+	 * @return Nanoseconds (System.nanoTime)
+	 */
+	long getLastBroadcastTime() {
+		return lastBroadcastTime;
+	}
+	
+	/**
+	 * Get broadcast Message
+	 * @return
+	 */
+	DSMessage getMessage() {
+		return command;
+	}
+	
+	/**
+	 * Set Retransmit Timer (Replaces the previous one)
+	 * @param timer
+	 */
+	synchronized void setTimer(ScheduledFuture<?> timer) {
+		if(finished) timer.cancel(false);
+		else this.timer = timer;
+	}
+	
+	/**
+	 * End Operation
+	 */
+	void finish() {
+		synchronized(this) {
+			if(finished) return;
+			finished = true;
+			endTime = System.nanoTime();
+			if(timer != null) timer.cancel(false);
+		}
+		future.complete(this);
+	}
+}
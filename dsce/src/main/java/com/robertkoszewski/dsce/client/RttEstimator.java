@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.client;
+
+/**
+ * Round Trip Time Estimator (Smoothed RTT and variance as in RFC 6298). 
+ * Used to adapt request retransmit intervals to the observed network latency.
+ * @author Robert Koszewski
+ */
+public class RttEstimator {
+	
+	// Variables
+	private long srtt = -1; // Nanoseconds (-1 when no samples yet)
+	private long rttvar = 0;
+	private long samples = 0;
+	
+	// Constants
+	private static final long NANOS_PER_MILLI = 1000000L;
+	
+	// Methods
+	
+	/**
+	 * Add RTT Sample (Only from requests that were not retransmitted)
+	 * @param rttNanos
+	 */
+	public synchronized void sample(long rttNanos) {
+		if(rttNanos < 0) return;
+		if(srtt < 0) {
+			srtt = rttNanos;
+			rttvar = rttNanos / 2;
+		} else {
+			rttvar = (3 * rttvar + Math.abs(srtt - rttNanos)) / 4;
+			srtt = (7 * srtt + rttNanos) / 8;
+		}
+		samples++;
+	}
+	
+	/**
+	 * Get Retransmit Timeout (SRTT + 4 * RTTVAR)
+	 * @param fallback Milliseconds to use while there are no samples
+	 * @param min Minimum Milliseconds
+	 * @param max Maximum Milliseconds
+	 * @return Milliseconds
+	 */
+	public synchronized long getRetransmitTimeout(long fallback, long min, long max) {
+		if(srtt < 0) return fallback;
+		long rto = (srtt + 4 * rttvar + NANOS_PER_MILLI - 1) / NANOS_PER_MILLI; // Round up
+		return Math.max(min, Math.min(max, rto));
+	}
+	
+	/**
+	 * Get Smoothed RTT
+	 * @return Nanoseconds or -1 if there are no samples yet
+	 */
+	public synchronized long getSmoothedRtt() {
+		return srtt;
+	}
+	
+	/**
+	 * Get RTT Variance
+	 * @return Nanoseconds
+	 */
+	public synchronized long getRttVariance() {
+		return rttvar;
+	}
+	
+	/**
+	 * Get Number of Samples
+	 * @return
+	 */
+	public synchronized long getSamples() {
+		return samples;
+	}
+	
+	/**
+	 * Forget all Samples
+	 */
+	public synchronized void reset() {
+		srtt = -1;
+		rttvar = 0;
+		samples = 0;
+	}
+}
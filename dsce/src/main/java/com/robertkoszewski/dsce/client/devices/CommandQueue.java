@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.client.devices;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.messages.DSMessage.Command;
+import com.robertkoszewski.dsce.utils.Threads;
+
+/**
+ * Outbound Command Queue of a Device. 
+ * Commands waiting to be sent are coalesced by Command (The last value wins but keeps its place in the queue) 
+ * and sent in order no faster than the configured rate, so a burst of setter calls becomes 
+ * a bounded stream of the latest values.
+ * @author Robert Koszewski
+ */
+public class CommandQueue implements Runnable {
+	
+	/**
+	 * Initialize Command Queue
+	 * @param device
+	 * @param maxRate Maximum Commands per second
+	 */
+	CommandQueue(DSDevice device, int maxRate) {
+		this.device = device;
+		setMaxRate(maxRate);
+	}
+	
+	// Variables
+	
+	private final DSDevice device;
+	private final LinkedHashMap<Command, DSMessage> pending = new LinkedHashMap<Command, DSMessage>();
+	private final Object sendLock = new Object(); // Held from dequeue to transmit, so a flush never overtakes the timer
+	private volatile long interval; // Nanoseconds between commands
+	private long nextSend = 0;
+	private boolean scheduled = false;
+	
+	// Statistics
+	private long submitted = 0;
+	private long coalesced = 0;
+	private long sent = 0;
+	
+	// Shared Timer
+	private static ScheduledExecutorService scheduler;
+	
+	// Constants
+	public static final int DEFAULT_MAX_RATE = 20; // Commands per second
+	
+	// Methods
+	
+	/**
+	 * Queue Command (Replaces a pending command of the same type)
+	 * @param message
+	 */
+	public synchronized void submit(DSMessage message) {
+		submitted++;
+		if(pending.put(message.getCommand(), message) != null) coalesced++;
+		if(scheduled) return;
+		scheduled = true;
+		long delay = Math.max(0, nextSend - System.nanoTime());
+		getScheduler().schedule(this, delay, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Send the next pending Command (Timer)
+	 */
+	@Override
+	public void run() {
+		synchronized(sendLock) {
+			DSMessage message;
+			synchronized(this) {
+				Iterator<Map.Entry<Command, DSMessage>> it = pending.entrySet().iterator();
+				if(!it.hasNext()) {
+					scheduled = false;
+					return;
+				}
+				message = it.next().getValue();
+				it.remove();
+				nextSend = System.nanoTime() + interval;
+				sent++;
+				if(pending.isEmpty()) scheduled = false;
+				else getScheduler().schedule(this, interval, TimeUnit.NANOSECONDS);
+			}
+			send(message);
+		}
+	}
+	
+	/**
+	 * Send all pending Commands now, in order (After a command the timer is sending)
+	 */
+	public void flush() {
+		synchronized(sendLock) {
+			DSMessage[] messages;
+			synchronized(this) {
+				messages = pending.values().toArray(new DSMessage[pending.size()]);
+				pending.clear();
+				sent += messages.length;
+				nextSend = System.nanoTime() + interval;
+			}
+			for(DSMessage message: messages) send(message);
+		}
+	}
+	
+	/**
+	 * Drop all pending Commands
+	 */
+	public synchronized void clear() {
+		pending.clear();
+	}
+	
+	/**
+	 * Set Maximum Rate
+	 * @param maxRate Commands per second
+	 */
+	public void setMaxRate(int maxRate) {
+		this.interval = 1000000000L / Math.max(1, maxRate);
+	}
+	
+	/**
+	 * Get Maximum Rate
+	 * @return Commands per second
+	 */
+	public int getMaxRate() {
+		return (int) (1000000000L / interval);
+	}
+	
+	/**
+	 * Get Number of pending Commands
+	 * @return
+	 */
+	public synchronized int getPending() {
+		return pending.size();
+	}
+	
+	/**
+	 * Get Number of submitted Commands
+	 * @return
+	 */
+	public synchronized long getSubmitted() {
+		return submitted;
+	}
+	
+	/**
+	 * Get Number of Commands replaced by a newer value before being sent
+	 * @return
+	 */
+	public synchronized long getCoalesced() {
+		return coalesced;
+	}
+	
+	/**
+	 * Get Number of sent Commands
+	 * @return
+	 */
+	public synchronized long getSent() {
+		return sent;
+	}
+	
+	/**
+	 * Send Command
+	 * @param message
+	 */
+	private void send(DSMessage message) {
+		try {
+			device.transmit(message);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Get Shared Timer (Also drives the retransmits of reliable delivery)
+	 * @return
+	 */
+	static synchronized ScheduledExecutorService getScheduler() {
+		if(scheduler == null) {
+			scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					return Threads.newThread("DS Command Queue", true, task);
+				}
+			});
+		}
+		return scheduler;
+	}
+}
@@ -25,7 +25,9 @@ package com.robertkoszewski.dsce.client.devices;
 import java.awt.Color;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.Objects;
 
+import com.robertkoszewski.dsce.client.server.CallbackRegistry;
 import com.robertkoszewski.dsce.client.server.SocketListener;
 import com.robertkoszewski.dsce.messages.AmbientColorMessageWrapper;
 import com.robertkoszewski.dsce.messages.AmbientModeMessageWrapper;
@@ -33,10 +35,13 @@ import com.robertkoszewski.dsce.messages.AmbientSceneMessageWrapper;
 import com.robertkoszewski.dsce.messages.BrightnessMessageWrapper;
 import com.robertkoszewski.dsce.messages.CurrentStateMessageWrapper;
 import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.messages.DSMessage.Command;
 import com.robertkoszewski.dsce.messages.DeviceNameMessageWrapper;
+import com.robertkoszewski.dsce.messages.FrameBuffer;
 import com.robertkoszewski.dsce.messages.InvalidMessageException;
 import com.robertkoszewski.dsce.messages.ModeMessageWrapper;
 import com.robertkoszewski.dsce.messages.ColorSaturationMessageWrapper;
+import com.robertkoszewski.dsce.messages.GroupNameMessageWrapper;
 import com.robertkoszewski.dsce.messages.GroupNumberMessageWrapper;
 import com.robertkoszewski.dsce.utils.DS;
 
@@ -92,7 +97,6 @@ public abstract class DSDevice implements IDSDevice{
 	 */
 	public DSDevice(CurrentStateMessageWrapper csmessage, InetAddress ip) {
 		this(new SocketListener(DS.DS_PORT, DS.DS_MAX_BUFFER), csmessage, ip);
-		// TODO: Initialize change listener
 	}
 	
 	/**
@@ -107,35 +111,269 @@ public abstract class DSDevice implements IDSDevice{
 		this.socket = socket;
 	}
 
-	// Variables
+	// Variables (Volatile as they are updated from the socket thread)
 	private InetAddress ip;
-	private String name;
-	private String groupName;
-	protected byte groupNumber;
-	private byte mode;
-	private byte brightness;
-	private Color ambientColor;
-	private byte ambientScene;
-	private Color saturation;
+	private volatile String name;
+	private volatile String groupName;
+	protected volatile byte groupNumber;
+	private volatile byte mode;
+	private volatile byte brightness;
+	private volatile Color ambientColor;
+	private volatile byte ambientScene;
+	private volatile Color saturation;
+	
+	// Change Listeners
+	private final CallbackRegistry<DeviceChangeListener> changeListeners = 
+			new CallbackRegistry<DeviceChangeListener>(new DeviceChangeListener[0]);
 	
 	// Socket
 	protected SocketListener socket;
+	private volatile CommandQueue commandQueue; // NULL when commands are sent directly
+	private volatile ReliableDelivery reliableDelivery; // NULL when commands are not tracked
 	
 	// Methods
 	
+	/**
+	 * Send Command to the Device (Through the command queue when enabled)
+	 * @param message
+	 * @throws IOException
+	 */
+	protected void sendCommand(DSMessage message) throws IOException {
+		CommandQueue queue = this.commandQueue;
+		if(queue != null) queue.submit(message);
+		else transmit(message);
+	}
+	
+	/**
+	 * Transmit Command now (Tracked until confirmed when reliable delivery is enabled)
+	 * @param message
+	 * @throws IOException
+	 */
+	void transmit(DSMessage message) throws IOException {
+		ReliableDelivery reliable = this.reliableDelivery;
+		if(reliable != null) {
+			reliable.send(message);
+		} else {
+			FrameBuffer frame = FrameBuffer.get(); // Encoded into the pooled buffer of this thread
+			frame.encode(message);
+			socket.sendStaticMessage(getIP(), frame.getData(), 0, frame.getLength());
+		}
+	}
+	
+	/**
+	 * Enable Reliable Delivery (Commands are retransmitted until the device confirms them)
+	 * @param timeout Milliseconds until the first retransmit (Doubled on every retransmit)
+	 * @param retries Maximum Retransmits per command
+	 * @return
+	 */
+	public synchronized ReliableDelivery enableReliableDelivery(long timeout, int retries) {
+		if(reliableDelivery == null) {
+			reliableDelivery = new ReliableDelivery(this, timeout, retries);
+			reliableDelivery.start();
+		} else {
+			reliableDelivery.setTiming(timeout, retries);
+		}
+		return reliableDelivery;
+	}
+	
+	/**
+	 * Disable Reliable Delivery (Outstanding commands are no longer retransmitted)
+	 */
+	public synchronized void disableReliableDelivery() {
+		if(reliableDelivery == null) return;
+		reliableDelivery.stop();
+		reliableDelivery = null;
+	}
+	
+	/**
+	 * Get Reliable Delivery (For its link statistics)
+	 * @return Reliable Delivery or NULL when disabled
+	 */
+	public ReliableDelivery getReliableDelivery() {
+		return reliableDelivery;
+	}
+	
+	/**
+	 * Does the Device State reflect the value of a Command?
+	 * @param command
+	 * @return
+	 */
+	protected boolean reflects(DSMessage command) {
+		switch(command.getCommand()) {
+		case DEVICE_NAME: return new DeviceNameMessageWrapper(command).getDeviceName().equals(name);
+		case GROUP_NAME: return new GroupNameMessageWrapper(command).getGroupName().equals(groupName);
+		case GROUP_NUMBER: return new GroupNumberMessageWrapper(command).getGroupNumber() == groupNumber;
+		case MODE: return command.getPayloadByte(0) == mode;
+		case BRIGHTNESS: return command.getPayloadByte(0) == brightness;
+		case AMBIENT_COLOR: return new AmbientColorMessageWrapper(command).getAmbientColor().equals(ambientColor);
+		case AMBIENT_SCENE: return command.getPayloadByte(0) == ambientScene;
+		case SATURATION_SETTING: return new ColorSaturationMessageWrapper(command).getColorSaturation().equals(saturation);
+		default: return false;
+		}
+	}
+	
+	/**
+	 * Enable the Command Queue (Coalesces repeated commands and limits the send rate)
+	 * @param maxRate Maximum Commands per second
+	 * @return
+	 */
+	public synchronized CommandQueue enableCommandQueue(int maxRate) {
+		if(commandQueue == null) commandQueue = new CommandQueue(this, maxRate);
+		else commandQueue.setMaxRate(maxRate);
+		return commandQueue;
+	}
+	
+	/**
+	 * Disable the Command Queue (Pending commands are sent immediately)
+	 */
+	public synchronized void disableCommandQueue() {
+		if(commandQueue == null) return;
+		commandQueue.flush();
+		commandQueue = null;
+	}
+	
+	/**
+	 * Get Command Queue
+	 * @return Queue or NULL when disabled
+	 */
+	public CommandQueue getCommandQueue() {
+		return commandQueue;
+	}
+	
+	/**
+	 * Add Change Listener (Notified when a received state update changes a property)
+	 * @param listener
+	 */
+	public void addChangeListener(DeviceChangeListener listener) {
+		changeListeners.add(listener);
+	}
+	
+	/**
+	 * Remove Change Listener
+	 * @param listener
+	 * @return TRUE if the listener was registered
+	 */
+	public boolean removeChangeListener(DeviceChangeListener listener) {
+		return changeListeners.remove(listener);
+	}
+	
+	/**
+	 * Apply a received State Update (Current State or a single property update broadcast by the device or its group)
+	 * @param message
+	 * @return TRUE if the update changed the device
+	 */
+	public boolean applyUpdate(DSMessage message) {
+		Command command = message.getCommand();
+		boolean changed;
+		try {
+			synchronized(this) {
+				changed = updateProperty(command, message);
+			}
+		} catch (IndexOutOfBoundsException e) {
+			return false; // Truncated payload. Ignore update
+		}
+		if(changed) {
+			for(DeviceChangeListener listener: changeListeners.snapshot()) {
+				listener.changed(this, command);
+			}
+		}
+		return changed;
+	}
+	
+	/**
+	 * Update a single Property from a Message
+	 * @param command
+	 * @param message
+	 * @return TRUE if the property changed
+	 */
+	protected boolean updateProperty(Command command, DSMessage message) {
+		switch(command) {
+		case CURRENT_STATE:
+			return updateState(new CurrentStateMessageWrapper(message));
+			
+		case DEVICE_NAME:
+			String name = new DeviceNameMessageWrapper(message).getDeviceName();
+			if(name.equals(this.name)) return false;
+			this.name = name;
+			return true;
+			
+		case GROUP_NAME:
+			String groupName = new GroupNameMessageWrapper(message).getGroupName();
+			if(groupName.equals(this.groupName)) return false;
+			this.groupName = groupName;
+			return true;
+			
+		case GROUP_NUMBER:
+			byte groupNumber = new GroupNumberMessageWrapper(message).getGroupNumber();
+			if(groupNumber == this.groupNumber) return false;
+			this.groupNumber = groupNumber;
+			return true;
+			
+		case MODE:
+			Mode mode = new ModeMessageWrapper(message).getMode();
+			if(mode == null || mode.getByte() == this.mode) return false;
+			this.mode = mode.getByte();
+			return true;
+			
+		case BRIGHTNESS:
+			byte brightness = (byte) (new BrightnessMessageWrapper(message).getBrightness() & 0xFF);
+			if(brightness == this.brightness) return false;
+			this.brightness = brightness;
+			return true;
+			
+		case AMBIENT_COLOR:
+			Color ambientColor = new AmbientColorMessageWrapper(message).getAmbientColor();
+			if(ambientColor.equals(this.ambientColor)) return false;
+			this.ambientColor = ambientColor;
+			return true;
+			
+		case AMBIENT_SCENE:
+			AmbientScene ambientScene = new AmbientSceneMessageWrapper(message).getAmbientScene();
+			if(ambientScene == null || ambientScene.getByte() == this.ambientScene) return false;
+			this.ambientScene = ambientScene.getByte();
+			return true;
+			
+		case SATURATION_SETTING:
+			if(message.getPayloadLength() < 3) return false;
+			Color saturation = new Color(message.getPayloadByte(0) & 0xFF, message.getPayloadByte(1) & 0xFF, message.getPayloadByte(2) & 0xFF);
+			if(saturation.equals(this.saturation)) return false;
+			this.saturation = saturation;
+			return true;
+			
+		default:
+			return false;
+		}
+	}
+	
 	/**
 	 * Update Device State
 	 * @param csmessage
+	 * @return TRUE if any property changed
 	 */
-	protected void updateState(CurrentStateMessageWrapper csmessage) {
-		name = csmessage.getName();
-		groupName = csmessage.getGroupName();
-		groupNumber = csmessage.getGroupNumber();
-		mode = csmessage.getMode();
-		brightness = csmessage.getBrightness();
-		ambientColor = csmessage.getAmbientColor();
-		ambientScene = csmessage.getAmbientScene();
-		saturation = csmessage.getColorSaturation();
+	protected boolean updateState(CurrentStateMessageWrapper csmessage) {
+		String name = csmessage.getName();
+		String groupName = csmessage.getGroupName();
+		byte groupNumber = csmessage.getGroupNumber();
+		byte mode = csmessage.getMode();
+		byte brightness = csmessage.getBrightness();
+		Color ambientColor = csmessage.getAmbientColor();
+		byte ambientScene = csmessage.getAmbientScene();
+		Color saturation = csmessage.getColorSaturation();
+		
+		boolean changed = !Objects.equals(name, this.name) || !Objects.equals(groupName, this.groupName) 
+				|| groupNumber != this.groupNumber || mode != this.mode || brightness != this.brightness 
+				|| !Objects.equals(ambientColor, this.ambientColor) || ambientScene != this.ambientScene 
+				|| !Objects.equals(saturation, this.saturation);
+		
+		this.name = name;
+		this.groupName = groupName;
+		this.groupNumber = groupNumber;
+		this.mode = mode;
+		this.brightness = brightness;
+		this.ambientColor = ambientColor;
+		this.ambientScene = ambientScene;
+		this.saturation = saturation;
+		return changed;
 	}
 	
 	/**
@@ -161,7 +399,7 @@ public abstract class DSDevice implements IDSDevice{
 	 */
 	public void setName(String name) throws IOException {
 		this.name = name == null ? "" : name.length() > MAX_STR_LENGTH ? name.substring(0, MAX_STR_LENGTH) : name;
-		socket.sendStaticMessage(getIP(), new DeviceNameMessageWrapper(groupNumber, name).getMessage(DeviceNameMessageWrapper.FLAG_UNICAST));
+		sendCommand(new DeviceNameMessageWrapper(groupNumber, name).getMessage(DeviceNameMessageWrapper.FLAG_UNICAST));
 	}
 
 	/**
@@ -193,7 +431,7 @@ public abstract class DSDevice implements IDSDevice{
 	 * @param groupNumber
 	 */
 	public void setGroupNumber(byte groupNumber) throws IOException {
-		socket.sendStaticMessage(getIP(), new GroupNumberMessageWrapper(this.groupNumber, groupNumber).getMessage(GroupNumberMessageWrapper.FLAG_UNICAST));
+		sendCommand(new GroupNumberMessageWrapper(this.groupNumber, groupNumber).getMessage(GroupNumberMessageWrapper.FLAG_UNICAST));
 		this.groupNumber = groupNumber;
 	}
 	
@@ -212,7 +450,7 @@ public abstract class DSDevice implements IDSDevice{
 	 */
 	public void setMode(Mode mode) throws IOException {
 		this.mode = mode.getByte();
-		socket.sendStaticMessage(getIP(), new ModeMessageWrapper(groupNumber, mode).getMessage(ModeMessageWrapper.FLAG_UNICAST));
+		sendCommand(new ModeMessageWrapper(groupNumber, mode).getMessage(ModeMessageWrapper.FLAG_UNICAST));
 	}
 	
 	/**
@@ -232,7 +470,7 @@ public abstract class DSDevice implements IDSDevice{
 		if(brightness > 100 || brightness < 0) 
 			throw new NumberFormatException("Value can only be between 0 and 100");
 		this.brightness = (byte) (brightness & 0xFF);
-		socket.sendStaticMessage(getIP(), new BrightnessMessageWrapper(groupNumber, brightness).getMessage(BrightnessMessageWrapper.FLAG_UNICAST));
+		sendCommand(new BrightnessMessageWrapper(groupNumber, brightness).getMessage(BrightnessMessageWrapper.FLAG_UNICAST));
 	}
 	
 	/**
@@ -250,7 +488,7 @@ public abstract class DSDevice implements IDSDevice{
 	 */
 	public void setAmbientColor(Color color, boolean broadcastToGroup) throws IOException {
 		this.ambientColor = color;
-		socket.sendStaticMessage(getIP(), new AmbientColorMessageWrapper(groupNumber, color).getMessage(
+		sendCommand(new AmbientColorMessageWrapper(groupNumber, color).getMessage(
 				broadcastToGroup ? AmbientColorMessageWrapper.FLAG_UNICAST_GROUP : AmbientColorMessageWrapper.FLAG_UNICAST_LOCAL));
 	}
 	
@@ -261,7 +499,7 @@ public abstract class DSDevice implements IDSDevice{
 	 */
 	public void setAmbientColor(byte r, byte g, byte b, boolean broadcastToGroup) throws IOException {
 		this.ambientColor = new Color(r, g, b);
-		socket.sendStaticMessage(getIP(), new AmbientColorMessageWrapper(groupNumber, this.ambientColor).getMessage(
+		sendCommand(new AmbientColorMessageWrapper(groupNumber, this.ambientColor).getMessage(
 				broadcastToGroup ? AmbientColorMessageWrapper.FLAG_UNICAST_GROUP : AmbientColorMessageWrapper.FLAG_UNICAST_LOCAL));
 	}
 
@@ -280,7 +518,7 @@ public abstract class DSDevice implements IDSDevice{
 	 */
 	public void setAmbientScene(AmbientScene ambientScene) throws IOException {
 		this.ambientScene = ambientScene.getByte();
-		socket.sendStaticMessage(getIP(), new AmbientSceneMessageWrapper(groupNumber, ambientScene).getMessage(AmbientSceneMessageWrapper.FLAG_UNICAST));
+		sendCommand(new AmbientSceneMessageWrapper(groupNumber, ambientScene).getMessage(AmbientSceneMessageWrapper.FLAG_UNICAST));
 	}
 
 	/**
@@ -289,7 +527,7 @@ public abstract class DSDevice implements IDSDevice{
 	 * @throws IOException 
 	 */
 	public void setAmbientMode(AmbientMode mode) throws IOException {
-		socket.sendStaticMessage(getIP(), new AmbientModeMessageWrapper(groupNumber, mode).getMessage(AmbientModeMessageWrapper.FLAG_UNICAST));
+		sendCommand(new AmbientModeMessageWrapper(groupNumber, mode).getMessage(AmbientModeMessageWrapper.FLAG_UNICAST));
 	}
 	
 	/**
@@ -307,7 +545,7 @@ public abstract class DSDevice implements IDSDevice{
 	 */
 	public void setColorSaturation(Color saturation) throws IOException {
 		this.saturation = saturation;
-		socket.sendStaticMessage(getIP(), new ColorSaturationMessageWrapper(groupNumber, saturation).getMessage(ColorSaturationMessageWrapper.FLAG_UNICAST)); 
+		sendCommand(new ColorSaturationMessageWrapper(groupNumber, saturation).getMessage(ColorSaturationMessageWrapper.FLAG_UNICAST)); 
 	}
 
 	// Static Methods
@@ -321,6 +559,18 @@ public abstract class DSDevice implements IDSDevice{
 	 * @throws NotCurrentStateMessage 
 	 */
 	public static DSDevice parseDevice(DSMessage message, InetAddress deviceIP) throws NotCurrentStateMessage {
+		return parseDevice(new SocketListener(DS.DS_PORT, DS.DS_MAX_BUFFER), message, deviceIP);
+	}
+	
+	/**
+	 * Parse Device using a shared Socket
+	 * @param socket
+	 * @param message
+	 * @param deviceIP
+	 * @return
+	 * @throws NotCurrentStateMessage 
+	 */
+	public static DSDevice parseDevice(SocketListener socket, DSMessage message, InetAddress deviceIP) throws NotCurrentStateMessage {
 		// Check if the message is a current state message
 		if(message.getCommand() != DSMessage.Command.CURRENT_STATE) {
 			throw new NotCurrentStateMessage();
@@ -331,11 +581,11 @@ public abstract class DSDevice implements IDSDevice{
 
 		switch(currentState.getDevice()) {
 		case DREAMSCREEN4K:
-			return new DreamScreen4K(currentState, deviceIP);
+			return new DreamScreen4K(socket, currentState, deviceIP);
 		case DREAMSCREENHD:
-			return new DreamScreenHD(currentState, deviceIP);
+			return new DreamScreenHD(socket, currentState, deviceIP);
 		case SIDEKICK:
-			return new SideKick(currentState, deviceIP);
+			return new SideKick(socket, currentState, deviceIP);
 		default:
 			System.err.println("UNKNOWN DEVICE TYPE: " + currentState.getDevice().name()); // TODO: Maybe throw an exception?
 			return null;
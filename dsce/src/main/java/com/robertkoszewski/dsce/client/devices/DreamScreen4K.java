@@ -24,6 +24,7 @@ package com.robertkoszewski.dsce.client.devices;
 
 import java.net.InetAddress;
 
+import com.robertkoszewski.dsce.client.server.SocketListener;
 import com.robertkoszewski.dsce.messages.CurrentStateMessageWrapper;
 import com.robertkoszewski.dsce.messages.DSMessage;
 
@@ -53,6 +54,16 @@ public class DreamScreen4K extends DreamScreenHD {
 		super(csmessage, ip);
 	}
 	
+	/**
+	 * Device from CurrentStateMessage Wrapper sharing a Socket
+	 * @param socket
+	 * @param csmessage
+	 * @param ip
+	 */
+	public DreamScreen4K(SocketListener socket, CurrentStateMessageWrapper csmessage, InetAddress ip) {
+		super(socket, csmessage, ip);
+	}
+	
 	@Override
 	public Device getDeviceType() {
 		return Device.DREAMSCREEN4K;
@@ -24,8 +24,11 @@ package com.robertkoszewski.dsce.client.devices;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.Objects;
 
+import com.robertkoszewski.dsce.client.server.SocketListener;
 import com.robertkoszewski.dsce.messages.*;
+import com.robertkoszewski.dsce.messages.DSMessage.Command;
 
 /**
  * DreamScreen HD Device
@@ -64,12 +67,22 @@ public class DreamScreenHD extends DSDevice {
 		super(csmessage, ip);
 	}
 	
+	/**
+	 * Device from CurrentStateMessage Wrapper sharing a Socket
+	 * @param socket
+	 * @param csmessage
+	 * @param ip
+	 */
+	public DreamScreenHD(SocketListener socket, CurrentStateMessageWrapper csmessage, InetAddress ip) {
+		super(socket, csmessage, ip);
+	}
+	
 	// Variables
-	private byte hdmiInput;
-	private String inputName1;
-	private String inputName2;
-	private String inputName3;
-	private byte hdmiActiveChannels;
+	private volatile byte hdmiInput;
+	private volatile String inputName1;
+	private volatile String inputName2;
+	private volatile String inputName3;
+	private volatile byte hdmiActiveChannels;
 
 	// Device Type
 	
@@ -78,14 +91,74 @@ public class DreamScreenHD extends DSDevice {
 	}
 
 	@Override
-	protected void updateState(CurrentStateMessageWrapper csmessage) {
-		super.updateState(csmessage); // Update State
+	protected boolean updateState(CurrentStateMessageWrapper csmessage) {
+		boolean changed = super.updateState(csmessage); // Update State
 		// Update DreamScreen HD related properties
-		hdmiInput = csmessage.getHDMIInput();
-		inputName1 = csmessage.getHDMIInput1Name();
-		inputName2 = csmessage.getHDMIInput2Name();
-		inputName3 = csmessage.getHDMIInput3Name();
-		hdmiActiveChannels = csmessage.getActiveChannels();
+		byte hdmiInput = csmessage.getHDMIInput();
+		String inputName1 = csmessage.getHDMIInput1Name();
+		String inputName2 = csmessage.getHDMIInput2Name();
+		String inputName3 = csmessage.getHDMIInput3Name();
+		byte hdmiActiveChannels = csmessage.getActiveChannels();
+		
+		changed |= hdmiInput != this.hdmiInput || !Objects.equals(inputName1, this.inputName1) 
+				|| !Objects.equals(inputName2, this.inputName2) || !Objects.equals(inputName3, this.inputName3) 
+				|| hdmiActiveChannels != this.hdmiActiveChannels;
+		
+		this.hdmiInput = hdmiInput;
+		this.inputName1 = inputName1;
+		this.inputName2 = inputName2;
+		this.inputName3 = inputName3;
+		this.hdmiActiveChannels = hdmiActiveChannels;
+		return changed;
+	}
+	
+	@Override
+	protected boolean updateProperty(Command command, DSMessage message) {
+		switch(command) {
+		case HDMI_INPUT:
+			byte hdmiInput = new HDMIInputMessageWrapper(message).getHDMIInput();
+			if(hdmiInput == this.hdmiInput) return false;
+			this.hdmiInput = hdmiInput;
+			return true;
+			
+		case HDMI_NAME_1:
+			String inputName1 = new HDMINameMessageWrapper(message).getInputName();
+			if(inputName1.equals(this.inputName1)) return false;
+			this.inputName1 = inputName1;
+			return true;
+			
+		case HDMI_NAME_2:
+			String inputName2 = new HDMINameMessageWrapper(message).getInputName();
+			if(inputName2.equals(this.inputName2)) return false;
+			this.inputName2 = inputName2;
+			return true;
+			
+		case HDMI_NAME_3:
+			String inputName3 = new HDMINameMessageWrapper(message).getInputName();
+			if(inputName3.equals(this.inputName3)) return false;
+			this.inputName3 = inputName3;
+			return true;
+			
+		case HDMI_ACTIVE_CHANNELS:
+			byte hdmiActiveChannels = message.getPayloadByte(0);
+			if(hdmiActiveChannels == this.hdmiActiveChannels) return false;
+			this.hdmiActiveChannels = hdmiActiveChannels;
+			return true;
+			
+		default:
+			return super.updateProperty(command, message);
+		}
+	}
+	
+	@Override
+	protected boolean reflects(DSMessage command) {
+		switch(command.getCommand()) {
+		case HDMI_INPUT: return command.getPayloadByte(0) == hdmiInput;
+		case HDMI_NAME_1: return new HDMINameMessageWrapper(command).getInputName().equals(inputName1);
+		case HDMI_NAME_2: return new HDMINameMessageWrapper(command).getInputName().equals(inputName2);
+		case HDMI_NAME_3: return new HDMINameMessageWrapper(command).getInputName().equals(inputName3);
+		default: return super.reflects(command);
+		}
 	}
 	
 	// Methods
@@ -107,7 +180,7 @@ public class DreamScreenHD extends DSDevice {
 		if(hdmiInput < 1) hdmiInput = 1;
 		else if(hdmiInput > 3) hdmiInput = 3;
 		this.hdmiInput = (byte) ((hdmiInput - 1) & 0xFF);
-		socket.sendStaticMessage(getIP(), new HDMIInputMessageWrapper(groupNumber, this.hdmiInput).getMessage(HDMIInputMessageWrapper.FLAG_UNICAST));
+		sendCommand(new HDMIInputMessageWrapper(groupNumber, this.hdmiInput).getMessage(HDMIInputMessageWrapper.FLAG_UNICAST));
 	}
 	
 	/**
@@ -125,7 +198,7 @@ public class DreamScreenHD extends DSDevice {
 	 */
 	public void setHDMIInput1Name(String name) throws IOException {
 		this.inputName1 = name;
-		socket.sendStaticMessage(getIP(), new HDMINameMessageWrapper(groupNumber, 1, name).getMessage(HDMINameMessageWrapper.FLAG_UNICAST));
+		sendCommand(new HDMINameMessageWrapper(groupNumber, 1, name).getMessage(HDMINameMessageWrapper.FLAG_UNICAST));
 	}
 	
 	/**
@@ -143,7 +216,7 @@ public class DreamScreenHD extends DSDevice {
 	 */
 	public void setHDMIInput2Name(String name) throws IOException {
 		this.inputName2 = name;
-		socket.sendStaticMessage(getIP(), new HDMINameMessageWrapper(groupNumber, 2, name).getMessage(HDMINameMessageWrapper.FLAG_UNICAST));
+		sendCommand(new HDMINameMessageWrapper(groupNumber, 2, name).getMessage(HDMINameMessageWrapper.FLAG_UNICAST));
 	}
 	
 	/**
@@ -161,7 +234,7 @@ public class DreamScreenHD extends DSDevice {
 	 */
 	public void setHDMIInput3Name(String name) throws IOException {
 		this.inputName3 = name;
-		socket.sendStaticMessage(getIP(), new HDMINameMessageWrapper(groupNumber, 3, name).getMessage(HDMINameMessageWrapper.FLAG_UNICAST));
+		sendCommand(new HDMINameMessageWrapper(groupNumber, 3, name).getMessage(HDMINameMessageWrapper.FLAG_UNICAST));
 	}
 	
 	/**
@@ -0,0 +1,341 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.client.devices;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.EnumMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.robertkoszewski.dsce.client.server.MessageFilter;
+import com.robertkoszewski.dsce.client.server.MessageReceived;
+import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.messages.DSMessage.Command;
+
+/**
+ * Reliable Command Delivery of a Device. 
+ * Every command stays outstanding until the device confirms it, either with the matching update it broadcasts 
+ * or with a state reply that reflects the new value. Unconfirmed commands are retransmitted with exponential 
+ * backoff (Together with a state request, in case only the confirmation got lost). 
+ * A newer command of the same type replaces the outstanding one.
+ * @author Robert Koszewski
+ */
+public class ReliableDelivery implements MessageReceived {
+	
+	/**
+	 * Initialize Reliable Delivery
+	 * @param device
+	 * @param timeout Milliseconds until the first retransmit
+	 * @param retries Maximum Retransmits per command
+	 */
+	ReliableDelivery(DSDevice device, long timeout, int retries) {
+		this.device = device;
+		setTiming(timeout, retries);
+	}
+	
+	// Variables
+	
+	private final DSDevice device;
+	private volatile long timeout;
+	private volatile int retries;
+	private final EnumMap<Command, Outstanding> outstanding = new EnumMap<Command, Outstanding>(Command.class);
+	
+	// Statistics
+	private long sent = 0;
+	private long acknowledged = 0;
+	private long retransmissions = 0;
+	private long lost = 0;
+	private long superseded = 0;
+	private long ackTime = 0; // Nanoseconds, sum over all acknowledged commands
+	
+	// Constants
+	public static final long DEFAULT_TIMEOUT = 250; // Milliseconds
+	public static final int DEFAULT_RETRIES = 4;
+	
+	/**
+	 * Commands that confirm a Command
+	 */
+	private static final Command[] CONFIRMATIONS = {
+		Command.CURRENT_STATE, Command.DEVICE_NAME, Command.GROUP_NAME, Command.GROUP_NUMBER, Command.MODE, 
+		Command.BRIGHTNESS, Command.AMBIENT_COLOR, Command.AMBIENT_SCENE, Command.SATURATION_SETTING, 
+		Command.HDMI_INPUT, Command.HDMI_NAME_1, Command.HDMI_NAME_2, Command.HDMI_NAME_3
+	};
+	
+	// Methods
+	
+	/**
+	 * Start listening for Confirmations
+	 */
+	void start() {
+		device.socket.addCallback(new MessageFilter(device.getIP(), CONFIRMATIONS), this);
+	}
+	
+	/**
+	 * Stop listening for Confirmations (Outstanding commands are dropped)
+	 */
+	void stop() {
+		device.socket.removeCallback(this);
+		synchronized(this) {
+			for(Outstanding command: outstanding.values()) command.cancel();
+			outstanding.clear();
+		}
+	}
+	
+	/**
+	 * Set Retransmit Timing
+	 * @param timeout Milliseconds until the first retransmit
+	 * @param retries Maximum Retransmits per command
+	 */
+	public void setTiming(long timeout, int retries) {
+		this.timeout = Math.max(1, timeout);
+		this.retries = Math.max(0, retries);
+	}
+	
+	/**
+	 * Send Command and track it until confirmed
+	 * @param message
+	 * @throws IOException
+	 */
+	void send(DSMessage message) throws IOException {
+		Command command = message.getCommand();
+		if(!isConfirmable(command)) { // Nothing the device reports back
+			device.socket.sendStaticMessage(device.getIP(), message);
+			return;
+		}
+		
+		Outstanding pending = new Outstanding(message);
+		synchronized(this) {
+			Outstanding previous = outstanding.put(command, pending);
+			if(previous != null) {
+				previous.cancel();
+				superseded++;
+			}
+			sent++;
+		}
+		pending.transmit(false);
+	}
+	
+	/**
+	 * Confirmation received
+	 */
+	@Override
+	public void run(DSMessage message, InetAddress senderIP, int senderPort) {
+		Command command = message.getCommand();
+		long now = System.nanoTime();
+		
+		// Keep the device state up to date with what the device reports
+		if(command == Command.CURRENT_STATE || message.getFlags() == DSMessage.FLAG_BROADCAST_TO_GROUP) 
+			device.applyUpdate(message);
+		else return;
+		
+		synchronized(this) {
+			if(outstanding.isEmpty()) return;
+			if(command == Command.CURRENT_STATE) {
+				// State reply confirms everything it reflects
+				Outstanding[] commands = outstanding.values().toArray(new Outstanding[outstanding.size()]);
+				for(Outstanding pending: commands) {
+					if(device.reflects(pending.message)) acknowledge(pending, now);
+				}
+			} else {
+				// Update confirms the command with the same value
+				Outstanding pending = outstanding.get(command);
+				if(pending != null && samePayload(pending.message, message)) acknowledge(pending, now);
+			}
+		}
+	}
+	
+	/**
+	 * Get Number of tracked Commands sent
+	 * @return
+	 */
+	public synchronized long getSent() {
+		return sent;
+	}
+	
+	/**
+	 * Get Number of confirmed Commands
+	 * @return
+	 */
+	public synchronized long getAcknowledged() {
+		return acknowledged;
+	}
+	
+	/**
+	 * Get Number of Retransmissions
+	 * @return
+	 */
+	public synchronized long getRetransmissions() {
+		return retransmissions;
+	}
+	
+	/**
+	 * Get Number of Commands never confirmed after all retries
+	 * @return
+	 */
+	public synchronized long getLost() {
+		return lost;
+	}
+	
+	/**
+	 * Get Number of Commands replaced by a newer one of the same type before being confirmed
+	 * @return
+	 */
+	public synchronized long getSuperseded() {
+		return superseded;
+	}
+	
+	/**
+	 * Get Number of outstanding Commands
+	 * @return
+	 */
+	public synchronized int getOutstanding() {
+		return outstanding.size();
+	}
+	
+	/**
+	 * Get Loss Rate (Lost of all finished commands)
+	 * @return 0 to 1
+	 */
+	public synchronized double getLossRate() {
+		long finished = acknowledged + lost;
+		return finished == 0 ? 0 : (double) lost / finished;
+	}
+	
+	/**
+	 * Get Retransmit Rate (Retransmissions per tracked command)
+	 * @return
+	 */
+	public synchronized double getRetransmitRate() {
+		return sent == 0 ? 0 : (double) retransmissions / sent;
+	}
+	
+	/**
+	 * Get Average Time from first Transmission to Confirmation
+	 * @return Milliseconds
+	 */
+	public synchronized double getAverageAckTime() {
+		return acknowledged == 0 ? 0 : ackTime / (double) acknowledged / 1000000.0;
+	}
+	
+	/**
+	 * Command confirmed
+	 * @param pending
+	 * @param now
+	 */
+	private void acknowledge(Outstanding pending, long now) {
+		pending.cancel();
+		outstanding.remove(pending.message.getCommand());
+		acknowledged++;
+		ackTime += now - pending.firstSent;
+	}
+	
+	/**
+	 * Can the Command be confirmed? (Write only commands are sent once)
+	 * @param command
+	 * @return
+	 */
+	private static boolean isConfirmable(Command command) {
+		for(Command confirmation: CONFIRMATIONS) {
+			if(confirmation == command) return command != Command.CURRENT_STATE;
+		}
+		return false;
+	}
+	
+	/**
+	 * Do two Messages carry the same Payload?
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	private static boolean samePayload(DSMessage a, DSMessage b) {
+		int length = a.getPayloadLength();
+		if(b.getPayloadLength() != length) return false;
+		for(int i = 0; i < length; i++) {
+			if(a.getPayloadByte(i) != b.getPayloadByte(i)) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Outstanding Command
+	 */
+	private class Outstanding implements Runnable {
+		
+		Outstanding(DSMessage message) {
+			this.message = message;
+		}
+		
+		final DSMessage message;
+		final long firstSent = System.nanoTime();
+		private int attempts = 0;
+		private boolean done = false;
+		private ScheduledFuture<?> timer;
+		
+		/**
+		 * Transmit Command and arm the Retransmit Timer
+		 * @param verify Also request the device state
+		 */
+		void transmit(boolean verify) {
+			long delay;
+			synchronized(ReliableDelivery.this) {
+				if(done) return;
+				delay = timeout << Math.min(attempts, 16);
+				attempts++;
+				timer = CommandQueue.getScheduler().schedule(this, delay, TimeUnit.MILLISECONDS);
+			}
+			try {
+				device.socket.sendStaticMessage(device.getIP(), message);
+				if(verify) device.socket.sendStaticMessage(device.getIP(), DSMessage.MESSAGE_READ_CURRENT_STATE);
+			} catch (IOException e) {
+				e.printStackTrace(); // Retransmitted on timeout
+			}
+		}
+		
+		/**
+		 * Stop tracking
+		 */
+		void cancel() {
+			done = true;
+			if(timer != null) timer.cancel(false);
+		}
+		
+		/**
+		 * Not confirmed in time
+		 */
+		@Override
+		public void run() {
+			synchronized(ReliableDelivery.this) {
+				if(done) return;
+				if(attempts > retries) {
+					cancel();
+					outstanding.remove(message.getCommand());
+					lost++;
+					return;
+				}
+				retransmissions++;
+			}
+			transmit(true);
+		}
+	}
+}
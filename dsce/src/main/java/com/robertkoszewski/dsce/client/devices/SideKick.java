@@ -24,6 +24,7 @@ package com.robertkoszewski.dsce.client.devices;
 
 import java.net.InetAddress;
 
+import com.robertkoszewski.dsce.client.server.SocketListener;
 import com.robertkoszewski.dsce.messages.CurrentStateMessageWrapper;
 import com.robertkoszewski.dsce.messages.DSMessage;
 
@@ -56,6 +57,16 @@ public class SideKick extends DSDevice {
 	public SideKick(CurrentStateMessageWrapper csmessage, InetAddress ip) {
 		super(csmessage, ip);
 	}
+	
+	/**
+	 * Device from CurrentStateMessage Wrapper sharing a Socket
+	 * @param socket
+	 * @param csmessage
+	 * @param ip
+	 */
+	public SideKick(SocketListener socket, CurrentStateMessageWrapper csmessage, InetAddress ip) {
+		super(socket, csmessage, ip);
+	}
 
 	/**
 	 * Get Device Type
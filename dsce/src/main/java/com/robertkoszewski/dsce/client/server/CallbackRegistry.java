@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.client.server;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free Copy-On-Write Callback Registry. 
+ * Writers publish a new array on every change; readers iterate an immutable snapshot 
+ * without taking locks or allocating.
+ * @author Robert Koszewski
+ * @param <T> Callback Type
+ */
+public class CallbackRegistry<T> {
+	
+	/**
+	 * Initialize Callback Registry
+	 * @param empty Empty array of the callback type (Used as the initial snapshot)
+	 */
+	public CallbackRegistry(T[] empty) {
+		if(empty.length != 0) throw new IllegalArgumentException("Initial array must be empty");
+		this.empty = empty;
+		this.callbacks = new AtomicReference<T[]>(empty);
+	}
+	
+	// Variables
+	
+	private final T[] empty;
+	private final AtomicReference<T[]> callbacks;
+	
+	// Methods
+	
+	/**
+	 * Get Current Snapshot (Must not be modified)
+	 * @return
+	 */
+	public T[] snapshot() {
+		return callbacks.get();
+	}
+	
+	/**
+	 * Add Callback
+	 * @param callback
+	 */
+	public void add(T callback) {
+		while(true) {
+			T[] current = callbacks.get();
+			T[] next = Arrays.copyOf(current, current.length + 1);
+			next[current.length] = callback;
+			if(callbacks.compareAndSet(current, next)) return;
+		}
+	}
+	
+	/**
+	 * Remove first occurrence of a Callback
+	 * @param callback
+	 * @return TRUE if the callback was registered
+	 */
+	public boolean remove(T callback) {
+		while(true) {
+			T[] current = callbacks.get();
+			int index = -1;
+			for(int i = 0; i < current.length; i++) {
+				if(current[i] == null ? callback == null : current[i].equals(callback)) {
+					index = i;
+					break;
+				}
+			}
+			if(index == -1) return false;
+			
+			T[] next;
+			if(current.length == 1) {
+				next = empty;
+			} else {
+				next = Arrays.copyOf(current, current.length - 1);
+				System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+			}
+			if(callbacks.compareAndSet(current, next)) return true;
+		}
+	}
+	
+	/**
+	 * Remove all Callbacks
+	 */
+	public void clear() {
+		callbacks.set(empty);
+	}
+	
+	/**
+	 * Get Number of registered Callbacks
+	 * @return
+	 */
+	public int size() {
+		return callbacks.get().length;
+	}
+	
+	/**
+	 * Is the Registry empty?
+	 * @return
+	 */
+	public boolean isEmpty() {
+		return callbacks.get().length == 0;
+	}
+}
@@ -0,0 +1,285 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.client.server;
+
+import java.net.InetAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.messages.InvalidMessageException;
+import com.robertkoszewski.dsce.utils.Threads;
+
+/**
+ * Pipelined Message Dispatch. 
+ * The receive thread copies each validated frame into the bounded queue of a worker selected by the 
+ * sender address, so messages of one device are always handled in order by the same worker while 
+ * different devices are handled in parallel.
+ * @author Robert Koszewski
+ */
+public class DispatchPipeline {
+	
+	/**
+	 * Initialize Dispatch Pipeline
+	 * @param listener Socket Listener whose callbacks are run by the workers
+	 * @param workers Number of worker threads
+	 * @param queueCapacity Capacity of each worker queue
+	 * @param policy What to do when a worker queue is full
+	 */
+	public DispatchPipeline(SocketListener listener, int workers, int queueCapacity, OverflowPolicy policy) {
+		if(workers < 1) throw new IllegalArgumentException("At least one worker is required");
+		if(queueCapacity < 1) throw new IllegalArgumentException("Queue capacity must be positive");
+		this.listener = listener;
+		this.policy = policy;
+		this.workers = new Worker[workers];
+		for(int i = 0; i < workers; i++) {
+			this.workers[i] = new Worker(queueCapacity);
+		}
+	}
+	
+	// Variables
+	
+	private final SocketListener listener;
+	private final OverflowPolicy policy;
+	private final Worker[] workers;
+	private volatile boolean running = false;
+	private volatile int generation = 0; // Incremented on every start, workers of older starts exit
+	
+	// Statistics
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong backpressure = new AtomicLong();
+	private final AtomicLong processed = new AtomicLong();
+	
+	// Constants
+	private static final long POLL_TIMEOUT = 100; // Milliseconds
+	private static final long STOP_TIMEOUT = 1000; // Milliseconds
+	private static final Task STOP = new Task(new byte[0], null, 0); // Wakes up a waiting worker
+	
+	// Methods
+	
+	/**
+	 * Start Workers
+	 */
+	public synchronized void start() {
+		if(running) return;
+		running = true;
+		final int generation = ++this.generation;
+		for(int i = 0; i < workers.length; i++) {
+			final Worker worker = workers[i];
+			worker.thread = Threads.startThread("DS Dispatch Worker " + i, true, new Runnable() {
+				@Override
+				public void run() {
+					worker.run(generation);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Stop Workers (Queued messages are discarded). Waits a bounded time for the workers to finish their current message, 
+	 * a worker stuck in a callback is left behind and exits once the callback returns
+	 * @return FALSE if a worker did not finish in time
+	 */
+	public boolean stop() {
+		Thread[] threads = new Thread[workers.length];
+		synchronized(this) {
+			running = false;
+			for(int i = 0; i < workers.length; i++) {
+				workers[i].queue.clear();
+				workers[i].queue.offer(STOP);
+				threads[i] = workers[i].thread;
+			}
+		}
+		
+		// Join outside the lock
+		long deadline = System.currentTimeMillis() + STOP_TIMEOUT;
+		boolean stopped = true;
+		for(Thread thread: threads) {
+			if(thread == null || thread == Thread.currentThread()) continue;
+			long timeout = deadline - System.currentTimeMillis();
+			try {
+				if(timeout > 0) thread.join(timeout);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			if(thread.isAlive()) stopped = false;
+		}
+		return stopped;
+	}
+	
+	/**
+	 * Is the Pipeline running?
+	 * @return
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+	
+	/**
+	 * Submit a validated Message (Called by the receive thread)
+	 * @param message Message view (Copied before queuing)
+	 * @param srcIP
+	 * @param srcPort
+	 * @return FALSE if the message was dropped
+	 */
+	public boolean submit(DSMessage message, InetAddress srcIP, int srcPort) {
+		submitted.incrementAndGet();
+		Task task = new Task(message.getMessage(), srcIP, srcPort);
+		Worker worker = workers[shard(srcIP)];
+		
+		if(worker.queue.offer(task)) return true;
+		
+		// Queue Full
+		if(policy == OverflowPolicy.BLOCK && running) {
+			backpressure.incrementAndGet();
+			try {
+				while(running) {
+					if(worker.queue.offer(task, POLL_TIMEOUT, TimeUnit.MILLISECONDS)) return true;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		dropped.incrementAndGet();
+		return false;
+	}
+	
+	/**
+	 * Get Worker Index for a Sender
+	 * @param srcIP
+	 * @return
+	 */
+	private int shard(InetAddress srcIP) {
+		return (srcIP.hashCode() & 0x7FFFFFFF) % workers.length;
+	}
+	
+	/**
+	 * Get Number of Workers
+	 * @return
+	 */
+	public int getWorkerCount() {
+		return workers.length;
+	}
+	
+	/**
+	 * Get Submitted Messages
+	 * @return
+	 */
+	public long getSubmittedMessages() {
+		return submitted.get();
+	}
+	
+	/**
+	 * Get Processed Messages
+	 * @return
+	 */
+	public long getProcessedMessages() {
+		return processed.get();
+	}
+	
+	/**
+	 * Get Dropped Messages (Queue full with OverflowPolicy.DROP, or pipeline stopped)
+	 * @return
+	 */
+	public long getDroppedMessages() {
+		return dropped.get();
+	}
+	
+	/**
+	 * Get Backpressure Events (Receive thread had to wait for a full queue with OverflowPolicy.BLOCK)
+	 * @return
+	 */
+	public long getBackpressureEvents() {
+		return backpressure.get();
+	}
+	
+	/**
+	 * Get Messages currently queued across all Workers
+	 * @return
+	 */
+	public int getQueuedMessages() {
+		int queued = 0;
+		for(Worker worker: workers) queued += worker.queue.size();
+		return queued;
+	}
+	
+	/**
+	 * Queue Overflow Policy
+	 */
+	public enum OverflowPolicy {
+		DROP,	// Drop the new message (Receive thread never waits)
+		BLOCK	// Wait for space (Backpressure into the socket receive buffer)
+	}
+	
+	// Queued Message
+	private static class Task {
+		public Task(byte[] frame, InetAddress srcIP, int srcPort) {
+			this.frame = frame;
+			this.srcIP = srcIP;
+			this.srcPort = srcPort;
+		}
+		final byte[] frame;
+		final InetAddress srcIP;
+		final int srcPort;
+	}
+	
+	// Worker (Runs on a platform or virtual thread)
+	private class Worker {
+		
+		public Worker(int queueCapacity) {
+			this.queue = new ArrayBlockingQueue<Task>(queueCapacity);
+		}
+		
+		private final ArrayBlockingQueue<Task> queue;
+		private final DSMessage view = new DSMessage();
+		private volatile Thread thread;
+		
+		/**
+		 * Handle queued Messages until stopped or restarted
+		 * @param generation Start this worker belongs to
+		 */
+		public void run(int generation) {
+			while(running && generation == DispatchPipeline.this.generation) {
+				Task task;
+				try {
+					task = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+				} catch (InterruptedException e) {
+					break;
+				}
+				if(task == null || task == STOP) continue;
+				
+				try {
+					listener.dispatch(view.wrap(task.frame, 0, task.frame.length, false), task.srcIP, task.srcPort);
+				} catch (InvalidMessageException e) {
+					// Validated by the receive thread. Should not happen
+				} catch (RuntimeException e) {
+					e.printStackTrace(); // A failing callback must not kill the worker
+				}
+				processed.incrementAndGet();
+			}
+		}
+	}
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.client.server;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.messages.DSMessage.Command;
+
+/**
+ * Message Filter for routed Callbacks. 
+ * Selects messages by Command and optionally by source IP and group address.
+ * @author Robert Koszewski
+ */
+public class MessageFilter {
+	
+	/**
+	 * Filter by Commands (No commands matches all commands)
+	 * @param commands
+	 */
+	public MessageFilter(Command... commands) {
+		this(null, ANY_GROUP, commands);
+	}
+	
+	/**
+	 * Filter by Source IP and Commands
+	 * @param sourceIP Source IP (NULL for any source)
+	 * @param commands
+	 */
+	public MessageFilter(InetAddress sourceIP, Command... commands) {
+		this(sourceIP, ANY_GROUP, commands);
+	}
+	
+	/**
+	 * Filter by Source IP, Group Address and Commands
+	 * @param sourceIP Source IP (NULL for any source)
+	 * @param group Group Address (ANY_GROUP for any group)
+	 * @param commands
+	 */
+	public MessageFilter(InetAddress sourceIP, int group, Command... commands) {
+		this.sourceIP = sourceIP;
+		this.group = group;
+		this.commands = commands.length == 0 ? EnumSet.allOf(Command.class) : EnumSet.copyOf(Arrays.asList(commands));
+	}
+	
+	// Variables
+	
+	private final InetAddress sourceIP;
+	private final int group;
+	private final EnumSet<Command> commands;
+	
+	// Constants
+	public static final int ANY_GROUP = -1;
+	
+	// Methods
+	
+	/**
+	 * Does the Message match this Filter?
+	 * @param message
+	 * @param senderIP
+	 * @return
+	 */
+	public boolean matches(DSMessage message, InetAddress senderIP) {
+		return commands.contains(message.getCommand()) && matchesSource(message, senderIP);
+	}
+	
+	/**
+	 * Does the Message match the Source IP and Group of this Filter? (Command not checked)
+	 * @param message
+	 * @param senderIP
+	 * @return
+	 */
+	public boolean matchesSource(DSMessage message, InetAddress senderIP) {
+		if(group != ANY_GROUP && (message.getGroupAddress() & 0xFF) != (group & 0xFF)) return false;
+		if(sourceIP != null && !sourceIP.equals(senderIP)) return false;
+		return true;
+	}
+	
+	/**
+	 * Get Filtered Commands
+	 * @return
+	 */
+	public EnumSet<Command> getCommands() {
+		return EnumSet.copyOf(commands);
+	}
+	
+	/**
+	 * Get Filtered Source IP
+	 * @return Source IP or NULL if any
+	 */
+	public InetAddress getSourceIP() {
+		return sourceIP;
+	}
+	
+	/**
+	 * Get Filtered Group Address
+	 * @return Group Address or ANY_GROUP
+	 */
+	public int getGroup() {
+		return group;
+	}
+}
@@ -28,6 +28,8 @@ import com.robertkoszewski.dsce.messages.DSMessage;
 
 /**
  * Message Received Callback
+ * 
+ * The message is a view over the receive buffer and is only valid during the call. Use DSMessage.copy() to keep it.
  * @author Robert Koszewski
  */
 public interface MessageReceived{
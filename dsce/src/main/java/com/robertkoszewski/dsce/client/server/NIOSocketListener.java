@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.client.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import com.robertkoszewski.dsce.utils.NetworkInterface;
+
+/**
+ * Socket Listener with a NIO (DatagramChannel + Selector) receive engine.
+ * Drop-in replacement for the SocketListener: all queued datagrams are drained on every wakeup
+ * into a reused direct buffer and parsed in place by a reused message view, so the receive loop does not allocate per packet.
+ * @author Robert Koszewski
+ */
+public class NIOSocketListener extends SocketListener {
+
+	public NIOSocketListener(int port, int buffer_size, boolean autoStartStop, NetworkInterface networkInterface) {
+		super(port, buffer_size, autoStartStop, networkInterface);
+	}
+	
+	public NIOSocketListener(int port, int buffer_size, boolean autoStartStop) {
+		super(port, buffer_size, autoStartStop);
+	}
+	
+	public NIOSocketListener(int port, int buffer_size, NetworkInterface networkInterface) {
+		super(port, buffer_size, networkInterface);
+	}
+	
+	public NIOSocketListener(int port, int buffer_size) {
+		super(port, buffer_size);
+	}
+	
+	@Override
+	protected ServerThread newServerThread() {
+		return new NIOServerThread();
+	}
+	
+	/**
+	 * NIO Server Thread
+	 */
+	private class NIOServerThread extends ServerThread {
+		private volatile DatagramChannel channel = null; // Assigned by the server thread, read by senders
+		private volatile Selector selector = null;
+		
+		/**
+		 * Run Thread
+		 */
+		@Override
+		public void run() {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(buffer_size);
+			byte[] data = new byte[buffer_size];
+			
+			try {
+				channel = NetworkInterface.newDatagramChannel(networkInterface, port);
+				channel.configureBlocking(false);
+				selector = Selector.open();
+				channel.register(selector, SelectionKey.OP_READ);
+				InetAddress localAddress = ((InetSocketAddress) channel.getLocalAddress()).getAddress();
+				
+				while(!this.isInterrupted()) {
+					if(selector.select() == 0) continue;
+					selector.selectedKeys().clear();
+					
+					// Drain every queued Datagram
+					InetSocketAddress source;
+					while((source = (InetSocketAddress) channel.receive(buffer)) != null) {
+						buffer.flip();
+						int length = buffer.remaining();
+						buffer.get(data, 0, length);
+						buffer.clear();
+						
+						// Parse Packet
+						handlePacket(view, data, 0, length, source.getAddress(), source.getPort(), localAddress);
+					}
+				}
+				
+			} catch (ClosedChannelException e) {
+				if(!this.isInterrupted()) e.printStackTrace();
+			} catch (ClosedSelectorException e) {
+				if(!this.isInterrupted()) e.printStackTrace();
+			} catch (IOException e) {
+				if(!this.isInterrupted()) e.printStackTrace();
+				
+			} finally {
+				close();
+				if(isDebugModeEnabled()) System.out.println("Server closed successfully");
+			}
+		}
+		
+		/**
+		 * Send Message Region using Server Channel. The channel is non-blocking, so a datagram that does not fit 
+		 * into a full send buffer is handed to the blocking Send Channel instead of being lost
+		 * @param dest_ip
+		 * @param message
+		 * @param offset
+		 * @param length
+		 * @throws IOException 
+		 */
+		@Override
+		public void send(InetAddress dest_ip, byte[] message, int offset, int length) throws IOException {
+			DatagramChannel channel = this.channel;
+			if(channel != null) {
+				if(channel.send(ByteBuffer.wrap(message, offset, length), new InetSocketAddress(dest_ip, port)) == 0)
+					getSendChannel().send(dest_ip, port, message, offset, length); // Send buffer full
+			}
+		}
+		
+		@Override
+		public void interrupt() {
+			super.interrupt();
+			close();
+		}
+		
+		/**
+		 * Close Selector and Channel
+		 */
+		private void close() {
+			try {
+				if(selector != null) selector.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			try {
+				if(channel != null) channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -0,0 +1,224 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.client.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.robertkoszewski.dsce.utils.NetworkInterface;
+
+/**
+ * Long-lived, thread-safe outbound UDP channel (One blocking and one non-blocking channel per Network Interface binding). 
+ * Replaces opening and closing a DatagramSocket for every static message.
+ * Blocking channels wait for send buffer space, non-blocking channels drop (and count) the datagram instead.
+ * @author Robert Koszewski
+ */
+public class SendChannel {
+	
+	// Constructor
+	
+	private SendChannel(NetworkInterface networkInterface, boolean blocking) {
+		this.networkInterface = networkInterface;
+		this.blocking = blocking;
+	}
+	
+	// Variables
+	private final NetworkInterface networkInterface;
+	private final boolean blocking;
+	private volatile DatagramChannel channel = null;
+	
+	// Statistics
+	private final AtomicLong sentPackets = new AtomicLong();
+	private final AtomicLong droppedPackets = new AtomicLong();
+	private final AtomicLong openedChannels = new AtomicLong();
+	
+	// Methods
+	
+	/**
+	 * Send a Message Region
+	 * @param dest_ip
+	 * @param port
+	 * @param message
+	 * @param offset
+	 * @param length
+	 * @return FALSE if the socket send buffer was full and the datagram was dropped (Non-blocking channels only)
+	 * @throws IOException
+	 */
+	public boolean send(InetAddress dest_ip, int port, byte[] message, int offset, int length) throws IOException {
+		return send(new InetSocketAddress(dest_ip, port), ByteBuffer.wrap(message, offset, length));
+	}
+	
+	/**
+	 * Send the remaining bytes of a Buffer (The buffer position is advanced on success)
+	 * @param destination
+	 * @param buffer
+	 * @return FALSE if the socket send buffer was full and the datagram was dropped (Non-blocking channels only)
+	 * @throws IOException
+	 */
+	public boolean send(InetSocketAddress destination, ByteBuffer buffer) throws IOException {
+		int sent;
+		try {
+			sent = getChannel().send(buffer, destination);
+		} catch (ClosedChannelException e) {
+			// Closed under us (e.g. Interrupted sender thread). Reopen and retry once with the 
+			// interrupt cleared, as an interrupted thread would close the new channel right away
+			boolean interrupted = Thread.interrupted();
+			try {
+				sent = getChannel().send(buffer, destination);
+			} finally {
+				if(interrupted) Thread.currentThread().interrupt();
+			}
+		}
+		if(sent == 0) {
+			droppedPackets.incrementAndGet();
+			return false;
+		}
+		sentPackets.incrementAndGet();
+		return true;
+	}
+	
+	/**
+	 * Get the underlying Channel (Broadcast enabled, Opened on demand)
+	 * @return
+	 * @throws IOException
+	 */
+	public DatagramChannel getChannel() throws IOException {
+		DatagramChannel channel = this.channel;
+		if(channel != null && channel.isOpen()) return channel;
+		synchronized(this) {
+			channel = this.channel;
+			if(channel == null || !channel.isOpen()) {
+				channel = NetworkInterface.newDatagramChannel(networkInterface, 0);
+				channel.configureBlocking(blocking); // Non-blocking: A full send buffer never blocks the caller
+				this.channel = channel;
+				openedChannels.incrementAndGet();
+			}
+			return channel;
+		}
+	}
+	
+	/**
+	 * Close Channel (It is reopened on the next send)
+	 */
+	public synchronized void close() {
+		if(channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			channel = null;
+		}
+	}
+	
+	/**
+	 * Does this Channel wait for send buffer space?
+	 * @return
+	 */
+	public boolean isBlocking() {
+		return blocking;
+	}
+	
+	/**
+	 * Get Total Sent Packets
+	 * @return
+	 */
+	public long getSentPackets() {
+		return sentPackets.get();
+	}
+	
+	/**
+	 * Get Total Dropped Packets (Send buffer full)
+	 * @return
+	 */
+	public long getDroppedPackets() {
+		return droppedPackets.get();
+	}
+	
+	/**
+	 * Get number of Sockets opened by this Channel
+	 * @return
+	 */
+	public long getOpenedChannels() {
+		return openedChannels.get();
+	}
+	
+	// Registry
+	
+	private static final ConcurrentHashMap<Object, SendChannel> blockingChannels = new ConcurrentHashMap<Object, SendChannel>();
+	private static final ConcurrentHashMap<Object, SendChannel> nonBlockingChannels = new ConcurrentHashMap<Object, SendChannel>();
+	private static final Object DEFAULT_INTERFACE = new Object();
+	
+	static {
+		// Release the shared sockets when the JVM exits
+		Runtime.getRuntime().addShutdownHook(new Thread("DS Send Channel Shutdown") {
+			@Override
+			public void run() {
+				closeAll();
+			}
+		});
+	}
+	
+	/**
+	 * Get the shared blocking Send Channel of a Network Interface binding
+	 * @param networkInterface (NULL = Default binding)
+	 * @return
+	 */
+	public static SendChannel get(NetworkInterface networkInterface) {
+		return get(networkInterface, true);
+	}
+	
+	/**
+	 * Get a shared Send Channel of a Network Interface binding
+	 * @param networkInterface (NULL = Default binding)
+	 * @param blocking FALSE to drop datagrams when the send buffer is full instead of waiting
+	 * @return
+	 */
+	public static SendChannel get(NetworkInterface networkInterface, boolean blocking) {
+		ConcurrentHashMap<Object, SendChannel> channels = blocking ? blockingChannels : nonBlockingChannels;
+		Object key = networkInterface != null ? networkInterface : DEFAULT_INTERFACE;
+		SendChannel channel = channels.get(key);
+		if(channel == null) {
+			SendChannel newChannel = new SendChannel(networkInterface, blocking);
+			channel = channels.putIfAbsent(key, newChannel);
+			if(channel == null) channel = newChannel;
+		}
+		return channel;
+	}
+	
+	/**
+	 * Close all shared Send Channels (Called on JVM shutdown. Channels used again afterwards are reopened)
+	 */
+	public static void closeAll() {
+		for(SendChannel channel: blockingChannels.values())
+			channel.close();
+		for(SendChannel channel: nonBlockingChannels.values())
+			channel.close();
+	}
+}
@@ -27,13 +27,15 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.SocketException;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.messages.DSMessage.Command;
+import com.robertkoszewski.dsce.messages.FrameBuffer;
 import com.robertkoszewski.dsce.messages.InvalidMessageException;
 import com.robertkoszewski.dsce.utils.NetworkInterface;
+import com.robertkoszewski.dsce.utils.RateMeter;
 import com.robertkoszewski.dsce.utils.StringUtils;
 
 /**
@@ -42,13 +44,19 @@ import com.robertkoszewski.dsce.utils.StringUtils;
  */
 public class SocketListener {
 	
-	private final int buffer_size;
-	private final int port;
-	private final ArrayList<MessageReceived> messageReceivedCallbacks;
-	private ServerThread serverThread = null;
+	protected final int buffer_size;
+	protected final int port;
+	private final CallbackRegistry<MessageReceived> messageReceivedCallbacks;
+	private final CallbackRegistry<RoutedCallback>[] routedCallbacks; // Indexed by Command ordinal
+	private volatile ServerThread serverThread = null;
+	private volatile DispatchPipeline pipeline = null;
 	private boolean autoStartStop = true;
 	private boolean debugMode = false;
-	private NetworkInterface networkInterface;
+	protected NetworkInterface networkInterface;
+	
+	// Statistics
+	private final RateMeter receivedPackets = new RateMeter();
+	private final AtomicLong invalidPackets = new AtomicLong();
 	
 	public SocketListener(int port, int buffer_size, boolean autoStartStop, NetworkInterface networkInterface) {
 		this(port, buffer_size, autoStartStop);
@@ -68,15 +76,16 @@ public class SocketListener {
 	public SocketListener(int port, int buffer_size) {
 		this.port = port;
 		this.buffer_size = buffer_size;
-		this.messageReceivedCallbacks = new ArrayList<MessageReceived>();
+		this.messageReceivedCallbacks = new CallbackRegistry<MessageReceived>(new MessageReceived[0]);
+		this.routedCallbacks = newRoutingTable();
 	}
 	
 	/**
 	 * Start Server Thread
 	 */
-	public void start() {
+	public synchronized void start() {
 		if(serverThread == null || !serverThread.isAlive()) {
-			serverThread = new ServerThread();
+			serverThread = newServerThread();
 			serverThread.start();
 			if(debugMode) System.out.println("Server Thread Started");
 		}
@@ -85,7 +94,7 @@ public class SocketListener {
 	/**
 	 * Stop Server Thread
 	 */
-	public void stop() {
+	public synchronized void stop() {
 		if(serverThread != null && serverThread.isAlive()) {
 			serverThread.interrupt();
 			if(debugMode) System.out.println("Stopping Server Thread");
@@ -120,28 +129,57 @@ public class SocketListener {
 	 * Add Message Received Callbacks
 	 * @param messageReceived
 	 */
-	public void addCallback(MessageReceived... messageReceived) {	// TODO: Make this thread safe
+	public void addCallback(MessageReceived... messageReceived) {
 		// Register Callbacks
 		for(MessageReceived callback: messageReceived)
 			messageReceivedCallbacks.add(callback);
 		// Auto Start Server
 		if(autoStartStop) 
-			if(serverThread == null || !serverThread.isAlive())
-				start();
+			start();
 	}
 	
 	/**
-	 * Remove Message Received Callback
+	 * Add Message Received Callback for the Commands of a Filter (Only matching messages are routed to it)
+	 * @param filter
 	 * @param messageReceived
 	 */
-	public void removeCallback(MessageReceived... messageReceived) {	// TODO: Make this thread safe
+	public void addCallback(MessageFilter filter, MessageReceived messageReceived) {
+		// Register Callback on every Command Route
+		RoutedCallback route = new RoutedCallback(filter, messageReceived);
+		for(Command command: filter.getCommands())
+			routedCallbacks[command.ordinal()].add(route);
+		// Auto Start Server
+		if(autoStartStop) 
+			start();
+	}
+	
+	/**
+	 * Add Message Received Callback for a single Command
+	 * @param command
+	 * @param messageReceived
+	 */
+	public void addCallback(Command command, MessageReceived messageReceived) {
+		addCallback(new MessageFilter(command), messageReceived);
+	}
+	
+	/**
+	 * Remove Message Received Callback (Including all its routed registrations)
+	 * @param messageReceived
+	 */
+	public void removeCallback(MessageReceived... messageReceived) {
 		// Remove Callback
-		for(MessageReceived callback: messageReceived)
+		for(MessageReceived callback: messageReceived) {
 			messageReceivedCallbacks.remove(callback);
+			for(CallbackRegistry<RoutedCallback> routes: routedCallbacks) {
+				for(RoutedCallback route: routes.snapshot()) {
+					if(route.callback.equals(callback))
+						routes.remove(route);
+				}
+			}
+		}
 		// Auto Stop Server
-		if(autoStartStop && messageReceivedCallbacks.size() == 0) 
-			if(serverThread != null && serverThread.isAlive())
-				stop();
+		if(autoStartStop) 
+			stopIfIdle();
 	}
 	
 	/**
@@ -150,16 +188,193 @@ public class SocketListener {
 	public void clearCallbacks() {
 		// Clear all Callbacks
 		messageReceivedCallbacks.clear();
+		for(CallbackRegistry<RoutedCallback> routes: routedCallbacks)
+			routes.clear();
 		// Auto Stop Server
-		if(autoStartStop && messageReceivedCallbacks.size() == 0) 
-			if(serverThread != null && serverThread.isAlive())
-				stop();
+		if(autoStartStop) 
+			stopIfIdle();
+	}
+	
+	/**
+	 * Stop Server Thread when no Callbacks are left (Re-checked under the start/stop lock, so a concurrent add wins)
+	 */
+	private synchronized void stopIfIdle() {
+		if(getCallbackCount() == 0)
+			stop();
+	}
+	
+	/**
+	 * Get Number of registered Callbacks (Routed callbacks count once per Command)
+	 * @return
+	 */
+	public int getCallbackCount() {
+		int count = messageReceivedCallbacks.size();
+		for(CallbackRegistry<RoutedCallback> routes: routedCallbacks)
+			count += routes.size();
+		return count;
+	}
+
+	/**
+	 * Enable Pipelined Dispatch. The receive thread only validates packets and hands them to a pool of workers
+	 * sharded by sender address (Per-device order is preserved)
+	 * @param workers Number of worker threads
+	 * @param queueCapacity Capacity of each worker queue
+	 * @param policy Drop or wait when a worker queue is full
+	 */
+	public void enablePipeline(int workers, int queueCapacity, DispatchPipeline.OverflowPolicy policy) {
+		DispatchPipeline newPipeline = new DispatchPipeline(this, workers, queueCapacity, policy);
+		newPipeline.start();
+		DispatchPipeline oldPipeline;
+		synchronized(this) {
+			oldPipeline = this.pipeline;
+			this.pipeline = newPipeline;
+		}
+		if(oldPipeline != null) oldPipeline.stop(); // Outside the lock: Workers may be running callbacks
+	}
+	
+	/**
+	 * Disable Pipelined Dispatch (Callbacks run on the receive thread again)
+	 */
+	public void disablePipeline() {
+		DispatchPipeline oldPipeline;
+		synchronized(this) {
+			oldPipeline = this.pipeline;
+			this.pipeline = null;
+		}
+		if(oldPipeline != null) oldPipeline.stop(); // Outside the lock: Workers may be running callbacks
+	}
+	
+	/**
+	 * Get Dispatch Pipeline (Statistics)
+	 * @return Pipeline or NULL if dispatching inline
+	 */
+	public DispatchPipeline getPipeline() {
+		return pipeline;
+	}
+	
+	/**
+	 * Get Listening Port
+	 * @return
+	 */
+	public int getPort() {
+		return port;
+	}
+	
+	/**
+	 * Get Received Packets per Second (Last completed second)
+	 * @return
+	 */
+	public long getPacketsPerSecond() {
+		return receivedPackets.getRate();
+	}
+	
+	/**
+	 * Get Total Received Packets
+	 * @return
+	 */
+	public long getReceivedPackets() {
+		return receivedPackets.getTotal();
+	}
+	
+	/**
+	 * Get Total Discarded Invalid Packets
+	 * @return
+	 */
+	public long getInvalidPackets() {
+		return invalidPackets.get();
+	}
+	
+	/**
+	 * Build the Server Thread (Receive Engine)
+	 * @return
+	 */
+	protected ServerThread newServerThread() {
+		return new ServerThread();
+	}
+	
+	/**
+	 * Handle a received Packet (Called by the receive engine)
+	 * @param view Reused message view of the receive engine
+	 * @param data
+	 * @param offset
+	 * @param length
+	 * @param srcIP
+	 * @param srcPort
+	 * @param localAddress
+	 */
+	protected void handlePacket(DSMessage view, byte[] data, int offset, int length, InetAddress srcIP, int srcPort, InetAddress localAddress) {
+		if(receivedPackets.tick() && debugMode) System.out.println("Packets/s: " + receivedPackets.getRate());
+		
+		try {
+			// Parse DS Message
+			if(debugMode) System.out.println("Message Received: (" + srcIP.getHostAddress() + ":" + srcPort + ") - 0x" + StringUtils.bytesToHex(Arrays.copyOfRange(data, offset, offset + length)));
+			DSMessage message = view.wrap(data, offset, length, true);
+			
+			// Ignore Update Messages from Self
+			if(message.getFlags() == DSMessage.FLAG_BROADCAST_TO_GROUP && srcIP.equals(localAddress))
+				return;
+			
+			// Run Callbacks (Inline, or on the worker of the sender when pipelined)
+			DispatchPipeline pipeline = this.pipeline;
+			if(pipeline != null) pipeline.submit(message, srcIP, srcPort);
+			else dispatch(message, srcIP, srcPort);
+		} catch (InvalidMessageException e) {
+			invalidPackets.incrementAndGet();
+			System.err.println("Detected invalid message - Reason: " + e.getMessage());
+			// Discard Unsupported Messages
+		}
+	}
+	
+	/**
+	 * Dispatch Message to the registered Callbacks (Unfiltered callbacks first, then the routes of the message Command)
+	 * @param message
+	 * @param srcIP
+	 * @param srcPort
+	 */
+	protected void dispatch(DSMessage message, InetAddress srcIP, int srcPort) {
+		MessageReceived[] callbacks = messageReceivedCallbacks.snapshot(); // Immutable snapshot. Safe against concurrent add/remove
+		for(int i = 0; i < callbacks.length; i++) {
+			callbacks[i].run(message, srcIP, srcPort);
+		}
+		
+		RoutedCallback[] routes = routedCallbacks[message.getCommand().ordinal()].snapshot();
+		for(int i = 0; i < routes.length; i++) {
+			RoutedCallback route = routes[i];
+			if(route.filter.matchesSource(message, srcIP))
+				route.callback.run(message, srcIP, srcPort);
+		}
+	}
+	
+	/**
+	 * Build Command Routing Table
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	private static CallbackRegistry<RoutedCallback>[] newRoutingTable() {
+		CallbackRegistry<RoutedCallback>[] table = new CallbackRegistry[Command.values().length];
+		for(int i = 0; i < table.length; i++)
+			table[i] = new CallbackRegistry<RoutedCallback>(new RoutedCallback[0]);
+		return table;
+	}
+	
+	/**
+	 * Callback routed by a Message Filter
+	 */
+	private static class RoutedCallback {
+		public RoutedCallback(MessageFilter filter, MessageReceived callback) {
+			this.filter = filter;
+			this.callback = callback;
+		}
+		final MessageFilter filter;
+		final MessageReceived callback;
 	}
 
 	/**
-	 * Server Thread
+	 * Server Thread (Blocking DatagramSocket receive engine)
 	 */
-	private class ServerThread extends Thread {
+	protected class ServerThread extends Thread {
+		protected final DSMessage view = new DSMessage(); // Flyweight re-pointed at every received datagram
+		private final DatagramPacket sendPacket = new DatagramPacket(new byte[0], 0); // Reused under the send lock
 		private DatagramSocket serverSocket = null;
 
 		/**
@@ -178,27 +393,8 @@ public class SocketListener {
 						serverSocket.receive(receivePacket);
 
 						// Parse Packet
-						byte[] data = Arrays.copyOfRange(receivePacket.getData(), 0, receivePacket.getLength());
-						
-						try {
-							// Parse DS Message
-							InetAddress srcIP = receivePacket.getAddress();
-							int srcPort = receivePacket.getPort();
-							if(debugMode) System.out.println("Message Received: (" + srcIP.getHostAddress() + ":" + srcPort + ") - 0x" + StringUtils.bytesToHex(data));
-							DSMessage message = new DSMessage(data);
-							
-							// Ignore Update Messages from Self
-							if(message.getFlags() == DSMessage.FLAG_BROADCAST_TO_GROUP && receivePacket.getAddress().equals(serverSocket.getLocalAddress()))
-								continue;
-							
-							// Run Callbacks
-							for(Iterator<MessageReceived> it = messageReceivedCallbacks.iterator(); it.hasNext(); ) {
-								it.next().run(message, srcIP, srcPort);
-							}
-						} catch (InvalidMessageException e) {
-							System.err.println("Detected invalid message - Reason: " + e.getMessage());
-							// Discard Unsupported Messages
-						}
+						handlePacket(view, receivePacket.getData(), receivePacket.getOffset(), receivePacket.getLength(), 
+								receivePacket.getAddress(), receivePacket.getPort(), serverSocket.getLocalAddress());
 						
 					} catch (IOException e) {
 						if(this.isInterrupted()) return;
@@ -225,10 +421,24 @@ public class SocketListener {
 		 * @throws IOException 
 		 */
 		public void send(InetAddress dest_ip, byte[] message) throws IOException {
+			send(dest_ip, message, 0, message.length);
+		}
+		
+		/**
+		 * Send Message Region using Server Socket
+		 * @param dest_ip
+		 * @param message
+		 * @param offset
+		 * @param length
+		 * @throws IOException 
+		 */
+		public void send(InetAddress dest_ip, byte[] message, int offset, int length) throws IOException {
 			if(serverSocket != null) {
-				DatagramPacket packet = new DatagramPacket(message, message.length, dest_ip, port);
-				synchronized(serverThread) {
-					serverSocket.send(packet);
+				synchronized(sendPacket) {
+					sendPacket.setData(message, offset, length);
+					sendPacket.setAddress(dest_ip);
+					sendPacket.setPort(port);
+					serverSocket.send(sendPacket);
 				}
 			}
 		}
@@ -249,7 +459,9 @@ public class SocketListener {
 	 * @throws IOException
 	 */
 	public void sendMessage(InetAddress dest_ip, DSMessage message) throws IOException {
-		sendMessage(dest_ip, message.getMessage());
+		FrameBuffer frame = FrameBuffer.get();
+		frame.encode(message);
+		sendMessage(dest_ip, frame.getData(), 0, frame.getLength());
 	}
 	
 	/**
@@ -259,21 +471,34 @@ public class SocketListener {
 	 * @throws IOException
 	 */
 	public void sendMessage(InetAddress dest_ip, byte[] message) throws IOException {
+		sendMessage(dest_ip, message, 0, message.length);
+	}
+	
+	/**
+	 * Send UDP Message Region (Requires server port to be available)
+	 * @param dest_ip
+	 * @param message
+	 * @param offset
+	 * @param length
+	 * @throws IOException
+	 */
+	public void sendMessage(InetAddress dest_ip, byte[] message, int offset, int length) throws IOException {
+		ServerThread serverThread = this.serverThread;
 		if(serverThread != null) {
-			serverThread.send(dest_ip, message);
+			serverThread.send(dest_ip, message, offset, length);
 		}else {
 			// Manually send
 			DatagramSocket socket = networkInterface != null ? networkInterface.newDatagramSocket(port) : new DatagramSocket(port);
 			socket.setBroadcast(true);
 			socket.setReuseAddress(true);
-			DatagramPacket packet = new DatagramPacket(message, message.length, dest_ip, port);
+			DatagramPacket packet = new DatagramPacket(message, offset, length, dest_ip, port);
 			socket.send(packet);
 			socket.close();
 		}
 	}
 	
 	/**
-	 * Send Static UDP Message (Any open port)
+	 * Send Static UDP Message (Any open port, shared per Network Interface)
 	 * @param dest_ip
 	 * @param message
 	 * @throws IOException
@@ -282,6 +507,18 @@ public class SocketListener {
 		sendStaticMessage(dest_ip, message, port);
 	}
 	
+	/**
+	 * Send Static UDP Message Region (Any open port)
+	 * @param dest_ip
+	 * @param message
+	 * @param offset
+	 * @param length
+	 * @throws IOException
+	 */
+	public void sendStaticMessage(InetAddress dest_ip, byte[] message, int offset, int length) throws IOException {
+		sendStaticMessage(dest_ip, message, offset, length, port);
+	}
+	
 	/**
 	 * Send Static Message
 	 * @param dest_ip
@@ -289,7 +526,9 @@ public class SocketListener {
 	 * @throws IOException
 	 */
 	public void sendStaticMessage(InetAddress dest_ip, DSMessage message) throws IOException {
-		sendStaticMessage(dest_ip, message.getMessage());
+		FrameBuffer frame = FrameBuffer.get();
+		frame.encode(message);
+		sendStaticMessage(dest_ip, frame.getData(), 0, frame.getLength(), port);
 	}
 	
 	/**
@@ -299,11 +538,36 @@ public class SocketListener {
 	 * @throws IOException 
 	 */
 	public void sendStaticMessage(InetAddress dest_ip, byte[] message, int port) throws IOException {
-		DatagramSocket socket = networkInterface != null ? networkInterface.newDatagramSocket(0) : new DatagramSocket();
-		socket.setBroadcast(true);
-		socket.setReuseAddress(true);
-		DatagramPacket packet = new DatagramPacket(message, message.length, dest_ip, port);
-		socket.send(packet);
-		socket.close();
+		sendStaticMessage(dest_ip, message, 0, message.length, port);
+	}
+	
+	/**
+	 * Send a Static Message Region
+	 * @param dest_ip
+	 * @param message
+	 * @param offset
+	 * @param length
+	 * @param port
+	 * @throws IOException 
+	 */
+	public void sendStaticMessage(InetAddress dest_ip, byte[] message, int offset, int length, int port) throws IOException {
+		getSendChannel().send(dest_ip, port, message, offset, length); // Blocking: Never drops the message
+	}
+	
+	/**
+	 * Get the shared blocking outbound Channel used for Static Messages
+	 * @return
+	 */
+	public SendChannel getSendChannel() {
+		return SendChannel.get(networkInterface);
+	}
+	
+	/**
+	 * Get a shared outbound Channel
+	 * @param blocking FALSE for a channel dropping (and counting) datagrams when the send buffer is full
+	 * @return
+	 */
+	public SendChannel getSendChannel(boolean blocking) {
+		return SendChannel.get(networkInterface, blocking);
 	}
 }
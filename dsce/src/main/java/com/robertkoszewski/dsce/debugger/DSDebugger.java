@@ -24,6 +24,7 @@ package com.robertkoszewski.dsce.debugger;
 
 import java.net.InetAddress;
 
+import com.robertkoszewski.dsce.client.server.MessageFilter;
 import com.robertkoszewski.dsce.client.server.MessageReceived;
 import com.robertkoszewski.dsce.client.server.SocketListener;
 import com.robertkoszewski.dsce.messages.DSMessage;
@@ -39,6 +40,7 @@ public class DSDebugger {
 	private final SocketListener socket;
 	private boolean running = false;
 	private boolean showHex = true;
+	private MessageFilter filter = null;
 	
 	private MessageReceived DEBUG_CALLBACK = new MessageReceived() {
 		public void run(DSMessage message, InetAddress senderIP, int senderPort) {
@@ -76,6 +78,14 @@ public class DSDebugger {
 	}
 
 
+	/**
+	 * Set Message Filter (NULL shows all messages. Applied on the next start)
+	 * @param filter
+	 */
+	public void setFilter(MessageFilter filter) {
+		this.filter = filter;
+	}
+
 	/**
 	 * Start Debugger
 	 */
@@ -83,7 +93,8 @@ public class DSDebugger {
 		if(running) return;
 		running = true;
 		// Add Callback
-		socket.addCallback(DEBUG_CALLBACK);
+		if(filter == null) socket.addCallback(DEBUG_CALLBACK);
+		else socket.addCallback(filter, DEBUG_CALLBACK);
 		socket.setEnableAutoStartStop(false);
 		socket.start();
 	}
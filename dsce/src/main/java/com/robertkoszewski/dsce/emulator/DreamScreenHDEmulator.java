@@ -27,9 +27,10 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.robertkoszewski.dsce.client.devices.DSDevice;
 import com.robertkoszewski.dsce.client.devices.DreamScreenHD;
@@ -41,16 +42,19 @@ import com.robertkoszewski.dsce.client.server.MessageReceived;
 import com.robertkoszewski.dsce.client.server.SocketListener;
 import com.robertkoszewski.dsce.emulator.utils.NoopSampler;
 import com.robertkoszewski.dsce.emulator.utils.ColorSampler;
+import com.robertkoszewski.dsce.emulator.utils.SectorDataFanout;
 import com.robertkoszewski.dsce.emulator.utils.SubscribedDevice;
 import com.robertkoszewski.dsce.features.HDMIActiveChannels;
 import com.robertkoszewski.dsce.features.ScreenColor;
 import com.robertkoszewski.dsce.messages.CurrentStateMessageWrapper;
 import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.messages.DSMessage.Command;
 import com.robertkoszewski.dsce.messages.HDMIActiveChannelMessageWrapper;
 import com.robertkoszewski.dsce.messages.HDMIInputMessageWrapper;
 import com.robertkoszewski.dsce.messages.HDMINameMessageWrapper;
 import com.robertkoszewski.dsce.utils.DS;
 import com.robertkoszewski.dsce.utils.NetworkInterface;
+import com.robertkoszewski.dsce.utils.Threads;
 
 /**
  * DreamScreen HD Emulator
@@ -113,7 +117,7 @@ public class DreamScreenHDEmulator extends GenericEmulator {
 		sampler.init(this);
 
 		// Responses
-		callbacks.add(new MessageReceived() {
+		addCallback(new MessageReceived() {
 			@Override
 			public void run(DSMessage message, InetAddress senderIP, int senderPort) {
 				// Discard message targeted to other group
@@ -149,20 +153,17 @@ public class DreamScreenHDEmulator extends GenericEmulator {
 					break;
 					
 				case SUBSCRIPTION_REQUEST: // Subscription Request
-					byte[] payload = message.getPayload();
-					if(payload == null) break;
-					if (Arrays.equals(payload, DSMessage.SUBSCRIPTION_REQUEST_ACK_PAYLOAD)) {
+					if (message.getPayloadLength() == DSMessage.SUBSCRIPTION_REQUEST_ACK_PAYLOAD.length && 
+						message.getPayloadByte(0) == DSMessage.SUBSCRIPTION_REQUEST_ACK_PAYLOAD[0]) {
 						
 						String senderIPAddress = senderIP.getHostAddress();
-						synchronized(subscriptions) {
-							SubscribedDevice subscription = subscriptions.get(senderIPAddress);
-							if(subscription != null) {
-								// Device Exists
-								subscription.tock();
-							} else {
-								// Device Doesn't Exist
-								subscriptions.put(senderIPAddress, new SubscribedDevice(senderIP));
-							}
+						SubscribedDevice subscription = subscriptions.get(senderIPAddress);
+						if(subscription != null) {
+							// Device Exists
+							subscription.tock();
+						} else {
+							// Device Doesn't Exist
+							subscriptions.putIfAbsent(senderIPAddress, new SubscribedDevice(senderIP));
 						}
 					}
 					break;
@@ -171,7 +172,8 @@ public class DreamScreenHDEmulator extends GenericEmulator {
 				default: break; 
 				}
 			}
-		});
+		}, Command.HDMI_ACTIVE_CHANNELS, Command.HDMI_INPUT_STATUS, Command.HDMI_INPUT, 
+		   Command.HDMI_NAME_1, Command.HDMI_NAME_2, Command.HDMI_NAME_3, Command.SUBSCRIPTION_REQUEST);
 	}
 
 	// Variables
@@ -183,7 +185,8 @@ public class DreamScreenHDEmulator extends GenericEmulator {
 	protected byte hdmiActiveChannels = 1;
 	
 	protected ColorSampler sampler;
-	protected HashMap<String, SubscribedDevice> subscriptions = new HashMap<String, SubscribedDevice>();
+	protected final ConcurrentHashMap<String, SubscribedDevice> subscriptions = new ConcurrentHashMap<String, SubscribedDevice>();
+	private SectorDataFanout fanout;
 	
 	// Methods
 	
@@ -425,50 +428,29 @@ public class DreamScreenHDEmulator extends GenericEmulator {
 	}
 	
 	
-	long lastFrameTime = 0;
-	
 	/**
-	 * Send Screen Colors to all Subscribed Devices
+	 * Send Screen Colors to all Subscribed Devices (Hands the frame to the fan-out thread and returns immediately)
 	 * @param scolor
 	 */
 	protected void sendScreenColors(ScreenColor scolor) {
-		// TODO: TO BE IMPLEMENTED. Send out the colors to the subscribers
-//		System.out.println("SEDING COLORS!!!! " + subscriptions.size());
-		
-		// Color Message
-		DSMessage message = new DSMessage(groupNumber, DSMessage.FLAG_SCREEN_SECTOR_DATA, DSMessage.COMMAND_UPPER_SCREEN_SECTOR_DATA, DSMessage.COMMAND_LOWER_SCREEN_SECTOR_DATA);
-		message.setPayload(scolor.getPayload());
-		
-		//System.out.println(message.toDebugString());
-
-		System.currentTimeMillis();
-		
-		// Send to Subscriptors
-		synchronized(subscriptions) {
-			Iterator<SubscribedDevice> sit = subscriptions.values().iterator();
-			while(sit.hasNext()) {
-				SubscribedDevice subscription = sit.next();
-				//sendMessage(subscription.ip, message);
-//				System.out.println("SENDING TO: " + subscription.ip.getHostAddress());
-				try {
-					socket.sendStaticMessage(subscription.ip, message);
-				} catch (IOException e) {
-					e.printStackTrace();
-				}
-			}
-		}
-		
-		// Force 60FPS to avoid saturating network
-		long currentFrameTime = System.currentTimeMillis();
-		long timeDiff = currentFrameTime - lastFrameTime;
-		if(timeDiff < 16) {
-			try {
-				Thread.sleep(16 - timeDiff); 
-			} catch (InterruptedException e) {} 
-			lastFrameTime = System.currentTimeMillis();
-		}else {
-			lastFrameTime = currentFrameTime;
-		}
+		getSectorDataFanout().publish(groupNumber, scolor.getPayload());
+	}
+	
+	/**
+	 * Get Subscribed Devices (Includes per-subscriber send latency and drop counters)
+	 * @return
+	 */
+	public Collection<SubscribedDevice> getSubscribedDevices() {
+		return Collections.unmodifiableCollection(subscriptions.values());
+	}
+	
+	/**
+	 * Get Sector Data Fan-Out (Frame rate limit and statistics)
+	 * @return
+	 */
+	public synchronized SectorDataFanout getSectorDataFanout() {
+		if(fanout == null) fanout = new SectorDataFanout(socket.getSendChannel(false), socket.getPort(), subscriptions.values());
+		return fanout;
 	}
 	
 	/**
@@ -490,7 +472,7 @@ public class DreamScreenHDEmulator extends GenericEmulator {
 	}
 	
 	// Subscription Thread
-	private SubscriptionThread subscription_thread;
+	private Thread subscription_thread;
 	
 	/**
 	 * Start Subscription Thread
@@ -500,8 +482,7 @@ public class DreamScreenHDEmulator extends GenericEmulator {
 		if(subscription_thread == null) {
 			System.out.println("+ START SUBSCRIPTION START");
 			try {
-				subscription_thread = new SubscriptionThread(this);
-				subscription_thread.start();
+				subscription_thread = Threads.startThread("DS Subscription Requests", false, new SubscriptionThread(this));
 			} catch (UnknownHostException e) {
 				e.printStackTrace(); // Should not happen, but in case it does it will show up in the console. (Caused probably due to OS limits)
 			}
@@ -518,10 +499,11 @@ public class DreamScreenHDEmulator extends GenericEmulator {
 			subscription_thread.interrupt();
 			subscription_thread = null;
 		}
+		getSectorDataFanout().stop();
 	}
 
 	// Subscription Thread
-	private class SubscriptionThread extends Thread {
+	private class SubscriptionThread implements Runnable {
 		
 		public SubscriptionThread(DreamScreenHDEmulator dsemulator) throws UnknownHostException {
 			this.dsemulator = dsemulator;
@@ -543,9 +525,7 @@ public class DreamScreenHDEmulator extends GenericEmulator {
 		
 		@Override
 		public void run() {
-			super.run();
-			
-			while(!this.isInterrupted()) {
+			while(!Thread.currentThread().isInterrupted()) {
 				
 				System.out.println("SENDING SUBSCRIPTION REQUEST TO GROUP: " + dsemulator.getGroupNumber());
 				
@@ -554,7 +534,9 @@ public class DreamScreenHDEmulator extends GenericEmulator {
 				
 				try {
 					Thread.sleep(5000); // Sleep 5 seconds
-				} catch (InterruptedException e) {} 
+				} catch (InterruptedException e) {
+					return; // Stopped
+				} 
 			}
 		}
 	}
@@ -27,12 +27,14 @@ import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 
 import com.robertkoszewski.dsce.client.devices.DSDevice;
 import com.robertkoszewski.dsce.client.devices.DSDevice.AmbientMode;
 import com.robertkoszewski.dsce.client.devices.DSDevice.AmbientScene;
 import com.robertkoszewski.dsce.client.devices.DSDevice.Mode;
+import com.robertkoszewski.dsce.client.server.MessageFilter;
 import com.robertkoszewski.dsce.client.server.MessageReceived;
 import com.robertkoszewski.dsce.client.server.SocketListener;
 import com.robertkoszewski.dsce.features.ScreenColor;
@@ -43,8 +45,10 @@ import com.robertkoszewski.dsce.messages.BrightnessMessageWrapper;
 import com.robertkoszewski.dsce.messages.ColorSaturationMessageWrapper;
 import com.robertkoszewski.dsce.messages.CurrentStateMessageWrapper;
 import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.messages.DSMessage.Command;
 import com.robertkoszewski.dsce.messages.DSMessageWrapper;
 import com.robertkoszewski.dsce.messages.DeviceNameMessageWrapper;
+import com.robertkoszewski.dsce.messages.FrameBuffer;
 import com.robertkoszewski.dsce.messages.GroupNameMessageWrapper;
 import com.robertkoszewski.dsce.messages.ModeMessageWrapper;
 import com.robertkoszewski.dsce.messages.GroupNumberMessageWrapper;
@@ -81,7 +85,7 @@ public abstract class GenericEmulator implements IGenericEmulator {
 		final GenericEmulator emulator = this;
 		
 		// Responses
-		callbacks.add(new MessageReceived() {
+		addCallback(new MessageReceived() {
 			@Override
 			public void run(DSMessage message, InetAddress senderIP, int senderPort) {
 				
@@ -141,7 +145,8 @@ public abstract class GenericEmulator implements IGenericEmulator {
 				default: break; 
 				}
 			}
-		});
+		}, Command.CURRENT_STATE_REQUEST, Command.GROUP_NAME, Command.GROUP_NUMBER, Command.DEVICE_NAME, Command.AMBIENT_COLOR, 
+		   Command.AMBIENT_MODE, Command.AMBIENT_SCENE, Command.BRIGHTNESS, Command.MODE, Command.SATURATION_SETTING);
 	}
 	
 	// Device Status
@@ -159,7 +164,9 @@ public abstract class GenericEmulator implements IGenericEmulator {
 	
 	protected final SocketListener socket;
 	private boolean running = false;
+	private InetAddress broadcast = null; // Resolved on the first update message
 	protected ArrayList<MessageReceived> callbacks = new ArrayList<MessageReceived>();
+	private final HashMap<MessageReceived, MessageFilter> callbackFilters = new HashMap<MessageReceived, MessageFilter>(); // Callbacks without a filter get every message
 	
 	/**
 	 * Start Device Emulation
@@ -167,8 +174,12 @@ public abstract class GenericEmulator implements IGenericEmulator {
 	public void start() { // TODO: Make thread safe
 		if(running) return; // Abort if already running
 		Iterator<MessageReceived> it = callbacks.iterator();
-		while(it.hasNext())
-			socket.addCallback(it.next());
+		while(it.hasNext()) {
+			MessageReceived callback = it.next();
+			MessageFilter filter = callbackFilters.get(callback);
+			if(filter != null) socket.addCallback(filter, callback);
+			else socket.addCallback(callback);
+		}
 		running = true;	
 	}
 	
@@ -183,6 +194,16 @@ public abstract class GenericEmulator implements IGenericEmulator {
 		running = false;	
 	}
 	
+	/**
+	 * Add Emulator Callback (Registered on the socket while the emulator runs, routed only the given commands)
+	 * @param callback
+	 * @param commands
+	 */
+	protected void addCallback(MessageReceived callback, Command... commands) {
+		callbacks.add(callback);
+		callbackFilters.put(callback, new MessageFilter(commands));
+	}
+	
 	/**
 	 * Is Device Running?
 	 * @return
@@ -420,7 +441,9 @@ public abstract class GenericEmulator implements IGenericEmulator {
 	 */
 	protected void sendMessage(InetAddress senderIP, DSMessage dsMessage) {
 		try {
-			socket.sendMessage(senderIP, dsMessage);
+			FrameBuffer frame = FrameBuffer.get(); // Encoded into the pooled buffer of this thread
+			frame.encode(dsMessage);
+			socket.sendMessage(senderIP, frame.getData(), 0, frame.getLength());
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -432,7 +455,8 @@ public abstract class GenericEmulator implements IGenericEmulator {
 	 */
 	protected void sendUpdateMessage(DSMessageWrapper dsMessageWrapper) {
 		try {
-			sendMessage(InetAddress.getByName("255.255.255.255"), dsMessageWrapper.getMessage(DSMessage.FLAG_BROADCAST_TO_GROUP));
+			if(broadcast == null) broadcast = InetAddress.getByName("255.255.255.255");
+			sendMessage(broadcast, dsMessageWrapper.getMessage(DSMessage.FLAG_BROADCAST_TO_GROUP));
 		} catch (UnknownHostException e) {
 			e.printStackTrace();
 		}
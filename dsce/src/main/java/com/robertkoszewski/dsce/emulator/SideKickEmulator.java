@@ -36,6 +36,7 @@ import com.robertkoszewski.dsce.client.server.SocketListener;
 import com.robertkoszewski.dsce.features.ScreenColor;
 import com.robertkoszewski.dsce.messages.CurrentStateMessageWrapper;
 import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.messages.DSMessage.Command;
 import com.robertkoszewski.dsce.messages.SectorSettingsMessageWrapper;
 import com.robertkoszewski.dsce.utils.NetworkInterface;
 
@@ -68,7 +69,7 @@ public class SideKickEmulator extends GenericEmulator {
 		super(socket);
 
 		// Responses
-		callbacks.add(new MessageReceived() {
+		addCallback(new MessageReceived() {
 			@Override
 			public void run(DSMessage message, InetAddress senderIP, int senderPort) {
 				// Discard message targeted to other group
@@ -97,7 +98,7 @@ public class SideKickEmulator extends GenericEmulator {
 				default: break; 
 				}
 			}
-		});
+		}, Command.SECTOR_SETTING, Command.SUBSCRIPTION_REQUEST, Command.SCREEN_SECTOR_DATA);
 	}
 	
 	// Variables
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.emulator.utils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Decimated Sampler. Averages only every n-th pixel of every n-th row of each sector, trading accuracy for 
+ * speed on hosts that cannot average full frames in time. The stride is either fixed or derived from a 
+ * sample budget per sector, and the sample grid can be jittered so that every frame reads different pixels.
+ * 
+ * Use measureError() to see how far the decimated colors are from the full average for a given frame.
+ * 
+ * @author Robert Koszewski
+ */
+public class DecimatedSampler extends SimpleAverageSampler {
+	
+	// Constructors
+	
+	public DecimatedSampler(ScreenGrabber sgrabber) {
+		this(sgrabber, DEFAULT_STRIDE);
+	}
+	
+	public DecimatedSampler(ScreenGrabber sgrabber, int stride) {
+		this(sgrabber, SectorLayout.DREAMSCREEN, stride);
+	}
+	
+	public DecimatedSampler(ScreenGrabber sgrabber, SectorLayout layout, int stride) {
+		super(sgrabber);
+		setLayout(layout);
+		setStride(stride);
+	}
+	
+	// Variables
+	private volatile SectorLayout layout;
+	private volatile int stride;
+	private volatile int sampleBudget = 0;
+	private volatile boolean jitter = false;
+	private int seed = 0x9E3779B9;
+	
+	// Constants
+	public static final int DEFAULT_STRIDE = 4;
+	
+	// Methods
+	
+	/**
+	 * Set Sector Layout (The emulator uses the first 12 sectors)
+	 * @param layout
+	 */
+	public void setLayout(SectorLayout layout) {
+		if(layout == null) throw new IllegalArgumentException("Layout cannot be null");
+		this.layout = layout;
+	}
+	
+	/**
+	 * Get Sector Layout
+	 * @return
+	 */
+	public SectorLayout getLayout() {
+		return layout;
+	}
+	
+	/**
+	 * Set Stride. Reads one pixel out of stride x stride (1 reads every pixel). Clears the sample budget.
+	 * @param stride
+	 */
+	public void setStride(int stride) {
+		this.stride = Math.max(1, stride);
+		this.sampleBudget = 0;
+	}
+	
+	/**
+	 * Get Stride (Fixed stride, unused while a sample budget is set)
+	 * @return
+	 */
+	public int getStride() {
+		return stride;
+	}
+	
+	/**
+	 * Set Sample Budget. Picks the largest stride per sector that still reads at least this many pixels.
+	 * @param samples Pixels per sector (0 to use the fixed stride)
+	 */
+	public void setSampleBudget(int samples) {
+		this.sampleBudget = Math.max(0, samples);
+	}
+	
+	/**
+	 * Get Sample Budget
+	 * @return Pixels per sector (0 if the fixed stride is used)
+	 */
+	public int getSampleBudget() {
+		return sampleBudget;
+	}
+	
+	/**
+	 * Set Jitter. When enabled the sample grid is shifted randomly per frame, sector and row.
+	 * @param jitter
+	 */
+	public void setJitter(boolean jitter) {
+		this.jitter = jitter;
+	}
+	
+	/**
+	 * Is Jitter Enabled?
+	 * @return
+	 */
+	public boolean isJitter() {
+		return jitter;
+	}
+	
+	/**
+	 * Get Stride used for a Sector
+	 * @param width Sector width
+	 * @param height Sector height
+	 * @return
+	 */
+	public int getStride(int width, int height) {
+		int budget = sampleBudget;
+		if(budget <= 0) return stride;
+		return Math.max(1, (int) Math.sqrt((double) width * height / budget));
+	}
+	
+	/**
+	 * Sample the sectors of the layout. Writes 3 bytes (R, G, B) per sector for as many sectors as fit the output array.
+	 */
+	@Override
+	public void sample(BufferedImage screen, byte[] sectors) {
+		sample(screen, sectors, false);
+	}
+	
+	/**
+	 * Measure the Error of the Decimated Colors against the Full Average
+	 * @param screen
+	 * @return
+	 */
+	public SamplingError measureError(BufferedImage screen) {
+		int count = layout.size();
+		byte[] decimated = new byte[count * 3], full = new byte[count * 3];
+		sample(screen, decimated, false);
+		sample(screen, full, true);
+		
+		long total = 0;
+		int max = 0;
+		for(int i = 0; i < full.length; i++) {
+			int error = Math.abs((decimated[i] & 0xFF) - (full[i] & 0xFF));
+			total += error;
+			if(error > max) max = error;
+		}
+		return new SamplingError((double) total / full.length, max);
+	}
+	
+	/**
+	 * Sample
+	 * @param screen
+	 * @param sectors
+	 * @param full Read every pixel
+	 */
+	private synchronized void sample(BufferedImage screen, byte[] sectors, boolean full) {
+		SectorLayout layout = this.layout;
+		boolean jitter = this.jitter && !full;
+		int width = screen.getWidth(), height = screen.getHeight();
+		int[] bounds = new int[4];
+		long[] sums = new long[3];
+		FrameRaster raster = FrameRaster.wrap(screen);
+		int rnd = seed;
+		
+		int count = Math.min(layout.size(), sectors.length / 3);
+		for(int i = 0; i < count; i++) {
+			layout.getBounds(i, width, height, bounds);
+			int x0 = bounds[0], y0 = bounds[1], x1 = bounds[2], y1 = bounds[3];
+			int isector = i * 3;
+			if(x0 >= x1 || y0 >= y1) { // Empty sector (Frame smaller than the grid)
+				sectors[isector] = sectors[isector + 1] = sectors[isector + 2] = 0;
+				continue;
+			}
+			int step = full ? 1 : getStride(x1 - x0, y1 - y0);
+			int num = 0, jx = 0, jy = 0;
+			
+			if(jitter && step > 1) {
+				rnd ^= rnd << 13; rnd ^= rnd >>> 17; rnd ^= rnd << 5; // Xorshift
+				jy = (rnd >>> 1) % step;
+			}
+			
+			sums[0] = sums[1] = sums[2] = 0;
+			for(int y = Math.min(y0 + jy, y1 - 1); y < y1; y += step) {
+				if(jitter && step > 1) {
+					rnd ^= rnd << 13; rnd ^= rnd >>> 17; rnd ^= rnd << 5;
+					jx = Math.min((rnd >>> 1) % step, x1 - x0 - 1);
+				}
+				if(raster != null) {
+					num += raster.sumRow(y, x0 + jx, x1, step, sums);
+				} else {
+					int pixel;
+					for(int x = x0 + jx; x < x1; x += step, num++) {
+						pixel = screen.getRGB(x, y);
+						sums[0] += (pixel >> 16) & 0xFF;
+						sums[1] += (pixel >> 8) & 0xFF;
+						sums[2] += pixel & 0xFF;
+					}
+				}
+			}
+			
+			sectors[isector++] = num == 0 ? 0 : (byte) (sums[0] / num);
+			sectors[isector++] = num == 0 ? 0 : (byte) (sums[1] / num);
+			sectors[isector] = num == 0 ? 0 : (byte) (sums[2] / num);
+		}
+		
+		if(!full) seed = rnd;
+	}
+	
+	/**
+	 * Sampling Error of the Decimated Colors against the Full Average (In color levels, 0 to 255)
+	 */
+	public static class SamplingError {
+		
+		SamplingError(double mean, int max) {
+			this.mean = mean;
+			this.max = max;
+		}
+		
+		private final double mean;
+		private final int max;
+		
+		/**
+		 * Get Mean Absolute Error over all Sectors and Channels
+		 * @return
+		 */
+		public double getMean() {
+			return mean;
+		}
+		
+		/**
+		 * Get Maximum Absolute Error of any Sector and Channel
+		 * @return
+		 */
+		public int getMax() {
+			return max;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("mean %.2f, max %d", mean, max);
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.emulator.utils;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Edge Band Sampler. Only reads bands along the borders of the screen, which is where the sector colors come from.
+ * With a RegionScreenGrabber only the bands are captured as well, so the interior of the screen is never copied.
+ * 
+ * Bands and sectors:
+ * Top band      7  6  5  4  3   (Full width, split into 5 columns)
+ * Left band     8           2   Right band (Middle third of the height)
+ * Bottom band   9 10 11 12  1   (Full width, split into 5 columns)
+ * 
+ * Band depths are clamped to the DreamScreen tile size (a third of the height, a fifth of the width). At that
+ * depth the colors are the same as the ones of the SimpleAverageSampler.
+ * 
+ * @author Robert Koszewski
+ */
+public class EdgeBandSampler extends SimpleAverageSampler {
+	
+	// Constructors
+	
+	public EdgeBandSampler(ScreenGrabber sgrabber) {
+		this(sgrabber, DEFAULT_DEPTH);
+	}
+	
+	public EdgeBandSampler(ScreenGrabber sgrabber, int depth) {
+		this(sgrabber, depth, depth, depth, depth);
+	}
+	
+	public EdgeBandSampler(ScreenGrabber sgrabber, int top, int bottom, int left, int right) {
+		super(sgrabber);
+		setBands(top, bottom, left, right);
+	}
+	
+	// Variables
+	private volatile int[] depths; // Top, Bottom, Left, Right
+	
+	// Constants
+	public static final int DEFAULT_DEPTH = 120;
+	public static final int TOP = 0, BOTTOM = 1, LEFT = 2, RIGHT = 3;
+	
+	// Sector numbers of the 5 columns of the top and bottom bands
+	private static final int[] TOP_SECTORS = {7, 6, 5, 4, 3};
+	private static final int[] BOTTOM_SECTORS = {9, 10, 11, 12, 1};
+	
+	// Methods
+	
+	/**
+	 * Set Band Depths in Pixels. Updates the capture regions of a RegionScreenGrabber.
+	 * @param top
+	 * @param bottom
+	 * @param left
+	 * @param right
+	 */
+	public void setBands(int top, int bottom, int left, int right) {
+		if(top < 1 || bottom < 1 || left < 1 || right < 1) throw new IllegalArgumentException("Band depths must be at least 1 pixel");
+		this.depths = new int[] {top, bottom, left, right};
+		
+		if(sgrabber instanceof RegionScreenGrabber) {
+			RegionScreenGrabber rgrabber = (RegionScreenGrabber) sgrabber;
+			Dimension size = rgrabber.getScreenSize();
+			rgrabber.setRegions(getBands(size.width, size.height));
+		}
+	}
+	
+	/**
+	 * Get Band Depth
+	 * @param band TOP, BOTTOM, LEFT or RIGHT
+	 * @return
+	 */
+	public int getDepth(int band) {
+		return depths[band];
+	}
+	
+	/**
+	 * Get Band Rectangles for a Screen Size
+	 * @param width
+	 * @param height
+	 * @return Top, bottom, left and right band
+	 */
+	public Rectangle[] getBands(int width, int height) {
+		int[] depths = this.depths;
+		int tileWidth = width / 5, tileHeight = height / 3;
+		int top = Math.min(depths[TOP], tileHeight), bottom = Math.min(depths[BOTTOM], tileHeight);
+		int left = Math.min(depths[LEFT], tileWidth), right = Math.min(depths[RIGHT], tileWidth);
+		return new Rectangle[] {
+			new Rectangle(0, 0, width, top),
+			new Rectangle(0, height - bottom, width, bottom),
+			new Rectangle(0, tileHeight, left, tileHeight),
+			new Rectangle(width - right, tileHeight, right, tileHeight)
+		};
+	}
+	
+	/**
+	 * Get the Fraction of the Screen covered by the Bands
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public double getCoverage(int width, int height) {
+		long pixels = 0;
+		for(Rectangle band : getBands(width, height)) {
+			pixels += (long) band.width * band.height;
+		}
+		return (double) pixels / ((long) width * height);
+	}
+	
+	@Override
+	protected boolean sampleNext(byte[] sectors) {
+		if(!(sgrabber instanceof RegionScreenGrabber)) return super.sampleNext(sectors);
+		
+		BufferedImage[] regions = ((RegionScreenGrabber) sgrabber).getRegions();
+		if(regions == null) return false;
+		
+		long timestamp = System.nanoTime();
+		if(regions.length == 4) sampleBands(regions, sectors);
+		else sample(regions[0], sectors); // Whole screen
+		stats.frameSampled(System.nanoTime() - timestamp);
+		
+		// Regions reset by the grabber (e.g. Monitor changed): Capture the bands of the new screen
+		if(regions.length != 4) {
+			int[] depths = this.depths;
+			setBands(depths[TOP], depths[BOTTOM], depths[LEFT], depths[RIGHT]);
+		}
+		return true;
+	}
+	
+	/**
+	 * Sample the bands of a full frame
+	 */
+	@Override
+	public void sample(BufferedImage screen, byte[] sectors) {
+		Rectangle[] bands = getBands(screen.getWidth(), screen.getHeight());
+		BufferedImage[] images = new BufferedImage[4];
+		for(int i = 0; i < 4; i++) {
+			Rectangle band = bands[i];
+			images[i] = screen.getSubimage(band.x, band.y, band.width, band.height);
+		}
+		sampleBands(images, sectors);
+	}
+	
+	/**
+	 * Sample captured Bands
+	 * @param bands Top, bottom, left and right band
+	 * @param sectors 36 bytes of output sector colors
+	 */
+	public void sampleBands(BufferedImage[] bands, byte[] sectors) {
+		long[] sums = new long[3];
+		int tileWidth = bands[TOP].getWidth() / 5;
+		for(int c = 0; c < 5; c++) {
+			average(bands[TOP], c * tileWidth, (c + 1) * tileWidth, sums, sectors, TOP_SECTORS[c]);
+			average(bands[BOTTOM], c * tileWidth, (c + 1) * tileWidth, sums, sectors, BOTTOM_SECTORS[c]);
+		}
+		average(bands[LEFT], 0, bands[LEFT].getWidth(), sums, sectors, 8);
+		average(bands[RIGHT], 0, bands[RIGHT].getWidth(), sums, sectors, 2);
+	}
+	
+	/**
+	 * Average a column range of a band into a sector
+	 * @param band
+	 * @param x0
+	 * @param x1
+	 * @param sums
+	 * @param sectors
+	 * @param sector Sector number (1 to 12)
+	 */
+	private static void average(BufferedImage band, int x0, int x1, long[] sums, byte[] sectors, int sector) {
+		int height = band.getHeight();
+		sums[0] = sums[1] = sums[2] = 0;
+		FrameRaster raster = FrameRaster.wrap(band);
+		if(raster != null) {
+			raster.sum(x0, 0, x1, height, sums);
+		} else {
+			int pixel;
+			for(int y = 0; y < height; y++) {
+				for(int x = x0; x < x1; x++) {
+					pixel = band.getRGB(x, y);
+					sums[0] += (pixel >> 16) & 0xFF;
+					sums[1] += (pixel >> 8) & 0xFF;
+					sums[2] += pixel & 0xFF;
+				}
+			}
+		}
+		
+		int num = (x1 - x0) * height;
+		int isector = sector * 3 - 3;
+		sectors[isector++] = num == 0 ? 0 : (byte) (sums[0] / num);
+		sectors[isector++] = num == 0 ? 0 : (byte) (sums[1] / num);
+		sectors[isector] = num == 0 ? 0 : (byte) (sums[2] / num);
+	}
+}
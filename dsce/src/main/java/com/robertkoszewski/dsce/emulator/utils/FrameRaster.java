@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.emulator.utils;
+
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Direct access to the pixel data of a frame. Reads the backing int or byte array in row-major order instead 
+ * of going through BufferedImage.getRGB() and its color model conversion for every pixel.
+ * 
+ * Supports 8 bit sRGB images packed into ints (TYPE_INT_RGB, TYPE_INT_ARGB) or interleaved into bytes 
+ * (TYPE_3BYTE_BGR, TYPE_4BYTE_ABGR). Other layouts are not supported and have to be read with getRGB().
+ * 
+ * @author Robert Koszewski
+ */
+final class FrameRaster {
+	
+	private FrameRaster(int[] ints, byte[] bytes, int offset, int scanlineStride, int pixelStride, int redOffset, int greenOffset, int blueOffset) {
+		this.ints = ints;
+		this.bytes = bytes;
+		this.offset = offset;
+		this.scanlineStride = scanlineStride;
+		this.pixelStride = pixelStride;
+		this.redOffset = redOffset;
+		this.greenOffset = greenOffset;
+		this.blueOffset = blueOffset;
+	}
+	
+	// Variables
+	private final int[] ints;
+	private final byte[] bytes;
+	private final int offset;
+	private final int scanlineStride;
+	private final int pixelStride;
+	private final int redOffset, greenOffset, blueOffset;
+	
+	// Methods
+	
+	/**
+	 * Wrap the pixel data of a frame
+	 * @param image
+	 * @return FrameRaster or NULL if the image layout is not supported
+	 */
+	public static FrameRaster wrap(BufferedImage image) {
+		ColorModel cm = image.getColorModel();
+		if(cm.isAlphaPremultiplied() || !cm.getColorSpace().isCS_sRGB()) return null;
+		
+		WritableRaster raster = image.getRaster();
+		SampleModel sm = raster.getSampleModel();
+		DataBuffer buffer = raster.getDataBuffer();
+		if(buffer.getNumBanks() != 1) return null;
+		int tx = raster.getSampleModelTranslateX(), ty = raster.getSampleModelTranslateY();
+		
+		// Packed Int Pixels
+		if(buffer instanceof DataBufferInt && sm instanceof SinglePixelPackedSampleModel && cm instanceof DirectColorModel) {
+			DirectColorModel dcm = (DirectColorModel) cm;
+			if(dcm.getRedMask() != 0xFF0000 || dcm.getGreenMask() != 0xFF00 || dcm.getBlueMask() != 0xFF) return null;
+			SinglePixelPackedSampleModel psm = (SinglePixelPackedSampleModel) sm;
+			return new FrameRaster(((DataBufferInt) buffer).getData(), null, buffer.getOffset() + psm.getOffset(-tx, -ty), 
+					psm.getScanlineStride(), 1, 0, 0, 0);
+		}
+		
+		// Interleaved Byte Pixels
+		if(buffer instanceof DataBufferByte && sm instanceof ComponentSampleModel && cm instanceof ComponentColorModel) {
+			ComponentSampleModel csm = (ComponentSampleModel) sm;
+			if(cm.getNumColorComponents() != 3 || cm.getColorSpace().getType() != ColorSpace.TYPE_RGB) return null;
+			for(int i = 0; i < cm.getNumComponents(); i++) {
+				if(cm.getComponentSize(i) != 8) return null;
+			}
+			int[] bands = csm.getBankIndices();
+			for(int i = 0; i < bands.length; i++) {
+				if(bands[i] != 0) return null;
+			}
+			int[] bandOffsets = csm.getBandOffsets();
+			return new FrameRaster(null, ((DataBufferByte) buffer).getData(), buffer.getOffset() - ty * csm.getScanlineStride() - tx * csm.getPixelStride(), 
+					csm.getScanlineStride(), csm.getPixelStride(), bandOffsets[0], bandOffsets[1], bandOffsets[2]);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Sum the color channels of every n-th pixel of a row segment
+	 * @param y Row
+	 * @param x0 First pixel (inclusive)
+	 * @param x1 End of the segment (exclusive)
+	 * @param step Distance between summed pixels
+	 * @param sums Output red, green and blue sums (Added to the existing values)
+	 * @return Number of summed pixels
+	 */
+	public int sumRow(int y, int x0, int x1, int step, long[] sums) {
+		if(x0 >= x1) return 0;
+		long sumr = 0, sumg = 0, sumb = 0;
+		int row = offset + y * scanlineStride;
+		if(ints != null) {
+			int[] data = ints;
+			int pixel;
+			for(int i = row + x0, end = row + x1; i < end; i += step) {
+				pixel = data[i];
+				sumb += pixel & 0xFF;
+				sumg += (pixel >> 8) & 0xFF;
+				sumr += (pixel >> 16) & 0xFF;
+			}
+		} else {
+			byte[] data = bytes;
+			int istep = step * pixelStride;
+			for(int i = row + x0 * pixelStride, end = row + x1 * pixelStride; i < end; i += istep) {
+				sumr += data[i + redOffset] & 0xFF;
+				sumg += data[i + greenOffset] & 0xFF;
+				sumb += data[i + blueOffset] & 0xFF;
+			}
+		}
+		sums[0] += sumr;
+		sums[1] += sumg;
+		sums[2] += sumb;
+		return (x1 - x0 + step - 1) / step;
+	}
+	
+	/**
+	 * Sum the color channels of a region
+	 * @param x0 Left (inclusive)
+	 * @param y0 Top (inclusive)
+	 * @param x1 Right (exclusive)
+	 * @param y1 Bottom (exclusive)
+	 * @param sums Output red, green and blue sums (Added to the existing values)
+	 */
+	public void sum(int x0, int y0, int x1, int y1, long[] sums) {
+		long sumr = 0, sumg = 0, sumb = 0;
+		if(ints != null) {
+			int[] data = ints;
+			int pixel;
+			for(int y = y0; y < y1; y++) {
+				int row = offset + y * scanlineStride;
+				for(int i = row + x0, end = row + x1; i < end; i++) {
+					pixel = data[i];
+					sumb += pixel & 0xFF;
+					sumg += (pixel >> 8) & 0xFF;
+					sumr += (pixel >> 16) & 0xFF;
+				}
+			}
+		} else {
+			byte[] data = bytes;
+			int step = pixelStride;
+			for(int y = y0; y < y1; y++) {
+				int row = offset + y * scanlineStride;
+				for(int i = row + x0 * step, end = row + x1 * step; i < end; i += step) {
+					sumr += data[i + redOffset] & 0xFF;
+					sumg += data[i + greenOffset] & 0xFF;
+					sumb += data[i + blueOffset] & 0xFF;
+				}
+			}
+		}
+		sums[0] += sumr;
+		sums[1] += sumg;
+		sums[2] += sumb;
+	}
+}
@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.emulator.utils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Frame Sampler Interface. Reduces a single captured frame to the 12 sector colors of the virtual screen.
+ * 
+ * Sectors:
+ * 7  6  5  4  3
+ * 8           2
+ * 9 10 11 12  1
+ * 
+ * @author Robert Koszewski
+ */
+public interface FrameSampler {
+	
+	/**
+	 * Sample a frame
+	 * @param frame Captured frame
+	 * @param sectors 36 bytes of output sector colors (R, G, B for sectors 1 to 12)
+	 */
+	public void sample(BufferedImage frame, byte[] sectors);
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.emulator.utils;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Parallel Average Sampler. Splits the frame into row bands that are summed on a fork-join pool and 
+ * reduces the per sector sums, so sampling scales with the available cores. Sums are integer so the 
+ * colors are identical to the ones of the SimpleAverageSampler.
+ * @author Robert Koszewski
+ */
+public class ParallelAverageSampler extends SimpleAverageSampler {
+	
+	// Constructors
+	
+	public ParallelAverageSampler(ScreenGrabber sgrabber) {
+		this(sgrabber, Runtime.getRuntime().availableProcessors());
+	}
+	
+	public ParallelAverageSampler(ScreenGrabber sgrabber, int parallelism) {
+		super(sgrabber);
+		setParallelism(parallelism);
+	}
+	
+	// Variables
+	private volatile int parallelism;
+	private SharedPool pool; // Created on demand, guarded by this
+	
+	// Constants
+	private static final int MIN_BAND_ROWS = 16;
+	private static final int BANDS_PER_THREAD = 4;
+	
+	// Methods
+	
+	/**
+	 * Set Parallelism Level. A frame being sampled finishes on the previous pool, which is shut down afterwards
+	 * @param parallelism Number of threads to sample with (1 samples on the sampler thread)
+	 */
+	public synchronized void setParallelism(int parallelism) {
+		if(parallelism < 1) parallelism = 1;
+		this.parallelism = parallelism;
+		retirePool();
+	}
+	
+	/**
+	 * Get Parallelism Level
+	 * @return
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+	
+	@Override
+	public void stop() {
+		super.stop();
+		synchronized(this) {
+			retirePool(); // Recreated if sampling again
+		}
+	}
+	
+	@Override
+	public void sample(BufferedImage screen, byte[] sectors) {
+		int height = screen.getHeight() / 3 * 3; // Rows covered by the sector grid
+		FrameRaster raster = FrameRaster.wrap(screen);
+		
+		SharedPool fpool = acquirePool();
+		long[] sums;
+		try {
+			int bandRows = fpool == null ? height : Math.max(MIN_BAND_ROWS, height / (fpool.parallelism * BANDS_PER_THREAD) + 1);
+			BandTask task = new BandTask(screen, raster, 0, height, bandRows);
+			sums = height > bandRows ? fpool.pool.invoke(task) : task.compute(); // Single band runs on the calling thread
+		} finally {
+			if(fpool != null) releasePool(fpool);
+		}
+		
+		int num = (screen.getWidth() / 5) * (screen.getHeight() / 3); // All DreamScreen sectors are the same size
+		for(int i = 0; i < 36; i++) {
+			sectors[i] = (byte) (sums[i] / num);
+		}
+	}
+	
+	/**
+	 * Get the current Pool for one frame (Creating it if needed)
+	 * @return Pool or NULL if sampling on the calling thread
+	 */
+	private synchronized SharedPool acquirePool() {
+		if(pool == null) {
+			if(parallelism < 2) return null;
+			pool = new SharedPool(parallelism);
+		}
+		pool.users++;
+		return pool;
+	}
+	
+	/**
+	 * Return a Pool after a frame (Shutting it down if it got replaced meanwhile)
+	 * @param fpool
+	 */
+	private synchronized void releasePool(SharedPool fpool) {
+		if(--fpool.users == 0 && fpool != pool) fpool.pool.shutdown();
+	}
+	
+	/**
+	 * Replace the current Pool (Shut down now if idle, otherwise by the last frame using it)
+	 */
+	private void retirePool() {
+		SharedPool old = pool;
+		pool = null;
+		if(old != null && old.users == 0) old.pool.shutdown();
+	}
+	
+	/**
+	 * Fork-join Pool with the number of frames currently sampled on it
+	 */
+	private static class SharedPool {
+		
+		SharedPool(int parallelism) {
+			this.parallelism = parallelism;
+			this.pool = new ForkJoinPool(parallelism);
+		}
+		
+		final int parallelism;
+		final ForkJoinPool pool;
+		int users = 0;
+	}
+	
+	/**
+	 * Sums the sector tiles crossing a range of rows, splitting it while it is larger than a band
+	 */
+	private static class BandTask extends RecursiveTask<long[]> {
+		
+		private static final long serialVersionUID = 1L;
+
+		BandTask(BufferedImage screen, FrameRaster raster, int y0, int y1, int bandRows) {
+			this.screen = screen;
+			this.raster = raster;
+			this.y0 = y0;
+			this.y1 = y1;
+			this.bandRows = bandRows;
+		}
+		
+		private final BufferedImage screen;
+		private final FrameRaster raster;
+		private final int y0, y1, bandRows;
+
+		@Override
+		protected long[] compute() {
+			if(y1 - y0 > bandRows) {
+				int mid = (y0 + y1) >>> 1;
+				BandTask top = new BandTask(screen, raster, y0, mid, bandRows);
+				BandTask bottom = new BandTask(screen, raster, mid, y1, bandRows);
+				top.fork();
+				long[] sums = bottom.compute();
+				long[] topSums = top.join();
+				for(int i = 0; i < 36; i++) {
+					sums[i] += topSums[i];
+				}
+				return sums;
+			}
+			
+			long[] sums = new long[36];
+			long[] rgb = new long[3];
+			int[] bounds = new int[4];
+			for(int s = 0; s < 12; s++) {
+				SectorLayout.DREAMSCREEN.getBounds(s, screen.getWidth(), screen.getHeight(), bounds);
+				int ya = Math.max(y0, bounds[1]), yb = Math.min(y1, bounds[3]);
+				if(ya >= yb) continue; // Sector not in this band
+				int xa = bounds[0], xb = bounds[2];
+				
+				rgb[0] = rgb[1] = rgb[2] = 0;
+				if(raster != null) {
+					raster.sum(xa, ya, xb, yb, rgb);
+				} else {
+					int pixel;
+					for(int y = ya; y < yb; y++) {
+						for(int x = xa; x < xb; x++) {
+							pixel = screen.getRGB(x, y);
+							rgb[0] += (pixel >> 16) & 0xFF;
+							rgb[1] += (pixel >> 8) & 0xFF;
+							rgb[2] += pixel & 0xFF;
+						}
+					}
+				}
+				sums[s * 3] = rgb[0];
+				sums[s * 3 + 1] = rgb[1];
+				sums[s * 3 + 2] = rgb[2];
+			}
+			return sums;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.emulator.utils;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Screen Grabber that can capture only some regions of the screen instead of the whole frame
+ * @author Robert Koszewski
+ */
+public interface RegionScreenGrabber extends ScreenGrabber {
+	
+	/**
+	 * Get the Size of the captured Screen
+	 * @return
+	 */
+	public Dimension getScreenSize();
+	
+	/**
+	 * Set the Regions to capture
+	 * @param regions Screen regions (NULL or none to capture the whole screen)
+	 */
+	public void setRegions(Rectangle... regions);
+	
+	/**
+	 * Get last captured regions and allow capturing the next ones (Same behavior as getFrame())
+	 * @return One image per region in the order they were set, or NULL if the grabber got interrupted
+	 */
+	public BufferedImage[] getRegions();
+}
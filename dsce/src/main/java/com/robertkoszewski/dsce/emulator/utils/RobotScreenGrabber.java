@@ -23,25 +23,126 @@
 package com.robertkoszewski.dsce.emulator.utils;
 
 import java.awt.AWTException;
+import java.awt.Dimension;
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
 import java.awt.Rectangle;
 import java.awt.Robot;
-import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.robertkoszewski.dsce.utils.FrameExchanger;
 
 /**
- * Java Robot Screen Capture based Screen Grabber
+ * Java Robot Screen Capture based Screen Grabber. 
+ * Captures either the whole screen or only the regions set with setRegions() (one capture per region).
+ * Frames are handed over lock-free: the capture thread never waits for the sampler, and the sampler always 
+ * gets the newest complete frame.
  * @author Robert Koszewski
  */
-public class RobotScreenGrabber extends Thread implements ScreenGrabber {
+public class RobotScreenGrabber extends Thread implements RegionScreenGrabber {
+	
+	// Constructors
+	
+	public RobotScreenGrabber() {
+		this(-1);
+	}
+	
+	/**
+	 * Robot Screen Grabber for a Monitor
+	 * @param monitor Monitor index (See getMonitorCount(), -1 for the default monitor)
+	 */
+	public RobotScreenGrabber(int monitor) {
+		setMonitor(monitor);
+	}
+	
+	// Variables
+	private final FrameExchanger<BufferedImage[]> frames = new FrameExchanger<BufferedImage[]>();
+	private volatile boolean waitForNewFrame = true;
+	private volatile GraphicsDevice device;
+	private volatile Rectangle bounds;
+	private volatile Rectangle[] regions = new Rectangle[0];
+	private final Object screenLock = new Object(); // Regions are always clipped against the current bounds
+	private final AtomicLongArray captureTime = new AtomicLongArray(CaptureMode.values().length);
+	private final AtomicLongArray captures = new AtomicLongArray(CaptureMode.values().length);
 	
-	private boolean hasFrame = false;
-	private BufferedImage screen;
+	// Methods
 	
-	// Locks
-	private ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock();
-	private ReentrantLock screenLock = new ReentrantLock();
+	/**
+	 * Get Number of Monitors
+	 * @return
+	 */
+	public static int getMonitorCount() {
+		return GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices().length;
+	}
+	
+	/**
+	 * Select the Monitor to capture (Takes effect on the next frame). Call again after a resolution change.
+	 * Capture regions are kept if the screen size stays the same, otherwise the whole screen is captured
+	 * until new regions are set.
+	 * @param monitor Monitor index (See getMonitorCount(), -1 for the default monitor)
+	 * @throws HeadlessException if there is no screen to capture
+	 */
+	public void setMonitor(int monitor) {
+		GraphicsEnvironment env = GraphicsEnvironment.getLocalGraphicsEnvironment();
+		if(env.isHeadlessInstance()) throw new HeadlessException();
+		GraphicsDevice[] devices = env.getScreenDevices();
+		if(monitor >= devices.length) throw new IllegalArgumentException("Monitor " + monitor + " does not exist (" + devices.length + " available)");
+		GraphicsDevice device = monitor < 0 ? env.getDefaultScreenDevice() : devices[monitor];
+		Rectangle bounds = device.getDefaultConfiguration().getBounds();
+		synchronized(screenLock) {
+			if(this.bounds != null && !bounds.getSize().equals(this.bounds.getSize())) 
+				this.regions = new Rectangle[0]; // Clipped against the old screen
+			this.bounds = bounds;
+			this.device = device;
+		}
+	}
+	
+	@Override
+	public Dimension getScreenSize() {
+		return bounds.getSize();
+	}
+	
+	@Override
+	public void setRegions(Rectangle... regions) {
+		synchronized(screenLock) {
+			Rectangle screen = new Rectangle(getScreenSize());
+			Rectangle[] copy = regions == null ? new Rectangle[0] : new Rectangle[regions.length];
+			for(int i = 0; i < copy.length; i++) {
+				copy[i] = regions[i].intersection(screen);
+				if(copy[i].isEmpty()) throw new IllegalArgumentException("Region " + regions[i] + " is outside of the screen");
+			}
+			this.regions = copy;
+		}
+	}
+	
+	/**
+	 * Get Current Capture Mode
+	 * @return
+	 */
+	public CaptureMode getCaptureMode() {
+		return regions.length == 0 ? CaptureMode.FULL_SCREEN : CaptureMode.REGIONS;
+	}
+	
+	/**
+	 * Get Average Capture Time per Frame
+	 * @param mode
+	 * @return Milliseconds per frame (0 if no frame has been captured in this mode)
+	 */
+	public double getCaptureTime(CaptureMode mode) {
+		long count = captures.get(mode.ordinal());
+		return count == 0 ? 0 : captureTime.get(mode.ordinal()) / (count * 1000000.0);
+	}
+	
+	/**
+	 * Get Number of Frames captured in a Mode
+	 * @param mode
+	 * @return
+	 */
+	public long getCaptureCount(CaptureMode mode) {
+		return captures.get(mode.ordinal());
+	}
 	
 	@Override
 	public synchronized void start() {
@@ -52,25 +153,38 @@ public class RobotScreenGrabber extends Thread implements ScreenGrabber {
 	public void run() {
 		super.run();
 		
-		Robot robot;
+		Robot robot = null;
+		GraphicsDevice robotDevice = null;
 		try {
-			robot = new Robot();
-			Toolkit toolkit = Toolkit.getDefaultToolkit();
-			Rectangle screenRectangle;
-
 			while(!isInterrupted()) {
-
-				screenRectangle = new Rectangle(toolkit.getScreenSize());
-				screen = robot.createScreenCapture(screenRectangle); // Seems that what takes most of the time is storing the buffered image. Maybe multithread two Robot instances?
-
-				synchronized(screenLock) {
-					screenLock.notifyAll();
+				
+				// Monitor Selection
+				GraphicsDevice device = this.device;
+				if(robot == null || device != robotDevice) {
+					robot = new Robot(device);
+					robotDevice = device;
 				}
-
-				rwLock.writeLock().lock();
-				hasFrame = true;
-				rwLock.writeLock().unlock();
-
+				
+				// Capture (Robot coordinates are in the virtual screen space of all monitors)
+				Rectangle bounds = this.bounds;
+				Rectangle[] regions = this.regions;
+				long timestamp = System.nanoTime();
+				BufferedImage[] images;
+				CaptureMode mode;
+				if(regions.length == 0) {
+					mode = CaptureMode.FULL_SCREEN;
+					images = new BufferedImage[] {robot.createScreenCapture(bounds)};
+				} else {
+					mode = CaptureMode.REGIONS;
+					images = new BufferedImage[regions.length];
+					for(int i = 0; i < regions.length; i++) {
+						Rectangle r = regions[i];
+						images[i] = robot.createScreenCapture(new Rectangle(bounds.x + r.x, bounds.y + r.y, r.width, r.height));
+					}
+				}
+				captureTime.addAndGet(mode.ordinal(), System.nanoTime() - timestamp);
+				captures.incrementAndGet(mode.ordinal());
+				frames.publish(images);
 			}
 		
 		} catch (AWTException e) {
@@ -80,33 +194,68 @@ public class RobotScreenGrabber extends Thread implements ScreenGrabber {
 	}
 	
 	public boolean hasFrame() {
-		rwLock.readLock().lock();
-		boolean retHasFrame = hasFrame;
-		rwLock.readLock().unlock();
-		return retHasFrame;
+		return frames.hasFrame();
 	}
 	
+	/**
+	 * Get last captured frame (The first region when capturing regions)
+	 */
 	public BufferedImage getFrame() {
-		rwLock.readLock().lock();
-		if(!hasFrame) {
-			// Wait for frame
-			synchronized(screenLock){
-				try {
-					screenLock.wait();
-				} catch (InterruptedException e) {
-					rwLock.readLock().unlock();
-					return null;
-				}
-			}
+		BufferedImage[] tscreens = getRegions();
+		return tscreens == null ? null : tscreens[0];
+	}
+	
+	@Override
+	public BufferedImage[] getRegions() {
+		if(waitForNewFrame) return frames.take();
+		BufferedImage[] images = frames.poll();
+		return images != null ? images : frames.take(); // Wait only for the very first frame
+	}
+	
+	/**
+	 * Wait for a new Frame in getFrame() and getRegions(). When disabled the last frame is 
+	 * returned again if the capture has not finished a new one yet (counted as duplicated).
+	 * @param waitForNewFrame (Default: TRUE)
+	 */
+	public void setWaitForNewFrame(boolean waitForNewFrame) {
+		this.waitForNewFrame = waitForNewFrame;
+	}
+	
+	/**
+	 * Get Number of Captured Frames the Sampler never got (Replaced by a newer capture)
+	 * @return
+	 */
+	public long getDroppedFrames() {
+		return frames.getDropped();
+	}
+	
+	/**
+	 * Get Number of Frames handed out more than once
+	 * @return
+	 */
+	public long getDuplicatedFrames() {
+		return frames.getDuplicated();
+	}
+	
+	/**
+	 * Get Capture Statistics of all Modes
+	 * @return
+	 */
+	public String getCaptureStats() {
+		StringBuilder sb = new StringBuilder();
+		for(CaptureMode mode : CaptureMode.values()) {
+			if(mode.ordinal() != 0) sb.append(", ");
+			sb.append(mode).append(String.format(": %.2f ms/frame (%d frames)", getCaptureTime(mode), getCaptureCount(mode)));
 		}
-		rwLock.readLock().unlock();
-		
-		BufferedImage tscreen = screen;
-		
-		rwLock.writeLock().lock();
-		hasFrame = false;
-		rwLock.writeLock().unlock();
-		
-		return tscreen;
+		sb.append(", ").append(getDroppedFrames()).append(" dropped, ").append(getDuplicatedFrames()).append(" duplicated");
+		return sb.toString();
+	}
+	
+	/**
+	 * Capture Mode
+	 */
+	public enum CaptureMode {
+		FULL_SCREEN,
+		REGIONS
 	}
 }
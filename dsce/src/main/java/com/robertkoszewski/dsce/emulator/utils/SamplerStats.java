@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.emulator.utils;
+
+import com.robertkoszewski.dsce.utils.RateMeter;
+
+/**
+ * Sampler Statistics (Frame rate and per frame sampling latency)
+ * @author Robert Koszewski
+ */
+public class SamplerStats {
+	
+	// Variables
+	private final RateMeter frames = new RateMeter();
+	private volatile long lastLatency = 0;
+	private volatile long maxLatency = 0;
+	private volatile long totalLatency = 0;
+	
+	// Methods
+	
+	/**
+	 * Register a sampled frame (Called from the sampler thread only)
+	 * @param latency Sampling time in nanoseconds
+	 */
+	public void frameSampled(long latency) {
+		lastLatency = latency;
+		totalLatency += latency;
+		if(latency > maxLatency) maxLatency = latency;
+		frames.tick();
+	}
+	
+	/**
+	 * Get Frames per Second (Last completed second)
+	 * @return
+	 */
+	public long getFPS() {
+		return frames.getRate();
+	}
+	
+	/**
+	 * Get Sampled Frames
+	 * @return
+	 */
+	public long getFrames() {
+		return frames.getTotal();
+	}
+	
+	/**
+	 * Get Last Frame Sampling Latency in Milliseconds
+	 * @return
+	 */
+	public double getLastLatency() {
+		return lastLatency / 1000000.0;
+	}
+	
+	/**
+	 * Get Average Frame Sampling Latency in Milliseconds
+	 * @return
+	 */
+	public double getAverageLatency() {
+		long count = frames.getTotal();
+		return count == 0 ? 0 : totalLatency / (count * 1000000.0);
+	}
+	
+	/**
+	 * Get Maximum Frame Sampling Latency in Milliseconds
+	 * @return
+	 */
+	public double getMaxLatency() {
+		return maxLatency / 1000000.0;
+	}
+	
+	/**
+	 * Reset Statistics
+	 */
+	public void reset() {
+		frames.reset();
+		lastLatency = 0;
+		maxLatency = 0;
+		totalLatency = 0;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%d FPS, %.2f ms/frame (avg %.2f ms, max %.2f ms)", getFPS(), getLastLatency(), getAverageLatency(), getMaxLatency());
+	}
+}
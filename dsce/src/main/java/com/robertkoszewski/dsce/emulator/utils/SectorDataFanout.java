@@ -0,0 +1,221 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.emulator.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.robertkoszewski.dsce.client.server.SendChannel;
+import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.messages.FrameBuffer;
+import com.robertkoszewski.dsce.utils.Threads;
+
+/**
+ * Screen Sector Data Fan-Out. 
+ * Takes the latest sampled frame from the sampler thread without blocking, encodes it once 
+ * and sends it to every subscriber from a dedicated thread over a non-blocking channel.
+ * When the sender falls behind, older frames are replaced by newer ones instead of queueing up.
+ * @author Robert Koszewski
+ */
+public class SectorDataFanout {
+	
+	/**
+	 * Initialize Fan-Out
+	 * @param channel Shared send channel
+	 * @param port Destination port
+	 * @param subscribers Live view of the subscribers (Must be safe for concurrent iteration)
+	 */
+	public SectorDataFanout(SendChannel channel, int port, Collection<SubscribedDevice> subscribers) {
+		this.channel = channel;
+		this.port = port;
+		this.subscribers = subscribers;
+	}
+	
+	// Variables
+	
+	private final SendChannel channel;
+	private final int port;
+	private final Collection<SubscribedDevice> subscribers;
+	private final ReentrantLock lock = new ReentrantLock(); // Does not pin virtual threads while waiting, unlike Object.wait
+	private final Condition framePending = lock.newCondition();
+	private final byte[] pending = new byte[SECTOR_DATA_LENGTH];
+	private boolean hasPending = false;
+	private byte pendingGroup = 0;
+	private volatile long frameInterval = DEFAULT_FRAME_INTERVAL;
+	private FanoutLoop thread;
+	
+	// Statistics
+	private final AtomicLong publishedFrames = new AtomicLong();
+	private final AtomicLong replacedFrames = new AtomicLong();
+	private final AtomicLong sentFrames = new AtomicLong();
+	
+	// Constants
+	public static final int SECTOR_DATA_LENGTH = 36;
+	public static final long DEFAULT_FRAME_INTERVAL = 16; // ~60 FPS to avoid saturating the network
+	
+	// Methods
+	
+	/**
+	 * Publish a new Frame (Never blocks on the network. Replaces any frame not yet sent)
+	 * @param group Group Address
+	 * @param sectors Sector Color Payload
+	 */
+	public void publish(byte group, byte[] sectors) {
+		lock.lock();
+		try {
+			System.arraycopy(sectors, 0, pending, 0, Math.min(sectors.length, SECTOR_DATA_LENGTH));
+			pendingGroup = group;
+			if(hasPending) replacedFrames.incrementAndGet();
+			hasPending = true;
+			publishedFrames.incrementAndGet();
+			if(thread == null) {
+				thread = new FanoutLoop();
+				Threads.startThread("DS Sector Data Fan-Out", true, thread);
+			}
+			framePending.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Stop the Fan-Out Thread (Restarted on the next published frame)
+	 */
+	public void stop() {
+		lock.lock();
+		try {
+			if(thread != null) {
+				thread.running = false; // Not interrupted: Interrupting a send would close the shared channel
+				thread = null;
+			}
+			hasPending = false;
+			framePending.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Set Minimum Interval between sent Frames
+	 * @param frameInterval Milliseconds (0 to disable)
+	 */
+	public void setFrameInterval(long frameInterval) {
+		this.frameInterval = frameInterval < 0 ? 0 : frameInterval;
+	}
+	
+	/**
+	 * Get Minimum Interval between sent Frames
+	 * @return
+	 */
+	public long getFrameInterval() {
+		return frameInterval;
+	}
+	
+	/**
+	 * Get Frames published by the Sampler
+	 * @return
+	 */
+	public long getPublishedFrames() {
+		return publishedFrames.get();
+	}
+	
+	/**
+	 * Get Frames replaced by a newer Frame before being sent
+	 * @return
+	 */
+	public long getReplacedFrames() {
+		return replacedFrames.get();
+	}
+	
+	/**
+	 * Get Frames sent out (Once per Frame, regardless of the number of subscribers)
+	 * @return
+	 */
+	public long getSentFrames() {
+		return sentFrames.get();
+	}
+	
+	// Fan-Out Loop (Runs on a platform or virtual thread)
+	private class FanoutLoop implements Runnable {
+		
+		private final byte[] sectors = new byte[SECTOR_DATA_LENGTH];
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(DSMessage.MAX_FRAME_SIZE);
+		private volatile boolean running = true;
+		
+		@Override
+		public void run() {
+			long lastFrameTime = 0;
+			try {
+				while(running) {
+					// Throttle (On this thread, never on the sampler)
+					long wait = frameInterval - (System.currentTimeMillis() - lastFrameTime);
+					if(wait > 0) Thread.sleep(wait);
+					
+					// Take Latest Frame
+					byte group;
+					lock.lock();
+					try {
+						while(!hasPending && running) framePending.await();
+						if(!running) break;
+						System.arraycopy(pending, 0, sectors, 0, SECTOR_DATA_LENGTH);
+						group = pendingGroup;
+						hasPending = false;
+					} finally {
+						lock.unlock();
+					}
+					lastFrameTime = System.currentTimeMillis();
+					
+					// Encode Once
+					FrameBuffer frame = FrameBuffer.get();
+					frame.encode(group, DSMessage.FLAG_SCREEN_SECTOR_DATA, DSMessage.COMMAND_UPPER_SCREEN_SECTOR_DATA, DSMessage.COMMAND_LOWER_SCREEN_SECTOR_DATA, sectors);
+					buffer.clear();
+					buffer.put(frame.getData(), 0, frame.getLength());
+					buffer.flip();
+					
+					// Send to all Subscribers
+					Iterator<SubscribedDevice> sit = subscribers.iterator();
+					while(sit.hasNext()) {
+						SubscribedDevice subscriber = sit.next();
+						buffer.rewind();
+						long start = System.nanoTime();
+						boolean sent;
+						try {
+							sent = channel.send(subscriber.getSocketAddress(port), buffer);
+						} catch (IOException e) {
+							sent = false;
+						}
+						subscriber.recordSend(System.nanoTime() - start, sent);
+					}
+					sentFrames.incrementAndGet();
+				}
+			} catch (InterruptedException e) {
+				// Stopped
+			}
+		}
+	}
+}
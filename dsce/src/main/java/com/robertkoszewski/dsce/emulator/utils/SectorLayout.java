@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.emulator.utils;
+
+/**
+ * Sector Layout. Describes the screen regions that are averaged into sector colors as data: the frame is 
+ * divided into a grid of equally sized cells and every sector covers a rectangle of cells. Sectors can 
+ * overlap and do not need to cover the whole frame (e.g. to skip letterbox bars).
+ * 
+ * Cell sizes are rounded down (cell width = frame width / columns), so the pixels that do not fit the grid 
+ * on the right and bottom edges are never sampled.
+ * 
+ * @author Robert Koszewski
+ */
+public class SectorLayout {
+	
+	// Constructors
+	
+	/**
+	 * Sector Layout
+	 * @param columns Grid columns
+	 * @param rows Grid rows
+	 * @param sectors Sector rectangles as {column, row, columns, rows}, in sector order
+	 */
+	public SectorLayout(int columns, int rows, int[]... sectors) {
+		if(columns < 1 || rows < 1) throw new IllegalArgumentException("Invalid grid size: " + columns + "x" + rows);
+		this.columns = columns;
+		this.rows = rows;
+		this.sectors = new int[sectors.length][];
+		for(int i = 0; i < sectors.length; i++) {
+			int[] s = sectors[i];
+			if(s.length != 4 || s[0] < 0 || s[1] < 0 || s[2] < 1 || s[3] < 1 || s[0] + s[2] > columns || s[1] + s[3] > rows)
+				throw new IllegalArgumentException("Sector " + (i + 1) + " does not fit the " + columns + "x" + rows + " grid");
+			this.sectors[i] = s.clone();
+		}
+	}
+	
+	// Variables
+	private final int columns, rows;
+	private final int[][] sectors;
+	
+	// Constants
+	
+	/**
+	 * DreamScreen Layout. 12 sectors on a 5x3 grid:
+	 * 7  6  5  4  3
+	 * 8           2
+	 * 9 10 11 12  1
+	 */
+	public static final SectorLayout DREAMSCREEN = new SectorLayout(5, 3, 
+			new int[] {4, 2, 1, 1}, new int[] {4, 1, 1, 1}, new int[] {4, 0, 1, 1}, new int[] {3, 0, 1, 1}, 
+			new int[] {2, 0, 1, 1}, new int[] {1, 0, 1, 1}, new int[] {0, 0, 1, 1}, new int[] {0, 1, 1, 1}, 
+			new int[] {0, 2, 1, 1}, new int[] {1, 2, 1, 1}, new int[] {2, 2, 1, 1}, new int[] {3, 2, 1, 1});
+	
+	// Methods
+	
+	/**
+	 * Get Number of Sectors
+	 * @return
+	 */
+	public int size() {
+		return sectors.length;
+	}
+	
+	/**
+	 * Get Grid Columns
+	 * @return
+	 */
+	public int getColumns() {
+		return columns;
+	}
+	
+	/**
+	 * Get Grid Rows
+	 * @return
+	 */
+	public int getRows() {
+		return rows;
+	}
+	
+	/**
+	 * Get Sector Rectangle in Grid Cells
+	 * @param index Sector index (0 for sector 1)
+	 * @return {column, row, columns, rows}
+	 */
+	public int[] getSector(int index) {
+		return sectors[index].clone();
+	}
+	
+	/**
+	 * Get Sector Rectangle in Grid Cells without copying (Must not be modified)
+	 * @param index
+	 * @return
+	 */
+	int[] cells(int index) {
+		return sectors[index];
+	}
+	
+	/**
+	 * Get Sector Bounds in Pixels
+	 * @param index Sector index (0 for sector 1)
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @param bounds Output {x0, y0, x1, y1} (x1 and y1 exclusive)
+	 */
+	public void getBounds(int index, int width, int height, int[] bounds) {
+		int[] s = sectors[index];
+		int cellWidth = width / columns, cellHeight = height / rows;
+		bounds[0] = s[0] * cellWidth;
+		bounds[1] = s[1] * cellHeight;
+		bounds[2] = (s[0] + s[2]) * cellWidth;
+		bounds[3] = (s[1] + s[3]) * cellHeight;
+	}
+}
@@ -22,17 +22,17 @@
  *******************************************************************************/
 package com.robertkoszewski.dsce.emulator.utils;
 
-import java.awt.Color;
 import java.awt.image.BufferedImage;
 
 import com.robertkoszewski.dsce.emulator.DreamScreenHDEmulator;
 import com.robertkoszewski.dsce.features.ScreenColor;
+import com.robertkoszewski.dsce.utils.Threads;
 
 /**
  * Simple Average Sampler with custom Screen Grabber
  * @author Robert Koszewski
  */
-public class SimpleAverageSampler implements ColorSampler {
+public class SimpleAverageSampler implements ColorSampler, FrameSampler {
 	
 	// Constructors
 	
@@ -44,7 +44,8 @@ public class SimpleAverageSampler implements ColorSampler {
 	
 	protected DreamScreenHDEmulator dsemulator;
 	protected final ScreenGrabber sgrabber;
-	protected SimpleAverageSamplerThread gthread;
+	protected final SamplerStats stats = new SamplerStats();
+	protected Thread gthread;
 
 	@Override
 	public void init(DreamScreenHDEmulator dsemulator) {
@@ -54,8 +55,7 @@ public class SimpleAverageSampler implements ColorSampler {
 	@Override
 	public void start() {
 		if(gthread == null) {
-			gthread = new SimpleAverageSamplerThread(this.dsemulator, this.sgrabber);
-			gthread.start();
+			gthread = Threads.startThread("DS Simple Average Sampler", false, new SimpleAverageSamplerThread(this.dsemulator, this.sgrabber));
 		}
 	}
 
@@ -64,6 +64,77 @@ public class SimpleAverageSampler implements ColorSampler {
 		if(gthread != null) {
 			gthread.interrupt();
 			gthread = null;
+			
+			// Interrupt Grabber Thread
+			if(sgrabber instanceof Thread) {
+				Thread tsgrabber = (Thread) sgrabber;
+				if(tsgrabber.isAlive() && tsgrabber.isInterrupted())
+					((Thread) sgrabber).interrupt(); 
+			}
+		}
+	}
+	
+	/**
+	 * Get Sampler Statistics
+	 * @return
+	 */
+	public SamplerStats getStats() {
+		return stats;
+	}
+	
+	/**
+	 * Grab and sample the next frame (Called by the sampler thread)
+	 * @param sectors
+	 * @return FALSE if the screen grabber got interrupted
+	 */
+	protected boolean sampleNext(byte[] sectors) {
+		BufferedImage screen = sgrabber.getFrame();
+		if(screen == null) return false;
+		
+		long timestamp = System.nanoTime();
+		sample(screen, sectors);
+		stats.frameSampled(System.nanoTime() - timestamp);
+		return true;
+	}
+	
+	@Override
+	public void sample(BufferedImage screen, byte[] sectors) {
+		SectorLayout layout = SectorLayout.DREAMSCREEN;
+		int width = screen.getWidth(), height = screen.getHeight();
+		int[] bounds = new int[4];
+		FrameRaster raster = FrameRaster.wrap(screen); // NULL if the image type has no direct access path
+		long[] sums = raster != null ? new long[3] : null;
+
+		for(int i = 0; i < 12 ; i++) {
+			layout.getBounds(i, width, height, bounds);
+			
+			// Simple Average Algorithm
+			int x0 = bounds[0], y0 = bounds[1], x1 = bounds[2], y1 = bounds[3];
+		    int num = (x1 - x0) * (y1 - y0), pixel;
+		    long sumr = 0, sumg = 0, sumb = 0;
+		    if(raster != null) {
+		    	// Direct Way (Row-major over the backing array)
+		    	sums[0] = sums[1] = sums[2] = 0;
+		    	raster.sum(x0, y0, x1, y1, sums);
+		    	sumr = sums[0];
+		    	sumg = sums[1];
+		    	sumb = sums[2];
+		    } else {
+			    // Generic Way (Any image type)
+			    for (int x = x0; x < x1; x+=1) {
+			        for (int y = y0; y < y1; y+=1) {
+			        	pixel = screen.getRGB(x, y);
+			        	sumb += pixel & 0xFF;
+			        	sumg += (pixel >> 8) & 0xFF;
+			        	sumr += (pixel >> 16) & 0xFF;
+			        }
+			    }
+		    }
+
+		    int isector = i * 3;
+		    sectors[isector++] = (byte) (sumr / num);
+		    sectors[isector++] = (byte) (sumg / num);
+		    sectors[isector] = (byte) (sumb / num);
 		}
 	}
 	
@@ -71,7 +142,7 @@ public class SimpleAverageSampler implements ColorSampler {
 	 * Simple Average Sampler Thread
 	 * @author Robert Koszewski
 	 */
-	private class SimpleAverageSamplerThread extends Thread{
+	private class SimpleAverageSamplerThread implements Runnable {
 		
 		public SimpleAverageSamplerThread(DreamScreenHDEmulator dsemulator, ScreenGrabber sgrabber) {
 			this.sgrabber = sgrabber;
@@ -83,7 +154,7 @@ public class SimpleAverageSampler implements ColorSampler {
 		
 		@Override
 		public void run() {
-			super.run();
+			Thread thread = Thread.currentThread();
 			
 			// Start Screen Grabber Thread
 			if(sgrabber instanceof Thread) {
@@ -91,89 +162,15 @@ public class SimpleAverageSampler implements ColorSampler {
 					((Thread) sgrabber).start(); // Start Grabber Thread
 			}
 
-			byte[] bscolor = new byte[36];
-			ScreenColor scolor;
-			long curTimestamp, timestamp = System.currentTimeMillis();
-			int x0 = 0, y0 = 0, frames = 0, tileWidth, tileHeight;
-			BufferedImage screen;
+			byte[] bscolor;
 
-			while(!isInterrupted()) {
+			while(!thread.isInterrupted()) {
 
-				screen = sgrabber.getFrame();
-				if(screen == null) return; // Frame Grabber got Interrupted
-				tileWidth = screen.getWidth() / 5;
-				tileHeight = screen.getHeight() / 3;
-				scolor = new ScreenColor(bscolor);
+				bscolor = new byte[36]; // Each frame gets its own buffer as the emulator keeps a reference to it
+				if(!sampleNext(bscolor)) return; // Frame Grabber got Interrupted
 
-				for(int i = 1; i <= 12 ; i++) {
-
-					// Sectors:
-					// 7  6  5  4  3
-					// 8           2
-					// 9 10 11 12  1
-					switch(i) {
-						case 1:  x0 = 4 * tileWidth; y0 = 2 * tileHeight; break;
-						case 2:  x0 = 4 * tileWidth; y0 = tileHeight; 	  break;
-						case 3:  x0 = 4 * tileWidth; y0 = 0; 			  break;
-						case 4:  x0 = 3 * tileWidth; y0 = 0; 			  break;
-						case 5:  x0 = 2 * tileWidth; y0 = 0; 			  break;
-						case 6:  x0 = tileWidth; 	 y0 = 0; 			  break;
-						case 7:  x0 = 0; 			 y0 = 0; 			  break;
-						case 8:  x0 = 0; 			 y0 = tileHeight; 	  break;
-						case 9:  x0 = 0; 			 y0 = 2 * tileHeight; break;
-						case 10: x0 = tileWidth;     y0 = 2 * tileHeight; break;
-						case 11: x0 = 2 * tileWidth; y0 = 2 * tileHeight; break;
-						case 12: x0 = 3 * tileWidth; y0 = 2 * tileHeight; break;
-					}
-					
-					// Simple Average Algorithm
-					int x1 = x0 + tileWidth;
-				    int y1 = y0 + tileHeight;
-				    int num = tileWidth * tileHeight, pixel;
-				    long sumr = 0, sumg = 0, sumb = 0;
-				    for (int x = x0; x < x1; x+=1) {
-				        for (int y = y0; y < y1; y+=1) {
-				        	// Direct Way
-				        	pixel = screen.getRGB(x, y);
-				        	sumb += pixel & 0xFF;
-				        	sumg += (pixel >> 8) & 0xFF;
-				        	sumr += (pixel >> 16) & 0xFF;
-				        	
-				            /*
-				            // Color class Way
-				        	Color pixel = new Color(bi.getRGB(x, y));
-				            sumr += pixel.getRed();
-				            sumg += pixel.getGreen();
-				            sumb += pixel.getBlue();
-				            */
-				        }
-				    }
-
-					scolor.setColor(i, new Color((int) sumr / num,(int)  sumg / num,(int)  sumb / num));
-				}
-
-				if(isInterrupted()) return;
-				dsemulator.setScreenColors(new ScreenColor(bscolor)); // TODO: There is still a small chance to hit a race condition here. 
-				frames++;
-				
-				curTimestamp = System.currentTimeMillis();
-				if(curTimestamp - timestamp > 1000) {
-					System.out.println("FPS: " + frames);
-					frames = 0;
-					timestamp = curTimestamp;
-				}
-			}
-		}
-		
-		@Override
-		public void interrupt() {
-			super.interrupt();
-			
-			// Interrupt Grabber Thread
-			if(sgrabber instanceof Thread) {
-				Thread tsgrabber = (Thread) sgrabber;
-				if(tsgrabber.isAlive() && tsgrabber.isInterrupted())
-					((Thread) sgrabber).interrupt(); 
+				if(thread.isInterrupted()) return;
+				dsemulator.setScreenColors(new ScreenColor(bscolor));
 			}
 		}
 	}
@@ -23,6 +23,7 @@
 package com.robertkoszewski.dsce.emulator.utils;
 
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 
 /**
  * Subscribed Device
@@ -62,4 +63,84 @@ public class SubscribedDevice {
 			ticks = 0;
 		}
 	}
+	
+	// Send Statistics (Written by the fan-out thread only)
+	
+	private InetSocketAddress address;
+	private volatile long sentFrames = 0;
+	private volatile long droppedFrames = 0;
+	private volatile long lastSendLatency = 0;
+	private volatile long maxSendLatency = 0;
+	private volatile long totalSendLatency = 0;
+	
+	/**
+	 * Get Destination Socket Address (Cached)
+	 * @param port
+	 * @return
+	 */
+	public InetSocketAddress getSocketAddress(int port) {
+		InetSocketAddress address = this.address;
+		if(address == null || address.getPort() != port) {
+			address = new InetSocketAddress(ip, port);
+			this.address = address;
+		}
+		return address;
+	}
+	
+	/**
+	 * Record a Frame Send
+	 * @param latencyNanos
+	 * @param sent FALSE if the frame was dropped
+	 */
+	public void recordSend(long latencyNanos, boolean sent) {
+		lastSendLatency = latencyNanos;
+		if(latencyNanos > maxSendLatency) maxSendLatency = latencyNanos;
+		if(sent) {
+			totalSendLatency += latencyNanos;
+			sentFrames++;
+		} else {
+			droppedFrames++;
+		}
+	}
+	
+	/**
+	 * Get Sent Frames
+	 * @return
+	 */
+	public long getSentFrames() {
+		return sentFrames;
+	}
+	
+	/**
+	 * Get Dropped Frames (Send failed or socket buffer full)
+	 * @return
+	 */
+	public long getDroppedFrames() {
+		return droppedFrames;
+	}
+	
+	/**
+	 * Get Last Send Latency in Nanoseconds
+	 * @return
+	 */
+	public long getLastSendLatency() {
+		return lastSendLatency;
+	}
+	
+	/**
+	 * Get Maximum Send Latency in Nanoseconds
+	 * @return
+	 */
+	public long getMaxSendLatency() {
+		return maxSendLatency;
+	}
+	
+	/**
+	 * Get Average Send Latency of sent Frames in Nanoseconds
+	 * @return
+	 */
+	public long getAverageSendLatency() {
+		long sent = sentFrames;
+		return sent == 0 ? 0 : totalSendLatency / sent;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.emulator.utils;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Summed Area Sampler. Builds a summed-area table (integral image) of the frame once and then averages 
+ * every sector of a SectorLayout in constant time, so layouts with many or overlapping sectors do not 
+ * rescan the frame for every sector.
+ * 
+ * Sector bounds always fall on the cells of the layout grid, so the table is built over grid cells 
+ * instead of pixels: every pixel is read once to sum its cell, and the table stays as small as the grid.
+ * 
+ * @author Robert Koszewski
+ */
+public class SummedAreaSampler extends SimpleAverageSampler {
+	
+	// Constructors
+	
+	public SummedAreaSampler(ScreenGrabber sgrabber) {
+		this(sgrabber, SectorLayout.DREAMSCREEN);
+	}
+	
+	public SummedAreaSampler(ScreenGrabber sgrabber, SectorLayout layout) {
+		super(sgrabber);
+		setLayout(layout);
+	}
+	
+	// Variables
+	private volatile SectorLayout layout;
+	private long[] table = new long[0]; // Interleaved R, G, B sums of (columns + 1) x (rows + 1) grid corners
+	private int[] row = new int[0];
+	
+	// Methods
+	
+	/**
+	 * Set Sector Layout (The emulator uses the first 12 sectors)
+	 * @param layout
+	 */
+	public void setLayout(SectorLayout layout) {
+		if(layout == null) throw new IllegalArgumentException("Layout cannot be null");
+		this.layout = layout;
+	}
+	
+	/**
+	 * Get Sector Layout
+	 * @return
+	 */
+	public SectorLayout getLayout() {
+		return layout;
+	}
+	
+	/**
+	 * Sample the sectors of the layout. Writes 3 bytes (R, G, B) per sector for as many sectors as fit the output array.
+	 */
+	@Override
+	public synchronized void sample(BufferedImage screen, byte[] sectors) {
+		SectorLayout layout = this.layout;
+		int columns = layout.getColumns(), rows = layout.getRows();
+		int cellWidth = screen.getWidth() / columns, cellHeight = screen.getHeight() / rows;
+		int stride = (columns + 1) * 3;
+		build(screen, columns, rows, cellWidth, cellHeight, stride);
+		
+		long[] t = table;
+		int count = Math.min(layout.size(), sectors.length / 3);
+		for(int i = 0; i < count; i++) {
+			int[] s = layout.cells(i);
+			int num = s[2] * cellWidth * s[3] * cellHeight;
+			int a = s[1] * stride + s[0] * 3; 					// Top left
+			int b = s[1] * stride + (s[0] + s[2]) * 3; 			// Top right
+			int c = (s[1] + s[3]) * stride + s[0] * 3; 			// Bottom left
+			int d = (s[1] + s[3]) * stride + (s[0] + s[2]) * 3; // Bottom right
+			for(int ch = 0; ch < 3; ch++) {
+				sectors[i * 3 + ch] = num == 0 ? 0 : (byte) ((t[d + ch] - t[b + ch] - t[c + ch] + t[a + ch]) / num);
+			}
+		}
+	}
+	
+	/**
+	 * Build the summed-area table over the grid cells
+	 * @param screen
+	 * @param columns
+	 * @param rows
+	 * @param cellWidth
+	 * @param cellHeight
+	 * @param stride
+	 */
+	private void build(BufferedImage screen, int columns, int rows, int cellWidth, int cellHeight, int stride) {
+		int size = stride * (rows + 1);
+		if(table.length < size) table = new long[size];
+		long[] t = table;
+		for(int i = 0; i < size; i++) t[i] = 0;
+		
+		// Cell Sums (Stored at the bottom right corner of each cell)
+		FrameRaster raster = FrameRaster.wrap(screen);
+		if(raster != null) {
+			long[] sums = new long[3];
+			for(int cy = 0; cy < rows; cy++) {
+				int y0 = cy * cellHeight, corner = (cy + 1) * stride + 3;
+				for(int cx = 0; cx < columns; cx++, corner += 3) {
+					sums[0] = sums[1] = sums[2] = 0;
+					int x0 = cx * cellWidth;
+					raster.sum(x0, y0, x0 + cellWidth, y0 + cellHeight, sums);
+					t[corner] = sums[0];
+					t[corner + 1] = sums[1];
+					t[corner + 2] = sums[2];
+				}
+			}
+		} else {
+			int width = columns * cellWidth, pixel;
+			if(row.length < width) row = new int[width];
+			int[] pixels = row;
+			for(int y = 0, height = rows * cellHeight; y < height; y++) {
+				screen.getRGB(0, y, width, 1, pixels, 0, width);
+				int corner = (y / cellHeight + 1) * stride + 3;
+				for(int x = 0; x < width; x++) {
+					pixel = pixels[x];
+					int k = corner + x / cellWidth * 3;
+					t[k] += (pixel >> 16) & 0xFF;
+					t[k + 1] += (pixel >> 8) & 0xFF;
+					t[k + 2] += pixel & 0xFF;
+				}
+			}
+		}
+		
+		// Prefix Sums (Rows, then Columns)
+		for(int cy = 1; cy <= rows; cy++) {
+			int k = cy * stride + 6;
+			for(int cx = 2; cx <= columns; cx++, k += 3) {
+				t[k] += t[k - 3];
+				t[k + 1] += t[k - 2];
+				t[k + 2] += t[k - 1];
+			}
+		}
+		for(int cy = 2; cy <= rows; cy++) {
+			for(int k = cy * stride + 3, end = k + columns * 3; k < end; k++) {
+				t[k] += t[k - stride];
+			}
+		}
+	}
+}
@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.emulator.utils;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Synthetic Screen Grabber. Serves a fixed set of deterministic frames so samplers can be tested and benchmarked without a display.
+ * Captured regions are views of the synthetic frames, so region capture does not copy any pixels.
+ * @author Robert Koszewski
+ */
+public class SyntheticScreenGrabber implements RegionScreenGrabber {
+	
+	// Constructors
+	
+	public SyntheticScreenGrabber(Resolution resolution, int imageType) {
+		this(resolution.getWidth(), resolution.getHeight(), imageType, DEFAULT_FRAMES, 0);
+	}
+	
+	public SyntheticScreenGrabber(int width, int height, int imageType) {
+		this(width, height, imageType, DEFAULT_FRAMES, 0);
+	}
+	
+	/**
+	 * Synthetic Screen Grabber
+	 * @param width Frame width
+	 * @param height Frame height
+	 * @param imageType BufferedImage type (e.g. BufferedImage.TYPE_INT_RGB)
+	 * @param frames Number of distinct frames to cycle through
+	 * @param fps Frame rate limit (0 to serve frames as fast as they are requested)
+	 */
+	public SyntheticScreenGrabber(int width, int height, int imageType, int frames, int fps) {
+		this.frames = new BufferedImage[Math.max(1, frames)];
+		for(int i = 0; i < this.frames.length; i++) {
+			this.frames[i] = render(width, height, imageType, i);
+		}
+		this.frameInterval = fps > 0 ? 1000000000L / fps : 0;
+	}
+	
+	// Variables
+	private final BufferedImage[] frames;
+	private final long frameInterval;
+	private long nextFrame = 0;
+	private long served = 0;
+	private volatile Rectangle[] regions = new Rectangle[0];
+	
+	// Constants
+	public static final int DEFAULT_FRAMES = 4;
+	
+	// Methods
+
+	@Override
+	public boolean hasFrame() {
+		return frameInterval == 0 || System.nanoTime() >= nextFrame;
+	}
+
+	@Override
+	public BufferedImage getFrame() {
+		if(frameInterval != 0) {
+			long now = System.nanoTime();
+			if(now < nextFrame) {
+				try {
+					long wait = nextFrame - now;
+					Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return null;
+				}
+				now = nextFrame;
+			}
+			nextFrame = now + frameInterval;
+		}
+		return frames[(int) (served++ % frames.length)];
+	}
+	
+	@Override
+	public Dimension getScreenSize() {
+		return new Dimension(frames[0].getWidth(), frames[0].getHeight());
+	}
+
+	@Override
+	public void setRegions(Rectangle... regions) {
+		Rectangle[] copy = regions == null ? new Rectangle[0] : new Rectangle[regions.length];
+		for(int i = 0; i < copy.length; i++) {
+			copy[i] = regions[i].intersection(new Rectangle(getScreenSize()));
+			if(copy[i].isEmpty()) throw new IllegalArgumentException("Region " + regions[i] + " is outside of the screen");
+		}
+		this.regions = copy;
+	}
+
+	@Override
+	public BufferedImage[] getRegions() {
+		Rectangle[] regions = this.regions;
+		BufferedImage frame = getFrame();
+		if(frame == null) return null;
+		if(regions.length == 0) return new BufferedImage[] {frame};
+		
+		BufferedImage[] images = new BufferedImage[regions.length];
+		for(int i = 0; i < regions.length; i++) {
+			Rectangle r = regions[i];
+			images[i] = frame.getSubimage(r.x, r.y, r.width, r.height);
+		}
+		return images;
+	}
+	
+	/**
+	 * Get Number of Served Frames
+	 * @return
+	 */
+	public long getServedFrames() {
+		return served;
+	}
+	
+	/**
+	 * Get Frame (Without advancing the frame counter)
+	 * @param index
+	 * @return
+	 */
+	public BufferedImage getFrame(int index) {
+		return frames[index % frames.length];
+	}
+	
+	/**
+	 * Render a deterministic test frame. Red and green follow horizontal and vertical gradients, blue
+	 * follows a checker pattern, and every frame index shifts all three channels.
+	 * @param width
+	 * @param height
+	 * @param imageType
+	 * @param index Frame index
+	 * @return
+	 */
+	public static BufferedImage render(int width, int height, int imageType, int index) {
+		BufferedImage image = new BufferedImage(width, height, imageType);
+		int[] row = new int[width];
+		for(int y = 0; y < height; y++) {
+			int g = (y * 255 / height + index * 29) & 0xFF;
+			for(int x = 0; x < width; x++) {
+				int r = (x * 255 / width + index * 17) & 0xFF;
+				int b = ((((x >> 4) ^ (y >> 4)) & 1) * 160 + index * 7 + (x + y) % 64) & 0xFF;
+				row[x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+			}
+			image.setRGB(0, y, width, 1, row, 0, width);
+		}
+		return image;
+	}
+	
+	/**
+	 * Common Screen Resolutions
+	 */
+	public enum Resolution {
+		HD_720(1280, 720),
+		FULL_HD_1080(1920, 1080),
+		UHD_4K(3840, 2160);
+		
+		private final int width, height;
+		
+		private Resolution(int width, int height) {
+			this.width = width;
+			this.height = height;
+		}
+		
+		/**
+		 * Get Width
+		 * @return
+		 */
+		public int getWidth() {
+			return width;
+		}
+		
+		/**
+		 * Get Height
+		 * @return
+		 */
+		public int getHeight() {
+			return height;
+		}
+	}
+}
@@ -52,8 +52,7 @@ public class AmbientColorMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public Color getAmbientColor() {
-		byte[] payload = message.getPayload();
-		return new Color(payload[0] & 0xFF, payload[1] & 0xFF, payload[2] & 0xFF);
+		return new Color(message.getPayloadByte(0) & 0xFF, message.getPayloadByte(1) & 0xFF, message.getPayloadByte(2) & 0xFF);
 	}
 
 	/**
@@ -53,7 +53,7 @@ public class AmbientModeMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public AmbientMode getAmbientMode() {
-		return AmbientMode.valueOf(message.getPayload()[0]);
+		return AmbientMode.valueOf(message.getPayloadByte(0));
 	}
 
 	/**
@@ -53,7 +53,7 @@ public class AmbientSceneMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public AmbientScene getAmbientScene() {
-		return AmbientScene.valueOf(message.getPayload()[0]);
+		return AmbientScene.valueOf(message.getPayloadByte(0));
 	}
 
 	/**
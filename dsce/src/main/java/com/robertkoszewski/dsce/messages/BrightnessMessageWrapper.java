@@ -51,7 +51,7 @@ public class BrightnessMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public int getBrightness() {
-		return message.getPayload()[0];
+		return message.getPayloadByte(0);
 	}
 
 	/**
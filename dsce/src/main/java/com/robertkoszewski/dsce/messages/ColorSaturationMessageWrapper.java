@@ -33,7 +33,7 @@ public class ColorSaturationMessageWrapper extends DSMessageWrapper{
 	// Constructor
 	
 	public ColorSaturationMessageWrapper(byte group) {
-		super(new DSMessage(group, DSMessage.FLAG_BROADCAST_TO_GROUP, DSMessage.COMMAND_UPPER_SECTOR_SETTING, DSMessage.COMMAND_LOWER_SECTOR_SETTING, new byte[3]));
+		super(new DSMessage(group, DSMessage.FLAG_BROADCAST_TO_GROUP, DSMessage.COMMAND_UPPER_SATURATION_SETTING, DSMessage.COMMAND_LOWER_SATURATION_SETTING, new byte[3]));
 	}
 	
 	public ColorSaturationMessageWrapper(byte group, Color saturation) {
@@ -57,11 +57,8 @@ public class ColorSaturationMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public Color getColorSaturation() {
-		byte[] sbyte = message.getPayload();
-		System.out.println(sbyte[0] & 0xFF);
-		System.out.println(sbyte[1] & 0xFF);
-		System.out.println(sbyte[2] & 0xFF);
-		return new Color(sbyte[0] & 0xFF, sbyte[1] & 0xFF, sbyte[2]  & 0xFF);
+		int r = message.getPayloadByte(0) & 0xFF, g = message.getPayloadByte(1) & 0xFF, b = message.getPayloadByte(2) & 0xFF;
+		return new Color(r, g, b);
 	}
 
 	/**
@@ -71,8 +68,8 @@ public class ColorSaturationMessageWrapper extends DSMessageWrapper{
 	public void setColorSaturation(Color saturation) {
 		byte[] sbyte = message.getPayload();
 		sbyte[0] = (byte) (saturation.getRed() & 0xFF);
-		sbyte[1] = (byte) (saturation.getRed() & 0xFF);
-		sbyte[2] = (byte) (saturation.getRed() & 0xFF);	
+		sbyte[1] = (byte) (saturation.getGreen() & 0xFF);
+		sbyte[2] = (byte) (saturation.getBlue() & 0xFF);	
 	}
 	
 	/**
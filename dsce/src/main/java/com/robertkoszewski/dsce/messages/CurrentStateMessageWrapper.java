@@ -24,7 +24,6 @@ package com.robertkoszewski.dsce.messages;
 
 import java.awt.Color;
 import java.nio.charset.Charset;
-import java.util.Arrays;
 import com.robertkoszewski.dsce.client.devices.DSDevice;
 import com.robertkoszewski.dsce.client.devices.DSDevice.AmbientScene;
 import com.robertkoszewski.dsce.client.devices.DSDevice.Device;
@@ -65,8 +64,7 @@ public class CurrentStateMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public Device getDevice() {
-		byte[] payload = message.getPayload();
-		byte productID = payload[payload.length-1];
+		byte productID = message.getPayloadByte(message.getPayloadLength()-1);
 		return DSDevice.Device.valueOf(productID);
 	}
 	
@@ -85,7 +83,7 @@ public class CurrentStateMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public String getName() {
-		return new String(Arrays.copyOfRange(message.getPayload(), 0, 15)).trim(); // 0-15 (UTF-8) - Name
+		return getPayloadString(0, 15); // 0-15 (UTF-8) - Name
 	}
 	
 	/**
@@ -102,7 +100,7 @@ public class CurrentStateMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public String getGroupName() {
-		return new String(Arrays.copyOfRange(message.getPayload(), 16, 31)).trim(); // 16-31 (UTF-8) - Group Name
+		return getPayloadString(16, 15); // 16-31 (UTF-8) - Group Name
 	}
 	
 	/**
@@ -114,13 +112,23 @@ public class CurrentStateMessageWrapper extends DSMessageWrapper{
 		ArrayUtils.fillInArray(message.getPayload(), bname, 16, 15, (byte) 0x00);
 	}
 	
+	/**
+	 * Get a trimmed Payload String (Cut at the end of short payloads)
+	 * @param index
+	 * @param length
+	 * @return
+	 */
+	private String getPayloadString(int index, int length) {
+		length = Math.min(length, message.getPayloadLength() - index);
+		return length <= 0 ? "" : message.getPayloadString(index, length).trim();
+	}
+	
 	/**
 	 * Get Group Number
 	 * @return
 	 */
 	public byte getGroupNumber() {
-		byte[] payload = message.getPayload();
-		return payload[32];
+		return message.getPayloadByte(32);
 	}
 
 	/**
@@ -137,8 +145,7 @@ public class CurrentStateMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public byte getMode() {
-		byte[] payload = message.getPayload();
-		return payload[33];
+		return message.getPayloadByte(33);
 	}
 
 	/**
@@ -163,8 +170,7 @@ public class CurrentStateMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public byte getBrightness() {
-		byte[] payload = message.getPayload();
-		return payload[34];
+		return message.getPayloadByte(34);
 	}
 
 	/**
@@ -191,12 +197,11 @@ public class CurrentStateMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public Color getAmbientColor() {
-		byte[] payload = message.getPayload();
 		if(this.deviceType == Device.SIDEKICK) {
-			return new Color(payload[35] & 0xFF, payload[36] & 0xFF, payload[37] & 0xFF);
+			return new Color(message.getPayloadByte(35) & 0xFF, message.getPayloadByte(36) & 0xFF, message.getPayloadByte(37) & 0xFF);
 		}else {
 			// DreamScreen HD and 4K
-			return new Color(payload[40] & 0xFF, payload[41] & 0xFF, payload[42] & 0xFF);
+			return new Color(message.getPayloadByte(40) & 0xFF, message.getPayloadByte(41) & 0xFF, message.getPayloadByte(42) & 0xFF);
 		}
 	}
 
@@ -233,12 +238,11 @@ public class CurrentStateMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public Color getColorSaturation() {
-		byte[] payload = message.getPayload();
 		if(this.deviceType == Device.SIDEKICK) {
-			return new Color(payload[38] & 0xFF, payload[39] & 0xFF, payload[40] & 0xFF);
+			return new Color(message.getPayloadByte(38) & 0xFF, message.getPayloadByte(39) & 0xFF, message.getPayloadByte(40) & 0xFF);
 		}else {
 			// DreamScreen HD and 4K
-			return new Color(payload[43] & 0xFF, payload[44] & 0xFF, payload[45] & 0xFF);
+			return new Color(message.getPayloadByte(43) & 0xFF, message.getPayloadByte(44) & 0xFF, message.getPayloadByte(45) & 0xFF);
 		}
 	}
 
@@ -275,12 +279,11 @@ public class CurrentStateMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public byte getAmbientScene() {
-		byte[] payload = message.getPayload();
 		if(this.deviceType == Device.SIDEKICK) {
-			return payload[60];
+			return message.getPayloadByte(60);
 		}else {
 			// DreamScreen HD and 4K
-			return payload[62];
+			return message.getPayloadByte(62);
 		}
 	}
 	
@@ -312,9 +315,8 @@ public class CurrentStateMessageWrapper extends DSMessageWrapper{
 	 */
 	public byte getHDMIInput() {
 		if(this.deviceType == Device.SIDEKICK) return 0;
-		byte[] payload = message.getPayload();
-		if(payload.length < 73) return 0;
-		return payload[73];
+		if(message.getPayloadLength() <= 73) return 0;
+		return message.getPayloadByte(73);
 	}
 	
 	/**
@@ -334,9 +336,8 @@ public class CurrentStateMessageWrapper extends DSMessageWrapper{
 	 */
 	public String getHDMIInput1Name() {
 		if(this.deviceType == Device.SIDEKICK) return null;
-		byte[] payload = message.getPayload();
-		if(payload.length < 90) return "";
-		return new String(Arrays.copyOfRange(payload, 75, 90)).trim(); // 16-31 (UTF-8) - Group Name
+		if(message.getPayloadLength() < 90) return "";
+		return message.getPayloadString(75, 15).trim(); // 16-31 (UTF-8) - Group Name
 	}
 	
 	/**
@@ -355,9 +356,8 @@ public class CurrentStateMessageWrapper extends DSMessageWrapper{
 	 */
 	public String getHDMIInput2Name() {
 		if(this.deviceType == Device.SIDEKICK) return null;
-		byte[] payload = message.getPayload();
-		if(payload.length < 106) return "";
-		return new String(Arrays.copyOfRange(payload, 91, 106)).trim(); // 16-31 (UTF-8) - Group Name
+		if(message.getPayloadLength() < 106) return "";
+		return message.getPayloadString(91, 15).trim(); // 16-31 (UTF-8) - Group Name
 	}
 	
 	/**
@@ -376,9 +376,8 @@ public class CurrentStateMessageWrapper extends DSMessageWrapper{
 	 */
 	public String getHDMIInput3Name() {
 		if(this.deviceType == Device.SIDEKICK) return null;
-		byte[] payload = message.getPayload();
-		if(payload.length < 122) return "";
-		return new String(Arrays.copyOfRange(payload, 107, 122)).trim(); // 16-31 (UTF-8) - Group Name
+		if(message.getPayloadLength() < 122) return "";
+		return message.getPayloadString(107, 15).trim(); // 16-31 (UTF-8) - Group Name
 	}
 	
 	/**
@@ -397,9 +396,8 @@ public class CurrentStateMessageWrapper extends DSMessageWrapper{
 	 */
 	public byte getActiveChannels() {
 		if(this.deviceType == Device.SIDEKICK) return 0;
-		byte[] payload = message.getPayload();
-		if(payload.length < 129) return 0;
-		return payload[129];
+		if(message.getPayloadLength() <= 129) return 0;
+		return message.getPayloadByte(129);
 	}
 	
 	/**
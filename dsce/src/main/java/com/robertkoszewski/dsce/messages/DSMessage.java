@@ -22,7 +22,8 @@
  *******************************************************************************/
 package com.robertkoszewski.dsce.messages;
 
-import java.io.ByteArrayOutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import com.robertkoszewski.dsce.utils.DSUtils;
@@ -30,6 +31,9 @@ import com.robertkoszewski.dsce.utils.StringUtils;
 
 /**
  * DS Low-Level Message Class
+ * 
+ * A message can also be used as a flyweight view: wrap() re-points it at a received frame without copying the payload,
+ * so a single instance can be reused for every datagram. Views are only valid until they are re-pointed, use copy() to retain them.
  * @author Robert Koszewski
  */
 public class DSMessage {
@@ -42,10 +46,13 @@ public class DSMessage {
 	private byte command_upper; // Command Upper - specifies command namespace
 	private byte command_lower; // Command Lower - specifies individual command within namespace
 	private byte[] payload; // Payload - variable length, depending upon the context of the command
+	private int payload_offset; // Payload start inside the payload array (Non zero when viewing a frame)
+	private int payload_length; // Payload length inside the payload array
 	// CRC - 8 bit CRC for error detection. If incorrect, DreamScreen will discard the message.
 	
 	// Cache
 	private Command command;
+	private byte[] scratch; // Copy target when wrapping direct ByteBuffers
 	
 	// Constructors
 	
@@ -78,7 +85,7 @@ public class DSMessage {
 		this.flags = flags;
 		this.command_upper = command_upper;
 		this.command_lower = command_lower;
-		this.payload = payload;
+		setPayload(payload);
 	}
 	
 	/**
@@ -97,34 +104,109 @@ public class DSMessage {
 	 * @throws InvalidMessageException
 	 */
 	public DSMessage(byte[] message, boolean validateCRC) throws InvalidMessageException {
+		this(message, 0, message.length, validateCRC);
+	}
+	
+	/**
+	 * Parse Message Data from a region of a byte array (e.g. a reused receive buffer)
+	 * @param message
+	 * @param offset
+	 * @param length
+	 * @param validateCRC
+	 * @throws InvalidMessageException
+	 */
+	public DSMessage(byte[] message, int offset, int length, boolean validateCRC) throws InvalidMessageException {
+		wrap(message, offset, length, validateCRC);
+		detach();
+	}
+	
+	// Flyweight
+	
+	/**
+	 * Re-point this message at a frame without copying it (The frame must not change while the message is in use)
+	 * @param message
+	 * @param offset
+	 * @param length
+	 * @param validateCRC
+	 * @return
+	 * @throws InvalidMessageException
+	 */
+	public DSMessage wrap(byte[] message, int offset, int length, boolean validateCRC) throws InvalidMessageException {
 		// Validate Message
-		if(message.length < 7) { // Message has a minimum of 7 bytes of size
-			throw new InvalidMessageException("Message length is " + message.length +" which is under the minimum of 7 bytes");
+		if(length < 7) { // Message has a minimum of 7 bytes of size
+			throw new InvalidMessageException("Message length is " + length +" which is under the minimum of 7 bytes");
 		}
 		
 		// Validate Start of Packet
-		if(message[0] != 0xFFFFFFFC) {
-			throw new InvalidMessageException("Invalid start of packet. Expected was 0xFC but got 0x" + Integer.toHexString(message[0]).toUpperCase());
+		if(message[offset] != 0xFFFFFFFC) {
+			throw new InvalidMessageException("Invalid start of packet. Expected was 0xFC but got 0x" + Integer.toHexString(message[offset]).toUpperCase());
 		}
 		
 		// Validate Length
-		if((message[1] & 0xFF) != message.length - 2) {
-			throw new InvalidMessageException("Invalid message length. Expected was " + (message[1] & 0xFF) + " bytes but got " + (message.length - 2) + " bytes");
+		if((message[offset + 1] & 0xFF) != length - 2) {
+			throw new InvalidMessageException("Invalid message length. Expected was " + (message[offset + 1] & 0xFF) + " bytes but got " + (length - 2) + " bytes");
 		}
 		
 		// Validate CRC
-		byte crc = DSUtils.calculate_crc8(message, message.length - 1);
-		if(validateCRC == true && crc != message[message.length - 1]) {
-			throw new InvalidMessageException("Message has invalid CRC. Expected 0x" + StringUtils.bytesToHex(message[message.length - 1]) + " but got 0x" + StringUtils.bytesToHex(crc));
+		if(validateCRC == true) {
+			byte crc = DSUtils.calculate_crc8(message, offset, length - 1);
+			if(crc != message[offset + length - 1])
+				throw new InvalidMessageException("Message has invalid CRC. Expected 0x" + StringUtils.bytesToHex(message[offset + length - 1]) + " but got 0x" + StringUtils.bytesToHex(crc));
 		}
 		
 		// Process Message
-		this.group_address = message[2];
-		this.flags = message[3];
-		this.command_upper = message[4];
-		this.command_lower = message[5];
-		if(message.length != 7)
-			this.payload = Arrays.copyOfRange(message, 6, message.length - 1); // - 1 = Ignore CRC
+		this.group_address = message[offset + 2];
+		this.flags = message[offset + 3];
+		this.command_upper = message[offset + 4];
+		this.command_lower = message[offset + 5];
+		this.command = null;
+		if(length != 7) {
+			this.payload = message;
+			this.payload_offset = offset + 6;
+			this.payload_length = length - 7; // - 7 = Header + CRC
+		} else {
+			setPayload(null);
+		}
+		return this;
+	}
+	
+	/**
+	 * Re-point this message at the remaining bytes of a buffer (The buffer position is not modified)
+	 * @param buffer
+	 * @param validateCRC
+	 * @return
+	 * @throws InvalidMessageException
+	 */
+	public DSMessage wrap(ByteBuffer buffer, boolean validateCRC) throws InvalidMessageException {
+		int length = buffer.remaining();
+		if(buffer.hasArray())
+			return wrap(buffer.array(), buffer.arrayOffset() + buffer.position(), length, validateCRC);
+		
+		// Direct Buffer
+		if(scratch == null || scratch.length < length) scratch = new byte[Math.max(length, 256)];
+		buffer.duplicate().get(scratch, 0, length);
+		return wrap(scratch, 0, length, validateCRC);
+	}
+	
+	/**
+	 * Copy the Payload out of the wrapped frame (The message stops being a view)
+	 */
+	private void detach() {
+		if(payload != null && (payload_offset != 0 || payload_length != payload.length)) {
+			payload = Arrays.copyOfRange(payload, payload_offset, payload_offset + payload_length);
+			payload_offset = 0;
+		}
+	}
+	
+	/**
+	 * Get an independent Copy of this Message (Required to retain a view)
+	 * @return
+	 */
+	public DSMessage copy() {
+		DSMessage copy = new DSMessage(group_address, flags, command_upper, command_lower, 
+				payload == null ? null : Arrays.copyOfRange(payload, payload_offset, payload_offset + payload_length));
+		copy.command = command;
+		return copy;
 	}
 	
 	// Methods
@@ -201,6 +283,7 @@ public class DSMessage {
 	 */
 	public byte[] getPayload() {
 		if(this.payload == null) return new byte[0];
+		detach(); // Writes to the returned array must belong to this message
 		return this.payload;
 	}
 	
@@ -210,6 +293,55 @@ public class DSMessage {
 	 */
 	public void setPayload(byte[] payload) {
 		this.payload = payload;
+		this.payload_offset = 0;
+		this.payload_length = payload == null ? 0 : payload.length;
+	}
+	
+	/**
+	 * Get Payload Length
+	 * @return
+	 */
+	public int getPayloadLength() {
+		return this.payload_length;
+	}
+	
+	/**
+	 * Get Payload Byte (Without copying the payload)
+	 * @param index
+	 * @return
+	 */
+	public byte getPayloadByte(int index) {
+		if(index < 0 || index >= payload_length) throw new ArrayIndexOutOfBoundsException(index);
+		return this.payload[payload_offset + index];
+	}
+	
+	/**
+	 * Get Payload as String (Without copying the payload)
+	 * @return
+	 */
+	public String getPayloadString() {
+		return getPayloadString(0, payload_length);
+	}
+	
+	/**
+	 * Get Payload Region as String (Without copying the payload)
+	 * @param index
+	 * @param length
+	 * @return
+	 */
+	public String getPayloadString(int index, int length) {
+		if(payload == null) return "";
+		if(index < 0 || length < 0 || index + length > payload_length) throw new ArrayIndexOutOfBoundsException(index + length);
+		return new String(payload, payload_offset + index, length);
+	}
+	
+	/**
+	 * Get a read-only Buffer over the Payload (Without copying the payload)
+	 * @return
+	 */
+	public ByteBuffer getPayloadBuffer() {
+		if(payload == null) return ByteBuffer.allocate(0);
+		return ByteBuffer.wrap(payload, payload_offset, payload_length).slice().asReadOnlyBuffer();
 	}
 	
 	/**
@@ -217,19 +349,47 @@ public class DSMessage {
 	 * @return
 	 */
 	public byte[] getMessage() {
-		ByteArrayOutputStream message = new ByteArrayOutputStream() ;
-		message.write(0xFC);
-		message.write((byte) (0x05 + (this.payload == null ? 0 : this.payload.length))) ;
-		message.write(this.group_address);
-		message.write(this.flags);
-		message.write(this.command_upper);
-		message.write(this.command_lower);
-		if(this.payload != null)
-			for(byte b: this.payload) message.write(b) ;
-		message.write(DSUtils.calculate_crc8(message.toByteArray(), message.size())) ;
-		return message.toByteArray();
+		byte[] message = new byte[getFrameLength()];
+		encode(message, 0);
+		return message;
+	}
+	
+	/**
+	 * Get Encoded Frame Length (Header + Payload + CRC)
+	 * @return
+	 */
+	public int getFrameLength() {
+		return 7 + this.payload_length;
+	}
+	
+	/**
+	 * Encode Message into a byte array
+	 * @param dst
+	 * @param offset
+	 * @return Encoded length
+	 */
+	public int encode(byte[] dst, int offset) {
+		return encode(dst, offset, group_address, flags, command_upper, command_lower, payload, payload_offset, payload_length);
 	}
 	
+	/**
+	 * Encode Message at the position of a Buffer (The position is advanced by the encoded length)
+	 * @param dst
+	 * @return Encoded length
+	 */
+	public int encode(ByteBuffer dst) {
+		int length;
+		if(dst.hasArray()) {
+			if(dst.remaining() < getFrameLength()) throw new BufferOverflowException();
+			length = encode(dst.array(), dst.arrayOffset() + dst.position());
+			dst.position(dst.position() + length);
+		} else {
+			FrameBuffer frame = FrameBuffer.get();
+			length = frame.encode(this);
+			dst.put(frame.getData(), 0, length);
+		}
+		return length;
+	}
 	// Helpers
 	
 	/**
@@ -238,7 +398,7 @@ public class DSMessage {
 	 */
 	public Command getCommand() {
 		if(command == null) {
-			command = Command.valueOf(command_upper, command_lower, payload);
+			command = Command.valueOf(command_upper, command_lower, payload_length);
 		}
 		
 		return command;
@@ -253,7 +413,7 @@ public class DSMessage {
 				" | CUpper: 0x" + StringUtils.bytesToHex(getCommandUpper()) + 
 				" | CLower: 0x" + StringUtils.bytesToHex(getCommandLower()) + 
 				" | Flags: 0x" + StringUtils.bytesToHex(getFlags()) +
-				(payload.length != 0 ? 
+				(payload_length != 0 ? 
 						" | Payload: 0x" + StringUtils.bytesToHex(getPayload()) +
 						" | Payload (char): " + new String(getPayload())
 						: "") +
@@ -278,18 +438,47 @@ public class DSMessage {
 	 * @return
 	 */
 	public static byte[] buildMessage(byte group_address, byte flags, byte command_upper, byte command_lower, byte[] payload) {
-		ByteArrayOutputStream message = new ByteArrayOutputStream() ;
-		message.write(0xFC);
-		message.write((byte) (0x05 + (payload == null ? 0 : payload.length))) ;
-		message.write(group_address);
-		message.write(flags);
-		message.write(command_upper);
-		message.write(command_lower);
-		for(byte b: payload) message.write(b) ;
-		message.write(DSUtils.calculate_crc8(message.toByteArray(), message.size())) ;
-		return message.toByteArray();
+		int payload_length = payload == null ? 0 : payload.length;
+		byte[] message = new byte[7 + payload_length];
+		encode(message, 0, group_address, flags, command_upper, command_lower, payload, 0, payload_length);
+		return message;
 	}
 	
+	/**
+	 * Encode a Message directly into a byte array (Allocation free)
+	 * @param dst
+	 * @param offset
+	 * @param group_address
+	 * @param flags
+	 * @param command_upper
+	 * @param command_lower
+	 * @param payload
+	 * @param payload_offset
+	 * @param payload_length
+	 * @return Encoded length
+	 */
+	public static int encode(byte[] dst, int offset, byte group_address, byte flags, byte command_upper, byte command_lower, 
+			byte[] payload, int payload_offset, int payload_length) {
+		if(payload_length > MAX_PAYLOAD_SIZE) 
+			throw new IllegalArgumentException("Payload length is " + payload_length + " which is over the maximum of " + MAX_PAYLOAD_SIZE + " bytes");
+		int length = 7 + payload_length;
+		if(offset < 0 || offset + length > dst.length) throw new ArrayIndexOutOfBoundsException(offset + length);
+		dst[offset] = (byte) 0xFC;
+		dst[offset + 1] = (byte) (0x05 + payload_length);
+		dst[offset + 2] = group_address;
+		dst[offset + 3] = flags;
+		dst[offset + 4] = command_upper;
+		dst[offset + 5] = command_lower;
+		if(payload_length != 0)
+			System.arraycopy(payload, payload_offset, dst, offset + 6, payload_length);
+		dst[offset + length - 1] = DSUtils.calculate_crc8(dst, offset, length - 1);
+		return length;
+	}
+	
+	// Limits
+	public static final int MAX_PAYLOAD_SIZE = 0xFF - 0x05; // Packet Length byte covers Group Address to CRC
+	public static final int MAX_FRAME_SIZE = MAX_PAYLOAD_SIZE + 7;
+	
 	// Static Messages
 	public static final byte[] MESSAGE_READ_CURRENT_STATE = new byte[]{(byte) 0xFC, 0x05, (byte) 0xFF, 0x30, 0x01, 0x0A, 0x2A};
 	
@@ -426,6 +615,17 @@ public class DSMessage {
 		 * @return
 		 */
 		public static Command valueOf(byte command_upper, byte command_lower, byte[] payload) {
+			return valueOf(command_upper, command_lower, payload == null ? 0 : payload.length);
+		}
+		
+		/**
+		 * Parse Command
+		 * @param command_upper
+		 * @param command_lower
+		 * @param payload_length
+		 * @return
+		 */
+		public static Command valueOf(byte command_upper, byte command_lower, int payload_length) {
 			
 			// Parse Command
 			switch(command_upper) {
@@ -433,7 +633,7 @@ public class DSMessage {
 			case 0x01: // Discovery and Management
 				switch(command_lower) {
 					case COMMAND_LOWER_CURRENT_STATE:
-						if(payload == null || payload.length == 0)
+						if(payload_length == 0)
 							return Command.CURRENT_STATE_REQUEST;
 						else
 							return Command.CURRENT_STATE;
@@ -453,7 +653,7 @@ public class DSMessage {
 					case COMMAND_LOWER_AMBIENT_SCENE: return Command.AMBIENT_SCENE;
 					case COMMAND_LOWER_SATURATION_SETTING: return Command.SATURATION_SETTING;
 					case COMMAND_LOWER_HDMI_INPUT: 
-						if(payload == null || payload.length == 0)
+						if(payload_length == 0)
 							return Command.HDMI_INPUT_STATUS;
 						else
 							return Command.HDMI_INPUT;
@@ -52,7 +52,7 @@ public class DeviceNameMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public String getDeviceName() {
-		return new String(message.getPayload());
+		return message.getPayloadString();
 	}
 
 	/**
@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.messages;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reusable encode target for DS frames. get() hands out one buffer per thread, 
+ * which stays valid until the same thread encodes the next frame.
+ * @author Robert Koszewski
+ */
+public class FrameBuffer {
+	
+	// Constructor
+	
+	public FrameBuffer() {
+		this.data = new byte[DSMessage.MAX_FRAME_SIZE];
+		this.buffer = ByteBuffer.wrap(data);
+	}
+	
+	// Variables
+	private final byte[] data;
+	private final ByteBuffer buffer;
+	private int length = 0;
+	
+	// Methods
+	
+	/**
+	 * Encode Message into this Buffer
+	 * @param message
+	 * @return Encoded length
+	 */
+	public int encode(DSMessage message) {
+		length = message.encode(data, 0);
+		return length;
+	}
+	
+	/**
+	 * Encode Message Fields into this Buffer
+	 * @param group_address
+	 * @param flags
+	 * @param command_upper
+	 * @param command_lower
+	 * @param payload
+	 * @return Encoded length
+	 */
+	public int encode(byte group_address, byte flags, byte command_upper, byte command_lower, byte[] payload) {
+		length = DSMessage.encode(data, 0, group_address, flags, command_upper, command_lower, payload, 0, payload == null ? 0 : payload.length);
+		return length;
+	}
+	
+	/**
+	 * Get Backing Array (Only the first getLength() bytes are valid)
+	 * @return
+	 */
+	public byte[] getData() {
+		return data;
+	}
+	
+	/**
+	 * Get Encoded Length
+	 * @return
+	 */
+	public int getLength() {
+		return length;
+	}
+	
+	/**
+	 * Get the encoded Frame as Buffer (Position 0, Limit = Length)
+	 * @return
+	 */
+	public ByteBuffer asByteBuffer() {
+		buffer.clear();
+		buffer.limit(length);
+		return buffer;
+	}
+	
+	// Pool
+	
+	private static final ThreadLocal<FrameBuffer> POOL = new ThreadLocal<FrameBuffer>() {
+		@Override
+		protected FrameBuffer initialValue() {
+			return new FrameBuffer();
+		}
+	};
+	
+	/**
+	 * Get the Frame Buffer of the current Thread
+	 * @return
+	 */
+	public static FrameBuffer get() {
+		return POOL.get();
+	}
+}
@@ -52,7 +52,7 @@ public class GroupNameMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public String getGroupName() {
-		return new String(message.getPayload());
+		return message.getPayloadString();
 	}
 
 	/**
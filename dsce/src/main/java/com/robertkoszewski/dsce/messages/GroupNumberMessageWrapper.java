@@ -50,7 +50,7 @@ public class GroupNumberMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public byte getGroupNumber() {
-		return message.getPayload()[0];
+		return message.getPayloadByte(0);
 	}
 
 	/**
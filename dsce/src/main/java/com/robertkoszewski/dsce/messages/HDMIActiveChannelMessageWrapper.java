@@ -52,7 +52,7 @@ public class HDMIActiveChannelMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public HDMIActiveChannels getHDMIActiveChannels() {
-		return new HDMIActiveChannels(message.getPayload()[0]);
+		return new HDMIActiveChannels(message.getPayloadByte(0));
 	}
 
 	/**
@@ -50,7 +50,7 @@ public class HDMIInputMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public byte getHDMIInput() {
-		return message.getPayload()[0];
+		return message.getPayloadByte(0);
 	}
 
 	/**
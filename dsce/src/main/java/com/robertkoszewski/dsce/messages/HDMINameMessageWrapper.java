@@ -53,7 +53,7 @@ public class HDMINameMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public String getInputName() {
-		return new String(message.getPayload());
+		return message.getPayloadString();
 	}
 
 	/**
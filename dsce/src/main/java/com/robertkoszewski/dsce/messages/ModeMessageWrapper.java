@@ -53,7 +53,7 @@ public class ModeMessageWrapper extends DSMessageWrapper{
 	 * @return
 	 */
 	public Mode getMode() {
-		return Mode.valueOf(message.getPayload()[0]);
+		return Mode.valueOf(message.getPayloadByte(0));
 	}
 
 	/**
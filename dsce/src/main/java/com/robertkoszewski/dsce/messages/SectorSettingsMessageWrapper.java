@@ -53,8 +53,9 @@ public class SectorSettingsMessageWrapper extends DSMessageWrapper{
 		// Build Temporary Array 
 		int secNum = 0;
 		int[] tempSectors = new int[12];
-		for(byte sector : message.getPayload()) {
-			int sectorInt = sector & 0xFF;
+		int length = message.getPayloadLength();
+		for(int i = 0; i < length; i++) {
+			int sectorInt = message.getPayloadByte(i) & 0xFF;
 			if(sectorInt == 0) break; // Skip when no more sectors are available
 			if(sectorInt < 0 || sectorInt > 12) continue; // Ignore invalid ranges
 			tempSectors[secNum] = sectorInt;
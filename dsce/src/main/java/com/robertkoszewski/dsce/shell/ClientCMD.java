@@ -38,8 +38,13 @@ import com.robertkoszewski.dsce.client.server.SocketListener;
 import com.robertkoszewski.dsce.debugger.DSDebugger;
 import com.robertkoszewski.dsce.emulator.DreamScreen4KEmulator;
 import com.robertkoszewski.dsce.emulator.GenericEmulator;
+import com.robertkoszewski.dsce.emulator.utils.DecimatedSampler;
+import com.robertkoszewski.dsce.emulator.utils.EdgeBandSampler;
+import com.robertkoszewski.dsce.emulator.utils.ParallelAverageSampler;
 import com.robertkoszewski.dsce.emulator.utils.RobotScreenGrabber;
+import com.robertkoszewski.dsce.emulator.utils.ScreenGrabber;
 import com.robertkoszewski.dsce.emulator.utils.SimpleAverageSampler;
+import com.robertkoszewski.dsce.emulator.utils.SummedAreaSampler;
 import com.robertkoszewski.dsce.emulator.variant.SwingDreamScreenHDEmulator;
 import com.robertkoszewski.dsce.emulator.variant.SwingSideKickEmulator;
 import com.robertkoszewski.dsce.utils.DS;
@@ -403,17 +408,36 @@ public class ClientCMD {
 						if(services.emu == null) {
 							
 							try {
-								Device device = (DSDevice.Device.valueOf(args.trim().toUpperCase()));
-								System.out.print("Starting emulator...\r");
+								String[] params = args.trim().split("\\s+");
+								Device device = (DSDevice.Device.valueOf(params[0].toUpperCase()));
 								
 								switch(device) {
 								case DREAMSCREEN4K:
+									System.out.print("Starting emulator...\r");
 									services.emu = new DreamScreen4KEmulator(socket);
 									break;
 								case DREAMSCREENHD:
-									services.emu = new SwingDreamScreenHDEmulator(new SimpleAverageSampler(new RobotScreenGrabber()), socket);
+									SamplerType samplerType = SamplerType.SIMPLE;
+									int monitor = -1;
+									try {
+										if(params.length > 1) samplerType = SamplerType.valueOf(params[1].toUpperCase());
+									}catch(IllegalArgumentException e) {
+										System.err.println("ERROR: Unknown sampler. Valid samplers are: " + listAllEnums(SamplerType.values()));
+										return;
+									}
+									try {
+										if(params.length > 2) monitor = Integer.parseInt(params[2]);
+										services.grabber = new RobotScreenGrabber(monitor);
+									}catch(IllegalArgumentException e) {
+										System.err.println("ERROR: Unknown monitor. Valid monitors are 0 to " + (RobotScreenGrabber.getMonitorCount() - 1) + " (-1 for the default monitor)");
+										return;
+									}
+									System.out.print("Starting emulator...\r");
+									services.sampler = newSampler(samplerType, services.grabber);
+									services.emu = new SwingDreamScreenHDEmulator(services.sampler, socket);
 									break;
 								case SIDEKICK:
+									System.out.print("Starting emulator...\r");
 									services.emu = new SwingSideKickEmulator(socket);
 									break;
 								default:
@@ -432,7 +456,9 @@ public class ClientCMD {
 						}
 					}
 					
-					@Override public String help() { return description() + ". As parameter you need to specify the device type you want to emulate."; }
+					@Override public String help() { return description() + ". As parameter you need to specify the device type you want to emulate. "
+							+ "DREAMSCREENHD optionally takes the screen sampler (" + listAllEnums(SamplerType.values()) + ", default SIMPLE) "
+							+ "and the monitor index to capture (Default -1, the default monitor). Example: start dreamscreenhd edge 1"; }
 					@Override public String description() { return "Starts a DreamScreen emulator instance"; }
 				});
 				
@@ -445,6 +471,8 @@ public class ClientCMD {
 							System.out.print("Stopping emulator...\r");
 							services.emu.stop();
 							services.emu = null;
+							services.sampler = null;
+							services.grabber = null;
 							System.out.println("Emulator Stopped");
 						}else {
 							System.err.println("Emulator is not running.");
@@ -455,6 +483,24 @@ public class ClientCMD {
 					@Override public String description() { return "Stops the simulated device."; }
 				});
 				
+				// COMMAND: stats
+				shell_emu.addCommand("stats", new Command() {
+
+					@Override
+					public void run(ShellContext context, String args) {
+						if(services.sampler == null) {
+							System.err.println("ERROR: No screen sampling emulator is currently running.");
+							return;
+						}
+						
+						System.out.println("Sampler: " + services.sampler.getStats());
+						System.out.println("Capture: " + services.grabber.getCaptureStats());
+					}
+					
+					@Override public String help() { return description() + ". No arguments required."; }
+					@Override public String description() { return "Shows the screen sampling frame rate and capture times."; }
+				});
+				
 				// COMMAND: replicate
 				shell_emu.addCommand("replicate", new Command() {
 
@@ -587,11 +633,40 @@ public class ClientCMD {
 		return out;
 	}
 	
+	/**
+	 * Build a Screen Sampler
+	 * @param type
+	 * @param grabber
+	 * @return
+	 */
+	private static SimpleAverageSampler newSampler(SamplerType type, ScreenGrabber grabber) {
+		switch(type) {
+		case PARALLEL: return new ParallelAverageSampler(grabber);
+		case SUMMED: return new SummedAreaSampler(grabber);
+		case DECIMATED: return new DecimatedSampler(grabber);
+		case EDGE: return new EdgeBandSampler(grabber); // Captures only the edge bands of the screen
+		default: return new SimpleAverageSampler(grabber);
+		}
+	}
+	
+	/**
+	 * Screen Samplers of the DreamScreen HD Emulator
+	 */
+	private enum SamplerType {
+		SIMPLE,
+		PARALLEL,
+		SUMMED,
+		DECIMATED,
+		EDGE
+	}
+	
 	/**
 	 * Service References
 	 */
 	private static class Services {
 		public GenericEmulator emu = null;
+		public SimpleAverageSampler sampler = null;
+		public RobotScreenGrabber grabber = null;
 		public DSDebugger dbg = null;
 	}
 }
@@ -34,8 +34,20 @@ public class DSUtils {
 	 * @return
 	 */
 	public static byte calculate_crc8(byte[] data, int length) {
+		return calculate_crc8(data, 0, length);
+	}
+	
+	/**
+	 * Calculate CRC8 from a region of a data byte array
+	 * @param data
+	 * @param offset
+	 * @param length
+	 * @return
+	 */
+	public static byte calculate_crc8(byte[] data, int offset, int length) {
 		byte crc = 0x00;
-		for (int i=0;i<length;i++) 
+		int end = offset + length;
+		for (int i=offset;i<end;i++) 
 	         crc = CRC8_TABLE[(crc ^ data[i]) & 0xFF]; 
 	     return crc; 
 	}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free single slot handoff of the newest frame from one producer to one consumer. 
+ * The producer never blocks: publishing replaces a frame that has not been taken yet (counted as dropped). 
+ * The consumer either waits for a new frame or re-reads the last one (counted as duplicated).
+ * @author Robert Koszewski
+ * @param <T> Frame type
+ */
+public class FrameExchanger<T> {
+	
+	// Variables
+	private final AtomicReference<T> slot = new AtomicReference<T>();
+	private volatile T last = null;
+	private volatile Thread waiter = null;
+	private final AtomicLong published = new AtomicLong();
+	private final AtomicLong taken = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong duplicated = new AtomicLong();
+	
+	// Methods
+	
+	/**
+	 * Publish a complete Frame (Never blocks)
+	 * @param frame
+	 */
+	public void publish(T frame) {
+		if(frame == null) throw new IllegalArgumentException("Frame cannot be null");
+		if(slot.getAndSet(frame) != null) dropped.incrementAndGet(); // Previous frame was never taken
+		published.incrementAndGet();
+		Thread thread = waiter;
+		if(thread != null) LockSupport.unpark(thread);
+	}
+	
+	/**
+	 * Is a new Frame available?
+	 * @return
+	 */
+	public boolean hasFrame() {
+		return slot.get() != null;
+	}
+	
+	/**
+	 * Take the newest Frame, waiting until one is published
+	 * @return Frame or NULL if the calling thread got interrupted
+	 */
+	public T take() {
+		T frame = slot.getAndSet(null);
+		if(frame != null) return taken(frame);
+		
+		Thread thread = Thread.currentThread();
+		waiter = thread;
+		try {
+			while((frame = slot.getAndSet(null)) == null) {
+				if(thread.isInterrupted()) return null;
+				LockSupport.park(this);
+			}
+		} finally {
+			waiter = null;
+		}
+		return taken(frame);
+	}
+	
+	/**
+	 * Take the newest Frame without waiting
+	 * @return The new frame, the last taken frame again if there is no new one, or NULL if no frame has been published yet
+	 */
+	public T poll() {
+		T frame = slot.getAndSet(null);
+		if(frame != null) return taken(frame);
+		frame = last;
+		if(frame != null) duplicated.incrementAndGet();
+		return frame;
+	}
+	
+	/**
+	 * Get Published Frames
+	 * @return
+	 */
+	public long getPublished() {
+		return published.get();
+	}
+	
+	/**
+	 * Get Taken Frames (Without duplicates)
+	 * @return
+	 */
+	public long getTaken() {
+		return taken.get();
+	}
+	
+	/**
+	 * Get Dropped Frames (Replaced by a newer frame before being taken)
+	 * @return
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+	
+	/**
+	 * Get Duplicated Frames (Returned again by poll() because no new frame was available)
+	 * @return
+	 */
+	public long getDuplicated() {
+		return duplicated.get();
+	}
+	
+	/**
+	 * Register a taken Frame
+	 * @param frame
+	 * @return
+	 */
+	private T taken(T frame) {
+		last = frame;
+		taken.incrementAndGet();
+		return frame;
+	}
+}
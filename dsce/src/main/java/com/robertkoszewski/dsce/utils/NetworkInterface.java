@@ -22,10 +22,13 @@
  *******************************************************************************/
 package com.robertkoszewski.dsce.utils;
 
+import java.io.IOException;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
 import java.util.Enumeration;
 
 /**
@@ -63,6 +66,68 @@ public class NetworkInterface {
 		return new DatagramSocket(port);
 	}
 	
+	/**
+	 * Build DatagramChannel (Reuse Address and Broadcast enabled)
+	 * @param port
+	 * @return
+	 * @throws IOException 
+	 */
+	public DatagramChannel newDatagramChannel(int port) throws IOException {
+		if(this.hostIP != null) return newDatagramChannel(new InetSocketAddress(hostIP, port));
+		if(this.networkInterfaceName != null) return newDatagramChannel(new InetSocketAddress(getInterfaceAddress(networkInterfaceName), port));
+		return newDatagramChannel(new InetSocketAddress(port));
+	}
+	
+	/**
+	 * Build DatagramChannel for an optional Network Interface
+	 * @param networkInterface
+	 * @param port
+	 * @return
+	 * @throws IOException
+	 */
+	public static DatagramChannel newDatagramChannel(NetworkInterface networkInterface, int port) throws IOException {
+		if(networkInterface != null) return networkInterface.newDatagramChannel(port);
+		return newDatagramChannel(new InetSocketAddress(port));
+	}
+	
+	/**
+	 * Socket Address Based DatagramChannel (Dual-stack where available, like a DatagramSocket, so IPv6 destinations keep working)
+	 * @param address
+	 * @return
+	 * @throws IOException
+	 */
+	private static DatagramChannel newDatagramChannel(InetSocketAddress address) throws IOException {
+		DatagramChannel channel = DatagramChannel.open();
+		try {
+			channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			channel.setOption(StandardSocketOptions.SO_BROADCAST, true);
+			channel.bind(address);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		return channel;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) return true;
+		if(!(obj instanceof NetworkInterface)) return false;
+		NetworkInterface other = (NetworkInterface) obj;
+		return (hostIP == null ? other.hostIP == null : hostIP.equals(other.hostIP)) &&
+			   (networkInterfaceName == null ? other.networkInterfaceName == null : networkInterfaceName.equals(other.networkInterfaceName));
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * (hostIP == null ? 0 : hostIP.hashCode()) + (networkInterfaceName == null ? 0 : networkInterfaceName.hashCode());
+	}
+	
+	@Override
+	public String toString() {
+		return hostIP != null ? hostIP.getHostAddress() : networkInterfaceName;
+	}
+	
 	/**
 	 * Host IP Based DatagramSocket
 	 * @param hostIP
@@ -83,6 +148,19 @@ public class NetworkInterface {
 	 */
 	private static DatagramSocket newDatagramSocket(String networkIF, int port) throws SocketException {
 		DatagramSocket dsocket = new DatagramSocket(null);
+		InetAddress ip = getInterfaceAddress(networkIF);
+		// System.out.println("CONNECTING TO: " + networkIF +" @ " + ip.getHostAddress() + " : " + port);
+		dsocket.bind(new InetSocketAddress(ip, port));
+		return dsocket;
+	}
+	
+	/**
+	 * Get first IP of a Network Interface
+	 * @param networkIF
+	 * @return
+	 * @throws SocketException
+	 */
+	private static InetAddress getInterfaceAddress(String networkIF) throws SocketException {
 		java.net.NetworkInterface nif = java.net.NetworkInterface.getByName(networkIF);
 		if(nif == null)
 			throw new SocketException("ERROR: Interface '" + networkIF + "' not found.");
@@ -91,9 +169,6 @@ public class NetworkInterface {
 		if(!nifAddresses.hasMoreElements())
 			throw new SocketException("ERROR: Interface '" + networkIF + "' IP not found.");
 		
-		InetAddress ip = nifAddresses.nextElement();
-		// System.out.println("CONNECTING TO: " + networkIF +" @ " + ip.getHostAddress() + " : " + port);
-		dsocket.bind(new InetSocketAddress(ip, port));
-		return dsocket;
+		return nifAddresses.nextElement();
 	}
 }
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free event rate meter (events per second over the last completed one second window)
+ * @author Robert Koszewski
+ */
+public class RateMeter {
+	
+	// Variables
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong windowCount = new AtomicLong();
+	private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+	private volatile long rate = 0;
+	
+	// Constants
+	private static final long WINDOW_NANOS = 1000000000L;
+	
+	// Methods
+	
+	/**
+	 * Register one event
+	 * @return TRUE if a new one second window has been completed with this event
+	 */
+	public boolean tick() {
+		return tick(1);
+	}
+	
+	/**
+	 * Register a number of events
+	 * @param events
+	 * @return TRUE if a new one second window has been completed with these events
+	 */
+	public boolean tick(long events) {
+		total.addAndGet(events);
+		windowCount.addAndGet(events);
+		return roll(System.nanoTime());
+	}
+	
+	/**
+	 * Get Events per Second (Last completed window)
+	 * @return
+	 */
+	public long getRate() {
+		roll(System.nanoTime());
+		return rate;
+	}
+	
+	/**
+	 * Get Total Events
+	 * @return
+	 */
+	public long getTotal() {
+		return total.get();
+	}
+	
+	/**
+	 * Reset Meter
+	 */
+	public void reset() {
+		total.set(0);
+		windowCount.set(0);
+		windowStart.set(System.nanoTime());
+		rate = 0;
+	}
+	
+	/**
+	 * Close the current window if it has expired
+	 * @param now
+	 * @return
+	 */
+	private boolean roll(long now) {
+		long start = windowStart.get();
+		long elapsed = now - start;
+		if(elapsed < WINDOW_NANOS || !windowStart.compareAndSet(start, now)) return false;
+		long events = windowCount.getAndSet(0);
+		rate = events * WINDOW_NANOS / elapsed;
+		return true;
+	}
+}
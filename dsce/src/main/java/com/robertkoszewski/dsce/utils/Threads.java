@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2019 Robert Koszewski
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ *******************************************************************************/
+package com.robertkoszewski.dsce.utils;
+
+import java.lang.reflect.Method;
+
+/**
+ * Thread Factory for background loops and blocking requests. 
+ * Creates virtual threads when enabled and supported by the running JDK (Java 21+), platform threads otherwise.
+ * Virtual threads are looked up by reflection so the library still builds and runs on Java 8.
+ * Enable with setVirtualThreadsEnabled(true) or -Ddsce.virtualThreads=true
+ * @author Robert Koszewski
+ */
+public class Threads {
+	
+	// Virtual Thread Support (Resolved once)
+	private static final Method OF_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_UNSTARTED;
+	
+	static {
+		Method ofVirtual = null, builderName = null, builderUnstarted = null;
+		try {
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			builderName = builder.getMethod("name", String.class);
+			builderUnstarted = builder.getMethod("unstarted", Runnable.class);
+			ofVirtual.invoke(null); // Fails on JDKs where virtual threads are a disabled preview feature
+		} catch (Throwable e) {
+			ofVirtual = null; // Not supported
+		}
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = builderName;
+		BUILDER_UNSTARTED = builderUnstarted;
+	}
+	
+	private static volatile boolean virtualThreads = OF_VIRTUAL != null && Boolean.getBoolean("dsce.virtualThreads");
+	
+	// Methods
+	
+	/**
+	 * Are Virtual Threads supported by the running JDK?
+	 * @return
+	 */
+	public static boolean isVirtualThreadsSupported() {
+		return OF_VIRTUAL != null;
+	}
+	
+	/**
+	 * Enable/Disable Virtual Threads (Applies to threads created afterwards)
+	 * @param enable
+	 * @return TRUE if virtual threads are now in use
+	 */
+	public static boolean setVirtualThreadsEnabled(boolean enable) {
+		virtualThreads = enable && isVirtualThreadsSupported();
+		return virtualThreads;
+	}
+	
+	/**
+	 * Are Virtual Threads in use?
+	 * @return
+	 */
+	public static boolean isVirtualThreadsEnabled() {
+		return virtualThreads;
+	}
+	
+	/**
+	 * Create an unstarted Thread
+	 * @param name Thread Name
+	 * @param daemon Daemon flag for platform threads (Virtual threads are always daemon threads)
+	 * @param task
+	 * @return
+	 */
+	public static Thread newThread(String name, boolean daemon, Runnable task) {
+		if(virtualThreads) {
+			try {
+				Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), name);
+				return (Thread) BUILDER_UNSTARTED.invoke(builder, task);
+			} catch (Exception e) {
+				// Fall back to a platform thread
+			}
+		}
+		Thread thread = new Thread(task, name);
+		thread.setDaemon(daemon);
+		return thread;
+	}
+	
+	/**
+	 * Create and start a Thread
+	 * @param name Thread Name
+	 * @param daemon Daemon flag for platform threads
+	 * @param task
+	 * @return
+	 */
+	public static Thread startThread(String name, boolean daemon, Runnable task) {
+		Thread thread = newThread(name, daemon, task);
+		thread.start();
+		return thread;
+	}
+}
@@ -0,0 +1,344 @@
+package com.robertkoszewski.dsce.client;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.robertkoszewski.dsce.client.devices.DSDevice;
+import com.robertkoszewski.dsce.client.devices.DeviceChangeListener;
+import com.robertkoszewski.dsce.client.server.SocketListener;
+import com.robertkoszewski.dsce.messages.BrightnessMessageWrapper;
+import com.robertkoszewski.dsce.messages.CurrentStateMessageWrapper;
+import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.messages.DSMessage.Command;
+import com.robertkoszewski.dsce.messages.GroupNumberMessageWrapper;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the asynchronous DSClient requests
+ */
+public class DSClientTest 
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public DSClientTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( DSClientTest.class );
+    }
+    
+    /**
+     * Socket that answers state requests of the given devices in-process instead of sending them
+     */
+    private static class LoopbackSocket extends SocketListener {
+        
+        public LoopbackSocket(InetAddress... devices) {
+            super(0, 256, false);
+            this.devices = devices;
+        }
+        
+        private final InetAddress[] devices;
+        private final DSMessage view = new DSMessage();
+        private final byte[] reply = new CurrentStateMessageWrapper(DSDevice.Device.SIDEKICK).getMessage(DSMessage.FLAG_STATUS).getMessage();
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger commands = new AtomicInteger(); // Group commands only
+        
+        @Override
+        public synchronized void sendMessage(InetAddress dest_ip, byte[] message) {
+            requests.incrementAndGet();
+            for(InetAddress device: devices) {
+                if(dest_ip.equals(device) || dest_ip.getAddress()[3] == (byte) 0xFF)
+                    handlePacket(view, reply, 0, reply.length, device, 8888, null);
+            }
+        }
+        
+        /**
+         * Group commands are applied by every device, which confirms them with a group update (Unless lost)
+         */
+        @Override
+        public synchronized void sendMessage(InetAddress dest_ip, DSMessage message) {
+            requests.incrementAndGet();
+            commands.incrementAndGet();
+            try {
+                for(InetAddress device: devices) {
+                    if(lost.remove(device)) continue;
+                    DSMessage update = new DSMessage(message.getMessage());
+                    update.setFlags(DSMessage.FLAG_BROADCAST_TO_GROUP);
+                    inject(update, device);
+                }
+            } catch (Exception e) {
+                fail(e.getMessage());
+            }
+        }
+        
+        final List<InetAddress> lost = new CopyOnWriteArrayList<InetAddress>();
+        
+        public synchronized void inject(DSMessage message, InetAddress device) {
+            byte[] frame = message.getMessage();
+            handlePacket(view, frame, 0, frame.length, device, 8888, null);
+        }
+    }
+
+    /**
+     * Get the client registry once it knows the given number of devices and its seeding discovery ended 
+     * (Later state replies of the loopback devices would reset injected state)
+     */
+    private static DSDeviceRegistry awaitRegistry(DSClient client, int devices) throws InterruptedException
+    {
+        DSDeviceRegistry registry = client.getRegistry();
+        long deadline = System.currentTimeMillis() + 1000;
+        while(registry.size() < devices && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertEquals(devices, registry.size());
+        Thread.sleep(150); // Discovery timeout
+        return registry;
+    }
+
+    /**
+     * A lookup completes with the device that answered
+     */
+    public void testGetClientAsync() throws Exception
+    {
+        InetAddress device = InetAddress.getByName("10.0.0.2");
+        DSClient client = new DSClient(new LoopbackSocket(device));
+        DSDevice found = client.getClientAsync(device).get(1, TimeUnit.SECONDS);
+        assertEquals(device, found.getIP());
+        assertEquals(0, client.getPendingLookups());
+        client.close();
+    }
+
+    /**
+     * A lookup of a silent device retries and then times out
+     */
+    public void testGetClientTimeout() throws Exception
+    {
+        LoopbackSocket socket = new LoopbackSocket();
+        DSClient client = new DSClient(socket);
+        client.setRequestTimeout(20);
+        client.setRequestRetries(3);
+        try {
+            client.getClientAsync(InetAddress.getByName("10.0.0.9")).get(1, TimeUnit.SECONDS);
+            fail("Lookup should time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(3, socket.requests.get());
+        assertNull(client.getClient(InetAddress.getByName("10.0.0.9")));
+        client.close();
+    }
+
+    /**
+     * Lookups keep the fixed retransmit schedule once RTT samples exist, unless adaptive retransmits are enabled
+     */
+    public void testRetransmitSchedule() throws Exception
+    {
+        InetAddress device = InetAddress.getByName("10.0.0.2"), silent = InetAddress.getByName("10.0.0.9");
+        LoopbackSocket socket = new LoopbackSocket(device);
+        DSClient client = new DSClient(socket);
+        client.setRequestTimeout(300);
+        assertNotNull(client.getClient(device));
+        assertTrue(client.getRttEstimator().getSamples() > 0);
+        assertFalse(client.isAdaptiveRetransmit());
+        
+        socket.requests.set(0);
+        client.getClientAsync(silent);
+        Thread.sleep(150);
+        assertEquals(1, socket.requests.get());
+        client.close();
+        
+        client = new DSClient(socket);
+        client.setRequestTimeout(300);
+        client.setAdaptiveRetransmit(true);
+        assertNotNull(client.getClient(device));
+        socket.requests.set(0);
+        client.getClientAsync(silent);
+        Thread.sleep(150);
+        assertTrue(socket.requests.get() > 1);
+        client.close();
+    }
+
+    /**
+     * Discovery reports every device once
+     */
+    public void testDiscover() throws Exception
+    {
+        DSClient client = new DSClient(new LoopbackSocket(InetAddress.getByName("10.0.0.2"), InetAddress.getByName("10.0.0.3")));
+        client.setDiscoveryTiming(10, 100);
+        final AtomicInteger discovered = new AtomicInteger();
+        Discovery discovery = client.discover(new DeviceDiscovered() {
+            @Override
+            public void discovered(DSDevice device) {
+                discovered.incrementAndGet();
+            }
+        });
+        DSDevice[] devices = discovery.getFuture().get(1, TimeUnit.SECONDS);
+        assertEquals(2, devices.length);
+        assertEquals(2, discovered.get());
+        client.close();
+    }
+
+    /**
+     * Discovery ends as soon as the expected devices answered or the network went quiet
+     */
+    public void testDiscoverEarlyTermination() throws Exception
+    {
+        DSClient client = new DSClient(new LoopbackSocket(InetAddress.getByName("10.0.0.2"), InetAddress.getByName("10.0.0.3")));
+        client.setDiscoveryTiming(500, 5000);
+        
+        Discovery expected = client.discover(null, 2, 0);
+        assertEquals(2, expected.getFuture().get(1, TimeUnit.SECONDS).length);
+        assertEquals(1, expected.getBroadcasts());
+        
+        Discovery quiet = client.discover(null, 0, DSClient.QUIET_ADAPTIVE);
+        assertEquals(2, quiet.getFuture().get(2, TimeUnit.SECONDS).length);
+        assertTrue("Quiet period did not end the discovery early", quiet.getDuration() < 2500);
+        assertTrue(client.getRttEstimator().getSamples() > 0);
+        client.close();
+    }
+
+    /**
+     * The registry follows group update broadcasts of known devices
+     */
+    public void testRegistry() throws Exception
+    {
+        InetAddress first = InetAddress.getByName("10.0.0.2"), second = InetAddress.getByName("10.0.0.3");
+        LoopbackSocket socket = new LoopbackSocket(first, second);
+        DSClient client = new DSClient(socket);
+        client.setDiscoveryTiming(10, 100);
+        DSDeviceRegistry registry = awaitRegistry(client, 2);
+        
+        final List<Command> changes = new CopyOnWriteArrayList<Command>();
+        registry.getDevice(second).addChangeListener(new DeviceChangeListener() {
+            @Override
+            public void changed(DSDevice device, Command property) {
+                changes.add(property);
+            }
+        });
+        
+        // Join both devices to group 1, then change the brightness of the group from the first device
+        socket.inject(new GroupNumberMessageWrapper((byte) 0, (byte) 1).getMessage(DSMessage.FLAG_BROADCAST_TO_GROUP), first);
+        socket.inject(new GroupNumberMessageWrapper((byte) 0, (byte) 1).getMessage(DSMessage.FLAG_BROADCAST_TO_GROUP), second);
+        socket.inject(new BrightnessMessageWrapper((byte) 1, 42).getMessage(DSMessage.FLAG_BROADCAST_TO_GROUP), first);
+        
+        assertEquals(42, registry.getDevice(first).getBrightness());
+        assertEquals(42, client.getDevice(second).getBrightness());
+        assertEquals(Arrays.asList(Command.GROUP_NUMBER, Command.BRIGHTNESS), changes);
+        
+        // Unchanged values are not reported
+        socket.inject(new BrightnessMessageWrapper((byte) 1, 42).getMessage(DSMessage.FLAG_BROADCAST_TO_GROUP), second);
+        assertEquals(2, changes.size());
+        client.close();
+    }
+
+    /**
+     * Cached devices are served from memory, refreshed in the background when stale and evicted when full
+     */
+    public void testCache() throws Exception
+    {
+        InetAddress first = InetAddress.getByName("10.0.0.2"), second = InetAddress.getByName("10.0.0.3");
+        LoopbackSocket socket = new LoopbackSocket(first, second);
+        DSClient client = new DSClient(socket);
+        client.setCache(100, 10000, 1);
+        DeviceCache cache = client.getCache();
+        
+        assertNotNull(client.getClient(first));
+        assertNotNull(client.getClient(first));
+        assertEquals(1, socket.requests.get());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        
+        // Stale entry is served and refreshed once
+        Thread.sleep(150);
+        assertNotNull(client.getClient(first));
+        assertNotNull(client.getClient(first));
+        assertEquals(2, socket.requests.get());
+        assertEquals(1, cache.getRefreshes());
+        assertTrue(cache.getStaleHits() + cache.getHits() >= 3);
+        
+        // Size bound
+        assertNotNull(client.getClient(second));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictions());
+        client.close();
+    }
+
+    /**
+     * A group operation is one broadcast, confirmed by every member and rebroadcast while one is missing
+     */
+    public void testGroupOperation() throws Exception
+    {
+        InetAddress first = InetAddress.getByName("10.0.0.2"), second = InetAddress.getByName("10.0.0.3");
+        LoopbackSocket socket = new LoopbackSocket(first, second);
+        DSClient client = new DSClient(socket);
+        client.setDiscoveryTiming(10, 100);
+        client.setRequestTimeout(50);
+        DSDeviceRegistry registry = awaitRegistry(client, 2);
+        socket.inject(new GroupNumberMessageWrapper((byte) 0, (byte) 1).getMessage(DSMessage.FLAG_BROADCAST_TO_GROUP), first);
+        socket.inject(new GroupNumberMessageWrapper((byte) 0, (byte) 1).getMessage(DSMessage.FLAG_BROADCAST_TO_GROUP), second);
+        DeviceGroup group = client.getGroup((byte) 1);
+        assertEquals(2, group.getMembers().length);
+        
+        // Converges with a single broadcast
+        int before = socket.requests.get();
+        GroupOperation operation = group.setBrightness(30);
+        assertSame(operation, operation.getFuture().get(1, TimeUnit.SECONDS));
+        assertTrue(operation.isConverged());
+        assertEquals(1, operation.getBroadcasts());
+        assertEquals(before + 1, socket.requests.get());
+        assertEquals(30, registry.getDevice(second).getBrightness());
+        
+        // Lost confirmation is rebroadcast
+        socket.lost.add(second);
+        operation = group.setMode(DSDevice.Mode.AMBIENT);
+        operation.getFuture().get(1, TimeUnit.SECONDS);
+        assertTrue(operation.isConverged());
+        assertEquals(2, operation.getBroadcasts());
+        assertEquals(second, operation.getConfirmed()[1]);
+        
+        // Silent member
+        client.setRequestRetries(2);
+        socket.lost.add(second);
+        socket.lost.add(second);
+        operation = group.setBrightness(60);
+        operation.getFuture().get(1, TimeUnit.SECONDS);
+        assertFalse(operation.isConverged());
+        assertEquals(2, operation.getBroadcasts());
+        assertEquals(second, operation.getUnconfirmed()[0]);
+        client.close();
+    }
+
+    /**
+     * A group command sent before the registry knows any member is still broadcast, but not verified
+     */
+    public void testGroupOperationWithoutMembers() throws Exception
+    {
+        LoopbackSocket socket = new LoopbackSocket(); // Seeding discovery finds nobody (yet)
+        DSClient client = new DSClient(socket);
+        GroupOperation operation = client.getGroup((byte) 1).setBrightness(30);
+        assertSame(operation, operation.getFuture().get(1, TimeUnit.SECONDS));
+        assertEquals(0, operation.getMembers());
+        assertEquals(1, operation.getBroadcasts());
+        assertEquals(1, socket.commands.get());
+        assertFalse(operation.isVerified());
+        assertFalse(operation.isConverged());
+        client.close();
+    }
+}
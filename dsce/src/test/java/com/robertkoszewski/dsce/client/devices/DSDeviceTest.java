@@ -0,0 +1,255 @@
+package com.robertkoszewski.dsce.client.devices;
+
+import java.awt.Color;
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.robertkoszewski.dsce.client.server.SocketListener;
+import com.robertkoszewski.dsce.messages.BrightnessMessageWrapper;
+import com.robertkoszewski.dsce.messages.ColorSaturationMessageWrapper;
+import com.robertkoszewski.dsce.messages.CurrentStateMessageWrapper;
+import com.robertkoszewski.dsce.messages.DSMessage;
+import com.robertkoszewski.dsce.messages.DSMessage.Command;
+import com.robertkoszewski.dsce.messages.FrameBuffer;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the DSDevice command path
+ */
+public class DSDeviceTest 
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public DSDeviceTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( DSDeviceTest.class );
+    }
+    
+    /**
+     * Socket that records the commands sent to devices instead of sending them
+     */
+    static class RecordingSocket extends SocketListener {
+        
+        public RecordingSocket() {
+            super(0, 256, false);
+        }
+        
+        final List<DSMessage> sent = new CopyOnWriteArrayList<DSMessage>();
+        final List<Long> times = new CopyOnWriteArrayList<Long>();
+        final AtomicInteger lose = new AtomicInteger();
+        final AtomicInteger pooled = new AtomicInteger();
+        volatile boolean echo = false;
+        private final DSMessage view = new DSMessage();
+        
+        @Override
+        public void sendStaticMessage(InetAddress dest_ip, byte[] message, int offset, int length, int port) {
+            try {
+                DSMessage command = new DSMessage(message, offset, length, true);
+                if(message == FrameBuffer.get().getData()) pooled.incrementAndGet();
+                sent.add(command);
+                times.add(System.nanoTime());
+                
+                // Device applies the command and broadcasts the update (Unless the command got lost)
+                if(!echo || command.getCommand() == Command.CURRENT_STATE_REQUEST || lose.getAndDecrement() > 0) return;
+                command.setFlags(DSMessage.FLAG_BROADCAST_TO_GROUP);
+                byte[] update = command.getMessage();
+                synchronized(view) {
+                    handlePacket(view, update, 0, update.length, dest_ip, port, null);
+                }
+            } catch (Exception e) {
+                fail(e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A burst of setter calls is coalesced per command and sent in order at the configured rate
+     */
+    public void testCommandQueue() throws Exception
+    {
+        RecordingSocket socket = new RecordingSocket();
+        DSDevice device = new SideKick(socket, new CurrentStateMessageWrapper(DSDevice.Device.SIDEKICK), InetAddress.getByName("10.0.0.2"));
+        CommandQueue queue = device.enableCommandQueue(20);
+        
+        for(int i = 0; i <= 50; i++) device.setBrightness(i);
+        device.setMode(DSDevice.Mode.AMBIENT);
+        device.setBrightness(99);
+        
+        long deadline = System.currentTimeMillis() + 2000;
+        while(queue.getPending() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        Thread.sleep(60);
+        
+        // At most: first brightness, mode and latest brightness (In either order, depending on when the first one left)
+        assertTrue("Sent " + socket.sent.size(), socket.sent.size() <= 3);
+        assertEquals(53, queue.getSubmitted());
+        assertEquals(queue.getSubmitted() - queue.getSent(), queue.getCoalesced());
+        int modes = 0, brightness = -1;
+        for(DSMessage message: socket.sent) {
+            if(message.getCommand() == Command.MODE) modes++;
+            else brightness = new BrightnessMessageWrapper(message).getBrightness();
+        }
+        assertEquals(1, modes);
+        assertEquals(99, brightness);
+        for(int i = 1; i < socket.times.size(); i++) {
+            assertTrue(socket.times.get(i) - socket.times.get(i - 1) >= 45000000L); // 50ms interval, timer slack
+        }
+        
+        // Disabled queue sends directly
+        device.disableCommandQueue();
+        int before = socket.sent.size();
+        device.setBrightness(10);
+        assertEquals(before + 1, socket.sent.size());
+    }
+
+    /**
+     * A flush waits for the command the timer is sending, so the newer value is sent last
+     */
+    public void testCommandQueueFlushOrder() throws Exception
+    {
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        RecordingSocket socket = new RecordingSocket() {
+            @Override
+            public void sendStaticMessage(InetAddress dest_ip, byte[] message, int offset, int length, int port) {
+                try {
+                    if(new BrightnessMessageWrapper(new DSMessage(message, offset, length, true)).getBrightness() == 1) {
+                        sending.countDown();
+                        release.await(); // Slow transmission
+                    }
+                } catch (Exception e) {
+                    fail(e.getMessage());
+                }
+                super.sendStaticMessage(dest_ip, message, offset, length, port);
+            }
+        };
+        final DSDevice device = new SideKick(socket, new CurrentStateMessageWrapper(DSDevice.Device.SIDEKICK), InetAddress.getByName("10.0.0.2"));
+        device.enableCommandQueue(20);
+        
+        device.setBrightness(1);
+        assertTrue(sending.await(2, TimeUnit.SECONDS));
+        device.setBrightness(2);
+        Thread disabler = new Thread() {
+            @Override
+            public void run() {
+                device.disableCommandQueue(); // Flushes brightness 2
+            }
+        };
+        disabler.start();
+        Thread.sleep(50);
+        release.countDown();
+        disabler.join(2000);
+        
+        assertEquals(2, socket.sent.size());
+        assertEquals(2, new BrightnessMessageWrapper(socket.sent.get(1)).getBrightness());
+    }
+
+    /**
+     * Commands are retransmitted until the device confirms them and given up after the retries
+     */
+    public void testReliableDelivery() throws Exception
+    {
+        RecordingSocket socket = new RecordingSocket();
+        socket.echo = true;
+        DSDevice device = new SideKick(socket, new CurrentStateMessageWrapper(DSDevice.Device.SIDEKICK), InetAddress.getByName("10.0.0.2"));
+        ReliableDelivery reliable = device.enableReliableDelivery(20, 3);
+        
+        // First two transmissions lost
+        socket.lose.set(2);
+        device.setBrightness(40);
+        long deadline = System.currentTimeMillis() + 2000;
+        while(reliable.getOutstanding() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertEquals(1, reliable.getAcknowledged());
+        assertEquals(2, reliable.getRetransmissions());
+        assertEquals(0, reliable.getLost());
+        
+        // Silent device
+        socket.lose.set(100);
+        device.setMode(DSDevice.Mode.AMBIENT);
+        deadline = System.currentTimeMillis() + 2000;
+        while(reliable.getOutstanding() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertEquals(1, reliable.getLost());
+        assertEquals(5, reliable.getRetransmissions());
+        assertEquals(0.5, reliable.getLossRate(), 0.0001);
+        device.disableReliableDelivery();
+    }
+
+    /**
+     * A Current State update only reports a change when a property differs
+     */
+    public void testCurrentStateUpdate() throws Exception
+    {
+        CurrentStateMessageWrapper state = new CurrentStateMessageWrapper(DSDevice.Device.SIDEKICK);
+        DSDevice device = new SideKick(new RecordingSocket(), state, InetAddress.getByName("10.0.0.2"));
+        final AtomicInteger changes = new AtomicInteger();
+        device.addChangeListener(new DeviceChangeListener() {
+            @Override
+            public void changed(DSDevice device, Command command) {
+                changes.incrementAndGet();
+            }
+        });
+        
+        assertFalse(device.applyUpdate(state.getMessage(DSMessage.FLAG_STATUS)));
+        assertEquals(0, changes.get());
+        
+        state.setBrigthness(77);
+        assertTrue(device.applyUpdate(state.getMessage(DSMessage.FLAG_STATUS)));
+        assertEquals(77, device.getBrightness() & 0xFF);
+        assertEquals(1, changes.get());
+    }
+
+    /**
+     * Color saturation commands are tracked and confirmed like the other properties
+     */
+    public void testReliableSaturation() throws Exception
+    {
+        RecordingSocket socket = new RecordingSocket();
+        socket.echo = true;
+        DSDevice device = new SideKick(socket, new CurrentStateMessageWrapper(DSDevice.Device.SIDEKICK), InetAddress.getByName("10.0.0.2"));
+        ReliableDelivery reliable = device.enableReliableDelivery(20, 3);
+        
+        socket.lose.set(1);
+        Color saturation = new Color(10, 20, 30);
+        device.setColorSaturation(saturation);
+        long deadline = System.currentTimeMillis() + 2000;
+        while(reliable.getOutstanding() > 0 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        assertEquals(1, reliable.getAcknowledged());
+        assertEquals(1, reliable.getRetransmissions());
+        assertEquals(Command.SATURATION_SETTING, socket.sent.get(0).getCommand());
+        assertTrue(device.reflects(new ColorSaturationMessageWrapper((byte) 0, saturation).getMessage(DSMessage.FLAG_UNICAST)));
+        assertFalse(device.reflects(new ColorSaturationMessageWrapper((byte) 0, Color.RED).getMessage(DSMessage.FLAG_UNICAST)));
+        device.disableReliableDelivery();
+    }
+
+    /**
+     * Setter commands are encoded into the pooled frame buffer of the calling thread
+     */
+    public void testPooledEncoding() throws Exception
+    {
+        RecordingSocket socket = new RecordingSocket();
+        DSDevice device = new SideKick(socket, new CurrentStateMessageWrapper(DSDevice.Device.SIDEKICK), InetAddress.getByName("10.0.0.2"));
+        device.setBrightness(40);
+        device.setMode(DSDevice.Mode.AMBIENT);
+        assertEquals(2, socket.sent.size());
+        assertEquals(2, socket.pooled.get());
+        assertEquals(40, socket.sent.get(0).getPayloadByte(0));
+    }
+}
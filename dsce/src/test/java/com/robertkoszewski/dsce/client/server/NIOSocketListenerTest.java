@@ -0,0 +1,97 @@
+package com.robertkoszewski.dsce.client.server;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.robertkoszewski.dsce.messages.DSMessage;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Loopback test for the NIO receive engine
+ */
+public class NIOSocketListenerTest 
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public NIOSocketListenerTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( NIOSocketListenerTest.class );
+    }
+
+    /**
+     * Valid datagrams reach the callbacks, datagrams with a bad CRC are counted as invalid
+     */
+    public void testLoopbackReceive() throws Exception
+    {
+        final int valid = 50;
+        final int invalid = 10;
+        
+        // Free Port
+        DatagramSocket probe = new DatagramSocket(0);
+        int port = probe.getLocalPort();
+        probe.close();
+        
+        NIOSocketListener listener = new NIOSocketListener(port, 256, false);
+        final CountDownLatch received = new CountDownLatch(valid);
+        final AtomicInteger brightness = new AtomicInteger();
+        listener.addCallback(new MessageReceived() {
+            @Override
+            public void run(DSMessage message, InetAddress senderIP, int senderPort) {
+                if(message.getCommand() == DSMessage.Command.BRIGHTNESS) brightness.addAndGet(message.getPayloadByte(0));
+                received.countDown();
+            }
+        });
+        listener.start();
+        
+        DatagramSocket sender = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        try {
+            byte[] frame = DSMessage.buildMessage((byte) 0x01, DSMessage.FLAG_UNICAST, DSMessage.COMMAND_UPPER_BRIGHTNESS, DSMessage.COMMAND_LOWER_BRIGHTNESS, new byte[] {3});
+            byte[] corrupt = frame.clone();
+            corrupt[corrupt.length - 1] ^= 0xFF; // Bad CRC
+            
+            // Wait for the Channel to be bound
+            long deadline = System.currentTimeMillis() + 2000;
+            while(listener.getReceivedPackets() == 0 && System.currentTimeMillis() < deadline) {
+                sender.send(new DatagramPacket(corrupt, corrupt.length, InetAddress.getLoopbackAddress(), port));
+                Thread.sleep(10);
+            }
+            long warmup = listener.getReceivedPackets();
+            assertTrue(warmup > 0);
+            
+            for(int i = 0; i < valid; i++) {
+                sender.send(new DatagramPacket(frame, frame.length, InetAddress.getLoopbackAddress(), port));
+                if(i < invalid) sender.send(new DatagramPacket(corrupt, corrupt.length, InetAddress.getLoopbackAddress(), port));
+            }
+            
+            assertTrue(received.await(2, TimeUnit.SECONDS));
+            deadline = System.currentTimeMillis() + 2000;
+            while(listener.getReceivedPackets() < warmup + valid + invalid && System.currentTimeMillis() < deadline) Thread.sleep(5);
+            
+            assertEquals(valid * 3, brightness.get());
+            assertEquals(warmup + valid + invalid, listener.getReceivedPackets());
+            assertEquals(warmup + invalid, listener.getInvalidPackets());
+        } finally {
+            sender.close();
+            listener.stop();
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.robertkoszewski.dsce.client.server;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.robertkoszewski.dsce.messages.DSMessage;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the SocketListener callback registry
+ */
+public class SocketListenerTest 
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public SocketListenerTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( SocketListenerTest.class );
+    }
+
+    /**
+     * Callbacks can be registered and unregistered from other threads while packets are dispatched
+     */
+    public void testConcurrentRegistration() throws Exception
+    {
+        final int packets = 500000;
+        final int churners = 4;
+        
+        final SocketListener listener = new SocketListener(0, 256, false);
+        final byte[] frame = DSMessage.buildMessage((byte) 0x01, DSMessage.FLAG_UNICAST, DSMessage.COMMAND_UPPER_BRIGHTNESS, DSMessage.COMMAND_LOWER_BRIGHTNESS, new byte[] {42});
+        final InetAddress sender = InetAddress.getLoopbackAddress();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicLong received = new AtomicLong();
+        final AtomicLong churned = new AtomicLong();
+        final CountDownLatch done = new CountDownLatch(1);
+        
+        // Permanent Callback: Must see every packet
+        listener.addCallback(new MessageReceived() {
+            @Override
+            public void run(DSMessage message, InetAddress senderIP, int senderPort) {
+                received.incrementAndGet();
+            }
+        });
+        
+        // Churn Threads
+        Thread[] threads = new Thread[churners];
+        for(int t = 0; t < churners; t++) {
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        MessageReceived callback = new MessageReceived() {
+                            @Override
+                            public void run(DSMessage message, InetAddress senderIP, int senderPort) {
+                                if(message.getCommand() != DSMessage.Command.BRIGHTNESS) throw new IllegalStateException("Corrupted view");
+                            }
+                        };
+                        while(done.getCount() != 0) {
+                            listener.addCallback(callback);
+                            listener.removeCallback(callback);
+                            churned.incrementAndGet();
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        
+        // Receive Thread
+        DSMessage view = new DSMessage();
+        try {
+            for(int i = 0; i < packets; i++) {
+                listener.handlePacket(view, frame, 0, frame.length, sender, 8888, null);
+            }
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        }
+        done.countDown();
+        for(Thread thread: threads) thread.join();
+        
+        if(failure.get() != null) throw new AssertionError(failure.get());
+        assertEquals(packets, received.get());
+        assertEquals(packets, listener.getReceivedPackets());
+        assertEquals(1, listener.getCallbackCount());
+        assertTrue("No registrations happened during dispatch", churned.get() > 0);
+    }
+
+    /**
+     * Routed callbacks only receive their commands from the filtered source
+     */
+    public void testCommandRouting() throws Exception
+    {
+        SocketListener listener = new SocketListener(0, 256, false);
+        final AtomicLong brightness = new AtomicLong();
+        final AtomicLong all = new AtomicLong();
+        InetAddress device = InetAddress.getByName("10.0.0.2");
+        InetAddress other = InetAddress.getByName("10.0.0.3");
+        
+        MessageReceived brightnessCallback = new MessageReceived() {
+            @Override
+            public void run(DSMessage message, InetAddress senderIP, int senderPort) {
+                assertEquals(DSMessage.Command.BRIGHTNESS, message.getCommand());
+                brightness.incrementAndGet();
+            }
+        };
+        listener.addCallback(new MessageFilter(device, DSMessage.Command.BRIGHTNESS), brightnessCallback);
+        listener.addCallback(new MessageReceived() {
+            @Override
+            public void run(DSMessage message, InetAddress senderIP, int senderPort) {
+                all.incrementAndGet();
+            }
+        });
+        
+        byte[] bright = DSMessage.buildMessage((byte) 0x01, DSMessage.FLAG_UNICAST, DSMessage.COMMAND_UPPER_BRIGHTNESS, DSMessage.COMMAND_LOWER_BRIGHTNESS, new byte[] {42});
+        byte[] mode = DSMessage.buildMessage((byte) 0x01, DSMessage.FLAG_UNICAST, DSMessage.COMMAND_UPPER_MODE, DSMessage.COMMAND_LOWER_MODE, new byte[] {DSMessage.MODE_AMBIENT_PAYLOAD});
+        DSMessage view = new DSMessage();
+        listener.handlePacket(view, bright, 0, bright.length, device, 8888, null);
+        listener.handlePacket(view, bright, 0, bright.length, other, 8888, null);
+        listener.handlePacket(view, mode, 0, mode.length, device, 8888, null);
+        
+        assertEquals(1, brightness.get());
+        assertEquals(3, all.get());
+        
+        listener.removeCallback(brightnessCallback);
+        listener.handlePacket(view, bright, 0, bright.length, device, 8888, null);
+        assertEquals(1, brightness.get());
+        assertEquals(1, listener.getCallbackCount());
+    }
+
+    /**
+     * Pipelined dispatch keeps the order of each sender and drops when full
+     */
+    public void testPipelineOrdering() throws Exception
+    {
+        final int sources = 8;
+        final int perSource = 2000;
+        final SocketListener listener = new SocketListener(0, 256, false);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final int[] last = new int[sources];
+        final CountDownLatch done = new CountDownLatch(sources * perSource);
+        
+        listener.addCallback(DSMessage.Command.BRIGHTNESS, new MessageReceived() {
+            @Override
+            public void run(DSMessage message, InetAddress senderIP, int senderPort) {
+                int source = senderIP.getAddress()[3] - 1;
+                int sequence = (message.getPayloadByte(0) & 0xFF);
+                synchronized(last) {
+                    if(sequence != ((last[source] + 1) & 0xFF)) failure.compareAndSet(null, new AssertionError("Out of order for source " + source));
+                    last[source] = sequence;
+                }
+                done.countDown();
+            }
+        });
+        listener.enablePipeline(4, 64, DispatchPipeline.OverflowPolicy.BLOCK);
+        
+        DSMessage view = new DSMessage();
+        for(int i = 1; i <= perSource; i++) {
+            byte[] frame = DSMessage.buildMessage((byte) 0x01, DSMessage.FLAG_UNICAST, DSMessage.COMMAND_UPPER_BRIGHTNESS, DSMessage.COMMAND_LOWER_BRIGHTNESS, new byte[] {(byte) i});
+            for(int source = 0; source < sources; source++) {
+                listener.handlePacket(view, frame, 0, frame.length, InetAddress.getByAddress(new byte[] {10, 0, 0, (byte) (source + 1)}), 8888, null);
+            }
+        }
+        assertTrue("Pipeline did not drain", done.await(10, TimeUnit.SECONDS));
+        if(failure.get() != null) throw new AssertionError(failure.get());
+        
+        DispatchPipeline pipeline = listener.getPipeline();
+        assertEquals(sources * perSource, pipeline.getSubmittedMessages());
+        assertEquals(0, pipeline.getDroppedMessages());
+        listener.disablePipeline();
+        assertNull(listener.getPipeline());
+    }
+    
+    /**
+     * A full queue drops new messages with the DROP policy instead of stalling the receive thread
+     */
+    public void testPipelineDrop() throws Exception
+    {
+        final SocketListener listener = new SocketListener(0, 256, false);
+        final CountDownLatch release = new CountDownLatch(1);
+        listener.addCallback(new MessageReceived() {
+            @Override
+            public void run(DSMessage message, InetAddress senderIP, int senderPort) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {}
+            }
+        });
+        listener.enablePipeline(1, 4, DispatchPipeline.OverflowPolicy.DROP);
+        
+        byte[] frame = DSMessage.buildMessage((byte) 0x01, DSMessage.FLAG_UNICAST, DSMessage.COMMAND_UPPER_BRIGHTNESS, DSMessage.COMMAND_LOWER_BRIGHTNESS, new byte[] {42});
+        DSMessage view = new DSMessage();
+        for(int i = 0; i < 100; i++) {
+            listener.handlePacket(view, frame, 0, frame.length, InetAddress.getLoopbackAddress(), 8888, null);
+        }
+        DispatchPipeline pipeline = listener.getPipeline();
+        assertEquals(100, pipeline.getSubmittedMessages());
+        assertTrue(pipeline.getDroppedMessages() >= 100 - 5); // Queue plus the message being handled
+        release.countDown();
+        listener.disablePipeline();
+    }
+
+    /**
+     * Disabling the pipeline does not wait forever for a stuck callback, and does not hold the listener lock while waiting
+     */
+    public void testPipelineStopTimeout() throws Exception
+    {
+        final SocketListener listener = new SocketListener(0, 256, false);
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch stopped = new CountDownLatch(1);
+        listener.addCallback(new MessageReceived() {
+            @Override
+            public void run(DSMessage message, InetAddress senderIP, int senderPort) {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {}
+                listener.stop(); // Needs the listener lock
+                stopped.countDown();
+            }
+        });
+        listener.enablePipeline(1, 4, DispatchPipeline.OverflowPolicy.DROP);
+        
+        byte[] frame = DSMessage.buildMessage((byte) 0x01, DSMessage.FLAG_UNICAST, DSMessage.COMMAND_UPPER_BRIGHTNESS, DSMessage.COMMAND_LOWER_BRIGHTNESS, new byte[] {42});
+        listener.handlePacket(new DSMessage(), frame, 0, frame.length, InetAddress.getLoopbackAddress(), 8888, null);
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        
+        DispatchPipeline pipeline = listener.getPipeline();
+        Thread disabler = new Thread() {
+            @Override
+            public void run() {
+                listener.disablePipeline();
+            }
+        };
+        disabler.start();
+        disabler.join(5000);
+        boolean returned = !disabler.isAlive();
+        release.countDown();
+        assertTrue("Pipeline stop did not time out", returned);
+        assertTrue("Callback could not take the listener lock", stopped.await(5, TimeUnit.SECONDS));
+        assertFalse(pipeline.isRunning());
+    }
+
+    /**
+     * Removing a callback removes a single registration
+     */
+    public void testRegistry()
+    {
+        CallbackRegistry<String> registry = new CallbackRegistry<String>(new String[0]);
+        registry.add("a");
+        registry.add("b");
+        registry.add("a");
+        String[] snapshot = registry.snapshot();
+        assertTrue(registry.remove("a"));
+        assertEquals(3, snapshot.length); // Snapshots are immutable
+        assertEquals(2, registry.size());
+        assertEquals("b", registry.snapshot()[0]);
+        assertEquals("a", registry.snapshot()[1]);
+        assertFalse(registry.remove("c"));
+        registry.clear();
+        assertTrue(registry.isEmpty());
+    }
+
+    /**
+     * An interrupted sender reopens the shared channel, still delivers the message and keeps its interrupt status
+     */
+    public void testInterruptedStaticSend() throws Exception
+    {
+        DatagramSocket receiver = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        receiver.setSoTimeout(2000);
+        SendChannel channel = SendChannel.get(null);
+        assertTrue(channel.isBlocking());
+        byte[] message = {1, 2, 3};
+        try {
+            Thread.currentThread().interrupt();
+            assertTrue(channel.send(InetAddress.getLoopbackAddress(), receiver.getLocalPort(), message, 0, message.length));
+            assertTrue(Thread.interrupted()); // Restored (And cleared for the next tests)
+            
+            DatagramPacket packet = new DatagramPacket(new byte[16], 16);
+            receiver.receive(packet);
+            assertEquals(3, packet.getLength());
+            assertTrue(channel.getChannel().isOpen());
+            assertFalse(SendChannel.get(null, false).isBlocking());
+        } finally {
+            Thread.interrupted();
+            receiver.close();
+        }
+    }
+
+    /**
+     * The shared send channel reaches IPv6 destinations (Where the host has IPv6 loopback)
+     */
+    public void testSendChannelIPv6() throws Exception
+    {
+        DatagramSocket receiver;
+        try {
+            receiver = new DatagramSocket(0, InetAddress.getByName("::1"));
+        } catch (SocketException e) {
+            return; // No IPv6 on this host
+        }
+        try {
+            receiver.setSoTimeout(2000);
+            byte[] message = {4, 5, 6};
+            assertTrue(SendChannel.get(null).send(receiver.getLocalAddress(), receiver.getLocalPort(), message, 0, message.length));
+            DatagramPacket packet = new DatagramPacket(new byte[16], 16);
+            receiver.receive(packet);
+            assertEquals(3, packet.getLength());
+        } finally {
+            receiver.close();
+        }
+    }
+}
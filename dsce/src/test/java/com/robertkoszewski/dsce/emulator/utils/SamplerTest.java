@@ -0,0 +1,395 @@
+package com.robertkoszewski.dsce.emulator.utils;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the frame samplers
+ */
+public class SamplerTest 
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public SamplerTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( SamplerTest.class );
+    }
+    
+    /**
+     * Image types every sampler has to handle
+     */
+    static final int[] IMAGE_TYPES = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, 
+            BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR };
+    
+    /**
+     * Tile origins (column, row) of sectors 1 to 12 on the 5x3 grid
+     */
+    static final int[][] TILES = { {4, 2}, {4, 1}, {4, 0}, {3, 0}, {2, 0}, {1, 0}, 
+            {0, 0}, {0, 1}, {0, 2}, {1, 2}, {2, 2}, {3, 2} };
+    
+    /**
+     * Paint every sector tile with its own solid color
+     */
+    static byte[] paintSectors(BufferedImage image) {
+        byte[] expected = new byte[36];
+        int tileWidth = image.getWidth() / 5, tileHeight = image.getHeight() / 3;
+        Graphics2D g = image.createGraphics();
+        for(int i = 0; i < 12; i++) {
+            Color color = new Color(i * 20, 255 - i * 15, (i * 53) & 0xFF);
+            g.setColor(color);
+            g.fillRect(TILES[i][0] * tileWidth, TILES[i][1] * tileHeight, tileWidth, tileHeight);
+            expected[i * 3] = (byte) color.getRed();
+            expected[i * 3 + 1] = (byte) color.getGreen();
+            expected[i * 3 + 2] = (byte) color.getBlue();
+        }
+        g.dispose();
+        return expected;
+    }
+
+    /**
+     * Reference sector averages computed through BufferedImage.getRGB()
+     */
+    static byte[] referenceSample(BufferedImage image) {
+        byte[] sectors = new byte[36];
+        int tileWidth = image.getWidth() / 5, tileHeight = image.getHeight() / 3;
+        for(int i = 0; i < 12; i++) {
+            int x0 = TILES[i][0] * tileWidth, y0 = TILES[i][1] * tileHeight;
+            long r = 0, g = 0, b = 0;
+            for(int y = y0; y < y0 + tileHeight; y++) {
+                for(int x = x0; x < x0 + tileWidth; x++) {
+                    int pixel = image.getRGB(x, y);
+                    r += (pixel >> 16) & 0xFF;
+                    g += (pixel >> 8) & 0xFF;
+                    b += pixel & 0xFF;
+                }
+            }
+            int num = tileWidth * tileHeight;
+            sectors[i * 3] = (byte) (r / num);
+            sectors[i * 3 + 1] = (byte) (g / num);
+            sectors[i * 3 + 2] = (byte) (b / num);
+        }
+        return sectors;
+    }
+    
+    /**
+     * Reference sector averages of a layout computed through BufferedImage.getRGB()
+     */
+    static byte[] referenceSample(BufferedImage image, SectorLayout layout) {
+        byte[] sectors = new byte[layout.size() * 3];
+        int[] bounds = new int[4];
+        for(int i = 0; i < layout.size(); i++) {
+            layout.getBounds(i, image.getWidth(), image.getHeight(), bounds);
+            long r = 0, g = 0, b = 0;
+            for(int y = bounds[1]; y < bounds[3]; y++) {
+                for(int x = bounds[0]; x < bounds[2]; x++) {
+                    int pixel = image.getRGB(x, y);
+                    r += (pixel >> 16) & 0xFF;
+                    g += (pixel >> 8) & 0xFF;
+                    b += pixel & 0xFF;
+                }
+            }
+            int num = (bounds[2] - bounds[0]) * (bounds[3] - bounds[1]);
+            sectors[i * 3] = (byte) (r / num);
+            sectors[i * 3 + 1] = (byte) (g / num);
+            sectors[i * 3 + 2] = (byte) (b / num);
+        }
+        return sectors;
+    }
+    
+    /**
+     * Solid sector tiles are sampled to their exact color
+     */
+    public void testSimpleAverageSampler()
+    {
+        SimpleAverageSampler sampler = new SimpleAverageSampler(null);
+        for(int type : IMAGE_TYPES) {
+            BufferedImage image = new BufferedImage(323, 182, type); // Not a multiple of the tile grid
+            byte[] expected = paintSectors(image);
+            byte[] sectors = new byte[36];
+            sampler.sample(image, sectors);
+            assertTrue("Image type " + type, Arrays.equals(expected, sectors));
+        }
+    }
+    
+    /**
+     * The direct raster path matches getRGB() for supported types, sub images and fallback types
+     */
+    public void testRasterPath()
+    {
+        SimpleAverageSampler sampler = new SimpleAverageSampler(null);
+        byte[] sectors = new byte[36];
+        for(int type : IMAGE_TYPES) {
+            BufferedImage image = SyntheticScreenGrabber.render(401, 227, type, 3);
+            assertNotNull(FrameRaster.wrap(image));
+            sampler.sample(image, sectors);
+            assertTrue("Image type " + type, Arrays.equals(referenceSample(image), sectors));
+            
+            BufferedImage sub = image.getSubimage(37, 11, 311, 190);
+            assertNotNull(FrameRaster.wrap(sub));
+            sampler.sample(sub, sectors);
+            assertTrue("Sub image type " + type, Arrays.equals(referenceSample(sub), sectors));
+        }
+        
+        int[] fallbackTypes = { BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_USHORT_565_RGB };
+        for(int type : fallbackTypes) {
+            BufferedImage image = SyntheticScreenGrabber.render(160, 90, type, 1);
+            assertNull(FrameRaster.wrap(image));
+            sampler.sample(image, sectors);
+            assertTrue("Fallback type " + type, Arrays.equals(referenceSample(image), sectors));
+        }
+    }
+    
+    /**
+     * The parallel sampler matches the sequential one at every parallelism level
+     */
+    public void testParallelAverageSampler()
+    {
+        SimpleAverageSampler simple = new SimpleAverageSampler(null);
+        ParallelAverageSampler parallel = new ParallelAverageSampler(null, 1);
+        byte[] expected = new byte[36], sectors = new byte[36];
+        int[] fallbackTypes = { BufferedImage.TYPE_INT_BGR };
+        int[] parallelism = { 1, 2, 3, 8 };
+        
+        for(int level : parallelism) {
+            parallel.setParallelism(level);
+            assertEquals(level, parallel.getParallelism());
+            for(int type : IMAGE_TYPES) {
+                BufferedImage image = SyntheticScreenGrabber.render(643, 361, type, level);
+                simple.sample(image, expected);
+                parallel.sample(image, sectors);
+                assertTrue("Parallelism " + level + " image type " + type, Arrays.equals(expected, sectors));
+            }
+            for(int type : fallbackTypes) {
+                BufferedImage image = SyntheticScreenGrabber.render(213, 97, type, level);
+                simple.sample(image, expected);
+                parallel.sample(image, sectors);
+                assertTrue("Parallelism " + level + " fallback type " + type, Arrays.equals(expected, sectors));
+            }
+        }
+        parallel.setParallelism(0);
+        assertEquals(1, parallel.getParallelism());
+    }
+    
+    /**
+     * Changing the parallelism while a frame is sampled lets the frame finish on the previous pool
+     */
+    public void testParallelismChangeWhileSampling() throws Exception
+    {
+        final ParallelAverageSampler parallel = new ParallelAverageSampler(null, 2);
+        final BufferedImage image = SyntheticScreenGrabber.render(643, 361, BufferedImage.TYPE_INT_RGB, 1);
+        final byte[] expected = new byte[36];
+        new SimpleAverageSampler(null).sample(image, expected);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final AtomicBoolean running = new AtomicBoolean(true);
+        
+        Thread sampler = new Thread() {
+            @Override
+            public void run() {
+                byte[] sectors = new byte[36];
+                try {
+                    while(running.get()) {
+                        parallel.sample(image, sectors);
+                        if(!Arrays.equals(expected, sectors)) throw new AssertionError("Wrong colors");
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            }
+        };
+        sampler.start();
+        long deadline = System.currentTimeMillis() + 500;
+        for(int i = 0; System.currentTimeMillis() < deadline && failure.get() == null; i++) {
+            parallel.setParallelism(2 + i % 3);
+            if(i % 50 == 0) parallel.stop();
+        }
+        running.set(false);
+        sampler.join(5000);
+        parallel.stop();
+        assertNull(String.valueOf(failure.get()), failure.get());
+    }
+    
+    /**
+     * The summed area sampler matches the simple sampler and brute force averages of custom layouts
+     */
+    public void testSummedAreaSampler()
+    {
+        SimpleAverageSampler simple = new SimpleAverageSampler(null);
+        SummedAreaSampler sat = new SummedAreaSampler(null);
+        byte[] expected = new byte[36], sectors = new byte[36];
+        
+        for(int type : IMAGE_TYPES) {
+            BufferedImage image = SyntheticScreenGrabber.render(643, 361, type, 1);
+            simple.sample(image, expected);
+            sat.sample(image, sectors);
+            assertTrue("Image type " + type, Arrays.equals(expected, sectors));
+        }
+        BufferedImage fallback = SyntheticScreenGrabber.render(213, 97, BufferedImage.TYPE_INT_BGR, 2);
+        simple.sample(fallback, expected);
+        sat.sample(fallback, sectors); // Smaller frame reuses the table
+        assertTrue(Arrays.equals(expected, sectors));
+        
+        // Overlapping edge bands inside letterbox bars on a 16x12 grid
+        SectorLayout layout = new SectorLayout(16, 12, 
+                new int[] {0, 2, 16, 2}, new int[] {0, 8, 16, 2}, new int[] {0, 2, 3, 8}, new int[] {13, 2, 3, 8},
+                new int[] {0, 2, 8, 8}, new int[] {5, 5, 1, 1}, new int[] {0, 0, 16, 12});
+        sat.setLayout(layout);
+        assertSame(layout, sat.getLayout());
+        for(int type : IMAGE_TYPES) {
+            BufferedImage image = SyntheticScreenGrabber.render(1283, 725, type, 3);
+            byte[] all = new byte[layout.size() * 3];
+            sat.sample(image, all);
+            assertTrue("Layout image type " + type, Arrays.equals(referenceSample(image, layout), all));
+        }
+        
+        // Sectors outside the grid are rejected
+        try {
+            new SectorLayout(5, 3, new int[] {4, 2, 2, 1});
+            fail();
+        } catch (IllegalArgumentException e) {}
+    }
+    
+    /**
+     * The decimated sampler reads every pixel at stride 1 and stays close to the full average when decimating
+     */
+    public void testDecimatedSampler()
+    {
+        SimpleAverageSampler simple = new SimpleAverageSampler(null);
+        DecimatedSampler decimated = new DecimatedSampler(null, 1);
+        byte[] expected = new byte[36], sectors = new byte[36];
+        
+        for(int type : IMAGE_TYPES) {
+            BufferedImage image = SyntheticScreenGrabber.render(643, 361, type, 2);
+            simple.sample(image, expected);
+            decimated.sample(image, sectors);
+            assertTrue("Image type " + type, Arrays.equals(expected, sectors));
+            assertEquals(0, decimated.measureError(image).getMax());
+        }
+        
+        BufferedImage image = SyntheticScreenGrabber.render(1920, 1080, BufferedImage.TYPE_INT_RGB, 1);
+        BufferedImage fallback = SyntheticScreenGrabber.render(1920, 1080, BufferedImage.TYPE_INT_BGR, 1);
+        decimated.setStride(4);
+        assertEquals(4, decimated.getStride(384, 360));
+        assertTrue(decimated.measureError(image).getMean() < 2);
+        assertEquals(decimated.measureError(image).getMax(), decimated.measureError(fallback).getMax());
+        
+        // Budget of ~1000 pixels per 384x360 sector
+        decimated.setSampleBudget(1000);
+        assertEquals(11, decimated.getStride(384, 360));
+        assertTrue(decimated.measureError(image).getMean() < 4);
+        
+        // Jittered grid moves every frame
+        decimated.setJitter(true);
+        assertTrue(decimated.isJitter());
+        byte[] previous = new byte[36];
+        decimated.sample(image, previous);
+        boolean changed = false;
+        for(int i = 0; i < 8 && !changed; i++) {
+            decimated.sample(image, sectors);
+            changed = !Arrays.equals(previous, sectors);
+        }
+        assertTrue(changed);
+        assertTrue(decimated.measureError(image).getMean() < 4);
+        
+        // Sample budgets larger than the sector read every pixel
+        decimated.setSampleBudget(Integer.MAX_VALUE);
+        assertEquals(1, decimated.getStride(384, 360));
+        assertEquals(0, decimated.measureError(image).getMax());
+        
+        // Frames smaller than the sector grid leave the empty sectors black
+        for(int type : IMAGE_TYPES) {
+            BufferedImage tiny = SyntheticScreenGrabber.render(10, 2, type, 1);
+            decimated.sample(tiny, sectors);
+            assertEquals(0, decimated.measureError(tiny).getMax());
+        }
+    }
+    
+    /**
+     * The edge band sampler only captures the bands and matches the simple sampler at tile depth
+     */
+    public void testEdgeBandSampler()
+    {
+        SimpleAverageSampler simple = new SimpleAverageSampler(null);
+        byte[] expected = new byte[36], sectors = new byte[36];
+        
+        // Bands as deep as the tiles cover the same pixels as the simple sampler
+        EdgeBandSampler tiles = new EdgeBandSampler(null, 1000);
+        for(int type : IMAGE_TYPES) {
+            BufferedImage image = SyntheticScreenGrabber.render(640, 360, type, 1);
+            simple.sample(image, expected);
+            tiles.sample(image, sectors);
+            assertTrue("Image type " + type, Arrays.equals(expected, sectors));
+        }
+        
+        // Region capture with thin bands
+        SyntheticScreenGrabber grabber = new SyntheticScreenGrabber(1280, 720, BufferedImage.TYPE_INT_RGB);
+        EdgeBandSampler bands = new EdgeBandSampler(grabber, 40, 30, 20, 10);
+        assertEquals(30, bands.getDepth(EdgeBandSampler.BOTTOM));
+        BufferedImage[] regions = grabber.getRegions();
+        assertEquals(4, regions.length);
+        assertEquals(1280, regions[EdgeBandSampler.TOP].getWidth());
+        assertEquals(40, regions[EdgeBandSampler.TOP].getHeight());
+        assertEquals(10, regions[EdgeBandSampler.RIGHT].getWidth());
+        assertEquals(240, regions[EdgeBandSampler.RIGHT].getHeight());
+        assertEquals((1280 * 70 + 240 * 30) / (1280.0 * 720), bands.getCoverage(1280, 720), 1e-9);
+        
+        bands.sampleBands(regions, sectors);
+        bands.sample(grabber.getFrame(0), expected);
+        assertTrue(Arrays.equals(expected, sectors));
+        
+        // Band averages from the full frame
+        SectorLayout layout = new SectorLayout(1280, 720, 
+                new int[] {1024, 690, 256, 30}, new int[] {1270, 240, 10, 240}, new int[] {1024, 0, 256, 40},
+                new int[] {768, 0, 256, 40}, new int[] {512, 0, 256, 40}, new int[] {256, 0, 256, 40}, 
+                new int[] {0, 0, 256, 40}, new int[] {0, 240, 20, 240}, new int[] {0, 690, 256, 30}, 
+                new int[] {256, 690, 256, 30}, new int[] {512, 690, 256, 30}, new int[] {768, 690, 256, 30});
+        assertTrue(Arrays.equals(referenceSample(grabber.getFrame(0), layout), sectors));
+        
+        // Full screen capture
+        grabber.setRegions();
+        assertEquals(1, grabber.getRegions().length);
+    }
+    
+    /**
+     * Synthetic frames are deterministic and identical across image types
+     */
+    public void testSyntheticScreenGrabber()
+    {
+        SyntheticScreenGrabber a = new SyntheticScreenGrabber(160, 90, BufferedImage.TYPE_INT_RGB);
+        SyntheticScreenGrabber b = new SyntheticScreenGrabber(160, 90, BufferedImage.TYPE_3BYTE_BGR);
+        SimpleAverageSampler sampler = new SimpleAverageSampler(a);
+        byte[] first = new byte[36], second = new byte[36], previous = null;
+        
+        for(int i = 0; i < SyntheticScreenGrabber.DEFAULT_FRAMES; i++) {
+            assertTrue(a.hasFrame());
+            sampler.sample(a.getFrame(), first);
+            sampler.sample(b.getFrame(), second);
+            assertTrue(Arrays.equals(first, second));
+            assertFalse(Arrays.equals(first, previous)); // Frames change
+            previous = first.clone();
+        }
+        
+        // Frames repeat
+        assertEquals(SyntheticScreenGrabber.DEFAULT_FRAMES, a.getServedFrames());
+        assertSame(a.getFrame(0), a.getFrame());
+    }
+}
@@ -0,0 +1,158 @@
+package com.robertkoszewski.dsce.messages;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.robertkoszewski.dsce.client.devices.DSDevice;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the DSMessage codec
+ */
+public class DSMessageTest 
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public DSMessageTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( DSMessageTest.class );
+    }
+
+    /**
+     * Parsing a built frame returns the same fields
+     */
+    public void testRoundTrip() throws InvalidMessageException
+    {
+        byte[] frame = DSMessage.buildMessage((byte) 0x02, DSMessage.FLAG_UNICAST, DSMessage.COMMAND_UPPER_BRIGHTNESS, DSMessage.COMMAND_LOWER_BRIGHTNESS, new byte[] {42});
+        DSMessage message = new DSMessage(frame);
+        assertEquals(0x02, message.getGroupAddress());
+        assertEquals(DSMessage.FLAG_UNICAST, message.getFlags());
+        assertEquals(DSMessage.Command.BRIGHTNESS, message.getCommand());
+        assertEquals(42, new BrightnessMessageWrapper(message).getBrightness());
+        assertTrue(Arrays.equals(frame, message.getMessage()));
+    }
+
+    /**
+     * A view reads in place, can be re-pointed and copied
+     */
+    public void testViewWrapAndCopy() throws InvalidMessageException
+    {
+        byte[] first = DSMessage.buildMessage((byte) 0x01, DSMessage.FLAG_UNICAST, DSMessage.COMMAND_UPPER_DEVICE_NAME, DSMessage.COMMAND_LOWER_DEVICE_NAME, "Living".getBytes());
+        byte[] second = DSMessage.buildMessage((byte) 0x01, DSMessage.FLAG_UNICAST, DSMessage.COMMAND_UPPER_MODE, DSMessage.COMMAND_LOWER_MODE, new byte[] {DSMessage.MODE_AMBIENT_PAYLOAD});
+        
+        byte[] buffer = new byte[64];
+        System.arraycopy(first, 0, buffer, 3, first.length);
+        DSMessage view = new DSMessage().wrap(buffer, 3, first.length, true);
+        assertEquals(DSMessage.Command.DEVICE_NAME, view.getCommand());
+        assertEquals("Living", new DeviceNameMessageWrapper(view).getDeviceName());
+        DSMessage kept = view.copy();
+        
+        System.arraycopy(second, 0, buffer, 3, second.length);
+        view.wrap(ByteBuffer.wrap(buffer, 3, second.length), true);
+        assertEquals(DSMessage.Command.MODE, view.getCommand());
+        assertEquals(1, view.getPayloadLength());
+        assertEquals("Living", kept.getPayloadString());
+        assertTrue(Arrays.equals(second, view.getMessage()));
+    }
+
+    /**
+     * Writing through getPayload() never touches the wrapped frame
+     */
+    public void testViewWriteDetaches() throws InvalidMessageException
+    {
+        byte[] frame = DSMessage.buildMessage((byte) 0x01, DSMessage.FLAG_UNICAST, DSMessage.COMMAND_UPPER_BRIGHTNESS, DSMessage.COMMAND_LOWER_BRIGHTNESS, new byte[] {10});
+        byte[] original = frame.clone();
+        DSMessage view = new DSMessage().wrap(frame, 0, frame.length, true);
+        new BrightnessMessageWrapper(view).setBrightness(90);
+        assertEquals(90, view.getPayloadByte(0));
+        assertTrue(Arrays.equals(original, frame));
+    }
+
+    /**
+     * The encoder writes the same frame into arrays, buffers and frame buffers
+     */
+    public void testEncode()
+    {
+        DSMessage message = new DSMessage((byte) 0x03, DSMessage.FLAG_SCREEN_SECTOR_DATA, DSMessage.COMMAND_UPPER_SCREEN_SECTOR_DATA, DSMessage.COMMAND_LOWER_SCREEN_SECTOR_DATA, new byte[36]);
+        byte[] expected = message.getMessage();
+        assertEquals(expected.length, message.getFrameLength());
+        
+        byte[] array = new byte[expected.length + 5];
+        assertEquals(expected.length, message.encode(array, 5));
+        assertTrue(Arrays.equals(expected, Arrays.copyOfRange(array, 5, array.length)));
+        
+        ByteBuffer direct = ByteBuffer.allocateDirect(DSMessage.MAX_FRAME_SIZE);
+        message.encode(direct);
+        direct.flip();
+        byte[] fromDirect = new byte[direct.remaining()];
+        direct.get(fromDirect);
+        assertTrue(Arrays.equals(expected, fromDirect));
+        
+        FrameBuffer frame = FrameBuffer.get();
+        frame.encode(message.getGroupAddress(), message.getFlags(), message.getCommandUpper(), message.getCommandLower(), message.getPayload());
+        assertTrue(Arrays.equals(expected, Arrays.copyOf(frame.getData(), frame.getLength())));
+        assertTrue(Arrays.equals(DSMessage.MESSAGE_READ_CURRENT_STATE, 
+                DSMessage.buildMessage((byte) 0xFF, (byte) 0x30, DSMessage.COMMAND_UPPER_CURRENT_STATE, DSMessage.COMMAND_LOWER_CURRENT_STATE, null)));
+    }
+
+    /**
+     * Color saturation frames use the saturation setting command (0x03 0x06) and carry red, green and blue
+     */
+    public void testColorSaturationEncoding() throws InvalidMessageException
+    {
+        byte[] frame = new ColorSaturationMessageWrapper((byte) 0x01, new Color(10, 20, 30)).getMessage(DSMessage.FLAG_UNICAST).getMessage();
+        byte[] expected = new byte[] {(byte) 0xFC, 0x08, 0x01, 0x11, 0x03, 0x06, 0x0A, 0x14, 0x1E, 0x78};
+        assertTrue(Arrays.toString(frame), Arrays.equals(expected, frame));
+        
+        DSMessage message = new DSMessage(frame);
+        assertEquals(DSMessage.Command.SATURATION_SETTING, message.getCommand());
+        assertEquals(new Color(10, 20, 30), new ColorSaturationMessageWrapper(message).getColorSaturation());
+    }
+
+    /**
+     * Corrupted frames are rejected
+     */
+    public void testInvalidCRC()
+    {
+        byte[] frame = DSMessage.MESSAGE_READ_CURRENT_STATE.clone();
+        frame[frame.length - 1] ^= 0x01;
+        try {
+            new DSMessage().wrap(frame, 0, frame.length, true);
+            fail("Expected InvalidMessageException");
+        } catch (InvalidMessageException e) {
+            // Expected
+        }
+    }
+
+    /**
+     * Names of truncated current state payloads are cut at the end of the payload
+     */
+    public void testShortCurrentState()
+    {
+        byte[] payload = new byte[] {'L', 'i', 'v', 'i', 'n', 'g', 0x01}; // Name and product ID only
+        CurrentStateMessageWrapper state = new CurrentStateMessageWrapper(new DSMessage((byte) 0xFF, DSMessage.FLAG_STATUS, 
+                DSMessage.COMMAND_UPPER_CURRENT_STATE, DSMessage.COMMAND_LOWER_CURRENT_STATE, payload));
+        assertEquals("Living", state.getName()); // Product ID byte is trimmed as a control character
+        assertEquals("", state.getGroupName());
+        
+        CurrentStateMessageWrapper full = new CurrentStateMessageWrapper(DSDevice.Device.SIDEKICK);
+        full.setName("Kitchen");
+        assertEquals("Kitchen", full.getName());
+    }
+}
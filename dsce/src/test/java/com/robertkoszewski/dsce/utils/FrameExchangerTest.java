@@ -0,0 +1,121 @@
+package com.robertkoszewski.dsce.utils;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for the frame handoff between screen grabbers and samplers
+ */
+public class FrameExchangerTest 
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public FrameExchangerTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( FrameExchangerTest.class );
+    }
+
+    /**
+     * The consumer always gets the newest frame, older ones are dropped and re-reads are duplicates
+     */
+    public void testNewestFrame()
+    {
+        FrameExchanger<String> frames = new FrameExchanger<String>();
+        assertFalse(frames.hasFrame());
+        assertNull(frames.poll());
+        
+        frames.publish("1");
+        frames.publish("2");
+        frames.publish("3");
+        assertTrue(frames.hasFrame());
+        assertEquals("3", frames.take());
+        assertFalse(frames.hasFrame());
+        assertEquals(3, frames.getPublished());
+        assertEquals(2, frames.getDropped());
+        
+        assertEquals("3", frames.poll());
+        assertEquals(1, frames.getDuplicated());
+        frames.publish("4");
+        assertEquals("4", frames.poll());
+        assertEquals(1, frames.getDuplicated());
+        assertEquals(2, frames.getTaken());
+    }
+    
+    /**
+     * take() waits for the producer and returns NULL when interrupted
+     */
+    public void testWait() throws InterruptedException
+    {
+        final FrameExchanger<String> frames = new FrameExchanger<String>();
+        final AtomicReference<String> result = new AtomicReference<String>();
+        
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result.set(frames.take());
+            }
+        });
+        consumer.start();
+        Thread.sleep(50);
+        assertTrue(consumer.isAlive());
+        frames.publish("frame");
+        consumer.join(2000);
+        assertFalse(consumer.isAlive());
+        assertEquals("frame", result.get());
+        
+        result.set("not interrupted");
+        consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                result.set(frames.take());
+            }
+        });
+        consumer.start();
+        Thread.sleep(50);
+        consumer.interrupt();
+        consumer.join(2000);
+        assertFalse(consumer.isAlive());
+        assertNull(result.get());
+    }
+    
+    /**
+     * Every frame a fast producer publishes is either taken or dropped
+     */
+    public void testConcurrentHandoff() throws InterruptedException
+    {
+        final FrameExchanger<Integer> frames = new FrameExchanger<Integer>();
+        final int count = 100000;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 1; i <= count; i++) frames.publish(i);
+            }
+        });
+        producer.start();
+        
+        int previous = 0;
+        while(previous < count) {
+            Integer frame = frames.take();
+            assertTrue(frame > previous); // Never an older or repeated frame
+            previous = frame;
+        }
+        producer.join();
+        assertEquals(count, frames.getTaken() + frames.getDropped());
+        assertEquals(0, frames.getDuplicated());
+    }
+}